@@ -22,6 +22,7 @@ import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.http.HttpMethod.PUT;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.agent.executor.ProcessIo;
 import com.flowci.domain.AgentConnect;
 import com.flowci.domain.Jsonable;
 import com.flowci.domain.Settings;
@@ -103,6 +104,15 @@ public class AgentConfig implements WebMvcConfigurer {
         return FileHelper.createDirectory(path);
     }
 
+    /**
+     * Each slot takes up to 3 io threads for stdin, stdout and stderr of running process
+     */
+    @Bean("processIo")
+    public ProcessIo processIo() {
+        int threads = Math.max(agentProperties.getIoThreads(), agentProperties.getSlots() * 3);
+        return new ProcessIo(threads, agentProperties.getIoQueueSize());
+    }
+
     @Bean("objectMapper")
     public ObjectMapper objectMapper() {
         return Jsonable.getMapper();
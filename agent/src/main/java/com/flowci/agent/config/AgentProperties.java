@@ -16,6 +16,7 @@
 
 package com.flowci.agent.config;
 
+import java.util.Objects;
 import lombok.Data;
 
 /**
@@ -31,4 +32,39 @@ public class AgentProperties {
     private String token;
 
     private String serverUrl;
+
+    /**
+     * Num of cmds can be executed concurrently, each slot has its own workspace
+     */
+    private Integer slots = 1;
+
+    /**
+     * Run cmds of a job in one bash session instead of a new process for each cmd
+     */
+    private Boolean shellSession = false;
+
+    /**
+     * Shell session will be closed if it's not used in the seconds
+     */
+    private Long shellSessionIdleSeconds = 600L;
+
+    /**
+     * Max num of threads to read and write process pipes, shared by all slots
+     */
+    private Integer ioThreads = 8;
+
+    /**
+     * Max num of io tasks waiting for free thread, the task is rejected if the queue is full
+     */
+    private Integer ioQueueSize = 16;
+
+    /**
+     * Slot index of cmd in range of [0, slots), the cmd without slot uses the first one
+     */
+    public int toSlotIndex(Integer slot) {
+        if (Objects.isNull(slot) || slots <= 1) {
+            return 0;
+        }
+        return Math.floorMod(slot, slots);
+    }
 }
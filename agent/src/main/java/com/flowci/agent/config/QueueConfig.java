@@ -20,6 +20,11 @@ import com.flowci.agent.service.CmdService;
 import com.flowci.domain.Jsonable;
 import com.flowci.domain.Settings;
 import com.flowci.domain.Settings.RabbitMQ;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
@@ -46,6 +51,9 @@ public class QueueConfig {
     @Autowired
     private Settings agentSettings;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Bean("agentQueue")
     public Queue jobQueue() {
         String agentQueue = agentSettings.getAgent().getQueueName();
@@ -102,6 +110,7 @@ public class QueueConfig {
         container.setQueueNames(queueName);
         container.setMessageListener(adapter);
         container.setTaskExecutor(consumerExecutor);
+        container.setAfterReceivePostProcessors(lagRecorder());
         return container;
     }
 
@@ -109,6 +118,28 @@ public class QueueConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory factory) {
         RabbitTemplate template = new RabbitTemplate(factory);
         template.setMessageConverter(queueMessageConverter);
+        template.setBeforePublishPostProcessors(message -> {
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        });
         return template;
     }
+
+    /**
+     * Record time from cmd published by server to received by agent
+     */
+    private MessagePostProcessor lagRecorder() {
+        Timer lag = Timer.builder("flowci.rabbit.lag")
+            .description("Time between message published and received by listener")
+            .tag("listener", "cmd")
+            .register(meterRegistry);
+
+        return message -> {
+            Date timestamp = message.getMessageProperties().getTimestamp();
+            if (timestamp != null) {
+                lag.record(System.currentTimeMillis() - timestamp.getTime(), TimeUnit.MILLISECONDS);
+            }
+            return message;
+        };
+    }
 }
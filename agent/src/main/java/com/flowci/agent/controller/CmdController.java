@@ -17,15 +17,20 @@
 package com.flowci.agent.controller;
 
 import com.flowci.agent.domain.request.StartCmd;
+import com.flowci.agent.manager.LoggingManager;
 import com.flowci.agent.service.CmdService;
+import java.io.IOException;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -40,6 +45,9 @@ public class CmdController {
     @Autowired
     private CmdService cmdManager;
 
+    @Autowired
+    private LoggingManager loggingManager;
+
     @PostMapping
     public void execute(@Validated @RequestBody StartCmd body) {
         cmdManager.execute(body.toCmd());
@@ -52,4 +60,16 @@ public class CmdController {
         return cmdManager.getLogs(id, PageRequest.of(page, size));
     }
 
+    /**
+     * Raw text log with Range header, or last lines of log by tail, or follow the log until cmd completed
+     */
+    @GetMapping("/{id}/logs/raw")
+    public void rawLogs(@PathVariable String id,
+                        @RequestParam(required = false, defaultValue = "false") boolean follow,
+                        @RequestParam(required = false, defaultValue = "0") int tail,
+                        @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                        HttpServletResponse response) throws IOException {
+        loggingManager.write(id, range, tail, follow, response);
+    }
+
 }
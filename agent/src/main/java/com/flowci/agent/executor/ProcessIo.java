@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.executor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Agent-wide I/O workers and read buffers for process pipes, shared by shell executors and sessions
+ * instead of creating threads and buffers for each process.
+ *
+ * The pipe of process cannot be selected, so each stream takes a worker while it's open. The workers are
+ * created on demand up to the max threads, and released after idle. The task is queued up to the queue size
+ * when all workers are taken, and rejected with RejectedExecutionException if the queue is full.
+ *
+ * @author yang
+ */
+@Log4j2
+public final class ProcessIo {
+
+    private final static int BufferSize = 64 * 1024;
+
+    private final static long KeepAliveSeconds = 60L;
+
+    private final static Charset ProcessCharset = Charset.defaultCharset();
+
+    private final ThreadPoolExecutor workers;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    /**
+     * Num of tasks submitted to workers and not finished, including the queued
+     */
+    private final AtomicInteger pending = new AtomicInteger(0);
+
+    public ProcessIo(int maxThreads, int queueSize) {
+        this.workers = new ThreadPoolExecutor(maxThreads, maxThreads, KeepAliveSeconds, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), this::newThread);
+
+        this.workers.allowCoreThreadTimeOut(true);
+        this.buffers = new ArrayBlockingQueue<>(maxThreads);
+    }
+
+    public int getMaxThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * Num of tasks waiting for free worker
+     */
+    public int getQueuedCount() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Num of idle buffers in pool
+     */
+    public int getPooledBuffers() {
+        return buffers.size();
+    }
+
+    /**
+     * Run short task on workers, such as write scripts to process
+     *
+     * @throws RejectedExecutionException if all workers are taken and the queue is full
+     */
+    public void execute(Runnable task) {
+        submit(task);
+    }
+
+    /**
+     * Stop workers, the running tasks are interrupted
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Read lines from stream until end on worker, the line terminators are the same as BufferedReader.
+     * The onEnd will be called after stream closed.
+     *
+     * @throws RejectedExecutionException if all workers are taken and the queue is full
+     */
+    public void readLines(InputStream is, Consumer<String> onLine, Runnable onEnd) {
+        submit(() -> {
+            byte[] buffer = acquire();
+
+            try (InputStream ignored = is) {
+                readLines(is, buffer, onLine);
+            } catch (IOException e) {
+                log.trace("Process stream closed: {}", e.getMessage());
+            } finally {
+                release(buffer);
+                onEnd.run();
+            }
+        });
+    }
+
+    private static void readLines(InputStream is, byte[] buffer, Consumer<String> onLine) throws IOException {
+        // valid bytes in buffer are from start to end
+        int start = 0;
+        int end = 0;
+
+        // bytes of line which is longer than buffer
+        ByteArrayOutputStream overflow = null;
+        boolean isLastCr = false;
+
+        int n;
+        while ((n = is.read(buffer, end, buffer.length - end)) != -1) {
+            int i = end;
+            end += n;
+
+            for (; i < end; i++) {
+                byte b = buffer[i];
+
+                if (b != '\n' && b != '\r') {
+                    isLastCr = false;
+                    continue;
+                }
+
+                // skip '\n' of "\r\n"
+                if (b == '\n' && isLastCr && i == start && overflow == null) {
+                    isLastCr = false;
+                    start = i + 1;
+                    continue;
+                }
+
+                onLine.accept(toLine(buffer, start, i, overflow));
+                overflow = null;
+                isLastCr = b == '\r';
+                start = i + 1;
+            }
+
+            if (start == end) {
+                start = 0;
+                end = 0;
+                continue;
+            }
+
+            if (end < buffer.length) {
+                continue;
+            }
+
+            // buffer is full, move the partial line to the head or overflow if line is longer than buffer
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                continue;
+            }
+
+            if (overflow == null) {
+                overflow = new ByteArrayOutputStream(buffer.length * 2);
+            }
+
+            overflow.write(buffer, 0, end);
+            start = 0;
+            end = 0;
+        }
+
+        if (end > start || overflow != null) {
+            onLine.accept(toLine(buffer, start, end, overflow));
+        }
+    }
+
+    private static String toLine(byte[] buffer, int start, int end, ByteArrayOutputStream overflow) {
+        if (overflow == null) {
+            return new String(buffer, start, end - start, ProcessCharset);
+        }
+
+        overflow.write(buffer, start, end - start);
+        return new String(overflow.toByteArray(), ProcessCharset);
+    }
+
+    /**
+     * Run task on worker, or queue it if all workers are taken. The queued stream is not read until a worker
+     * is free, so it's logged since the process might be blocked on the full pipe.
+     */
+    private void submit(Runnable task) {
+        int num = pending.incrementAndGet();
+
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            log.error("Process io task rejected: {} workers are taken and {} tasks are queued",
+                workers.getMaximumPoolSize(), workers.getQueue().size());
+            throw e;
+        }
+
+        if (num > workers.getMaximumPoolSize()) {
+            log.warn("No free process io worker, task is queued: {} pending of {} workers",
+                num, workers.getMaximumPoolSize());
+        }
+    }
+
+    private Thread newThread(Runnable r) {
+        Thread t = Executors.defaultThreadFactory().newThread(r);
+        t.setName("process-io-" + index.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer == null ? new byte[BufferSize] : buffer;
+    }
+
+    private void release(byte[] buffer) {
+        buffers.offer(buffer);
+    }
+}
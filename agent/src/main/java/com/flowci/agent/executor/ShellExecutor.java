@@ -20,14 +20,15 @@ import com.flowci.domain.Cmd;
 import com.flowci.domain.ExecutedCmd;
 import com.flowci.domain.ExecutedCmd.Status;
 import com.flowci.domain.LogItem;
+import com.flowci.domain.VariableMap;
 import com.flowci.util.UnixHelper;
+import com.google.common.collect.Lists;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -36,15 +37,13 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
@@ -58,15 +57,19 @@ public class ShellExecutor {
 
     private final static String LinuxBash = "/bin/bash";
 
+    /**
+     * The bash is started by setsid if it's available, to be the leader of new process group
+     */
+    final static Path SetSid = findSetSid();
+
     private final static Path DefaultWorkDir =
         Paths.get(System.getProperty("user.home", System.getProperty("user.dir")));
 
-    // 1 mb buffer for std reader
-    private final static int BufferSize = 1024 * 1024 * 1;
-
     private final static int LoggingWaitSeconds = 5;
 
-    private final static int ShutdownWaitSeconds = 0;
+    private final static long PollMillis = 20L;
+
+    private final static int CloseWaitSeconds = 1;
 
     private final static String LineSeparator = System.lineSeparator();
 
@@ -88,35 +91,56 @@ public class ShellExecutor {
     @Getter
     private Process process;
 
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.SECONDS,
-        new LinkedBlockingQueue<>(),
-        r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true);
-            return t;
-        }
-    );
-
     private final CountDownLatch stdThreadCountDown = new CountDownLatch(2);
 
-    private final CountDownLatch logThreadCountDown = new CountDownLatch(1);
+    private final BlockingQueue<LogItem> loggingQueue = new LinkedBlockingQueue<>();
 
-    private final Queue<LogItem> loggingQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Env lines printed after 'endTerm' on stdout
+     */
+    private final StringBuilder envLines = new StringBuilder();
+
+    private long lineNum = 0;
 
     private final String endTerm = String.format("=====EOF-%s=====", UUID.randomUUID());
 
-    public ShellExecutor(Cmd cmd) {
+    /**
+     * Shell session of job to run cmd, the cmd runs in a new process if it's null
+     */
+    private final ShellSession session;
+
+    /**
+     * I/O workers for pipes of new process
+     */
+    private final ProcessIo io;
+
+    public ShellExecutor(Cmd cmd, ProcessIo io) {
+        this(cmd, io, null);
+    }
+
+    public ShellExecutor(Cmd cmd, ProcessIo io, ShellSession session) {
         this.cmd = cmd;
         this.result = new ExecutedCmd(cmd);
+        this.io = io;
+        this.session = session;
 
         // init process builder
-        this.pBuilder = new ProcessBuilder(LinuxBash).directory(getWorkDir(cmd).toFile());
+        List<String> command = Objects.isNull(SetSid)
+            ? Lists.newArrayList(LinuxBash)
+            : Lists.newArrayList(SetSid.toString(), LinuxBash);
+
+        this.pBuilder = new ProcessBuilder(command).directory(getWorkDir(cmd).toFile());
 
         // init inputs env
         this.pBuilder.environment().putAll(cmd.getInputs());
     }
 
     public void run() {
+        if (!Objects.isNull(session)) {
+            runInSession();
+            return;
+        }
+
         try {
             result.setStartAt(new Date());
             result.setStatus(Status.RUNNING);
@@ -128,21 +152,23 @@ public class ShellExecutor {
                 processListener.onStarted(result);
             }
 
-            // thread to send cmd list to bash
-            executor.execute(createCmdListExec(process.getOutputStream(), cmd.getScripts()));
+            // send cmd list to bash and read stdout and stderr to logging queue on shared io workers
+            io.execute(createCmdListExec(process.getOutputStream(), cmd.getScripts()));
+            io.readLines(process.getInputStream(), createStdLineHandler(LogItem.Type.STDOUT), this::onStreamEnd);
+            io.readLines(process.getErrorStream(), createStdLineHandler(LogItem.Type.STDERR), this::onStreamEnd);
 
-            // thread to read stdout and stderr stream and put log to logging queue
-            executor.execute(createStdStreamReader(LogItem.Type.STDOUT, process.getInputStream()));
-            executor.execute(createStdStreamReader(LogItem.Type.STDERR, process.getErrorStream()));
-
-            // thread to make consume logging queue
-            executor.execute(createCmdLoggingReader());
+            // consume logging queue while waiting for max process timeout
+            long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cmd.getTimeout());
+            while (process.isAlive() && System.currentTimeMillis() < timeoutAt) {
+                consumeLogging(PollMillis);
+            }
 
-            // wait for max process timeout
-            if (process.waitFor(cmd.getTimeout(), TimeUnit.SECONDS)) {
-                result.setCode(process.exitValue());
-            } else {
+            if (process.isAlive()) {
+                killGroup("TERM");
+                process.destroy();
                 result.setCode(ExecutedCmd.CODE_TIMEOUT);
+            } else {
+                result.setCode(process.exitValue());
             }
 
             result.setStatusByCode();
@@ -154,13 +180,32 @@ public class ShellExecutor {
 
             log.debug("====== Process executed : {} ======", result.getCode());
 
-            logThreadCountDown.await(LoggingWaitSeconds, TimeUnit.SECONDS);
+            long loggingWaitAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LoggingWaitSeconds);
+            while (!isLoggingFinished() && System.currentTimeMillis() < loggingWaitAt) {
+                consumeLogging(PollMillis);
+            }
+
             log.debug("====== Logging executed ======");
 
-            log.debug("====== Executor Shutdown ======");
+            // the streams are kept open by background process of cmd, closing them does not wake up the
+            // blocked read on linux, so terminate the process group to release the io workers
+            if (stdThreadCountDown.getCount() > 0) {
+                log.debug("Streams are kept open by background process, terminate process group");
+                killGroup("TERM");
+
+                if (!stdThreadCountDown.await(CloseWaitSeconds, TimeUnit.SECONDS)) {
+                    killGroup("KILL");
+                    closeStreams();
+                }
+            }
+
+            if (stdThreadCountDown.getCount() == 0 && envLines.length() > 0) {
+                readEnv(new BufferedReader(new StringReader(envLines.toString())), cmd.getEnvFilters(),
+                    result.getOutput());
+            }
 
         } catch (InterruptedException e) {
-            process.destroy();
+            destroy();
             result.setStatus(Status.KILLED);
             result.setError(e.getMessage());
 
@@ -170,7 +215,7 @@ public class ShellExecutor {
 
             log.debug("====== Interrupted ======");
         } catch (Throwable e) {
-            process.destroy();
+            destroy();
             result.setStatus(Status.EXCEPTION);
             result.setError(e.getMessage());
 
@@ -180,27 +225,140 @@ public class ShellExecutor {
 
             log.warn(e.getMessage());
         } finally {
-            shutdown();
+            for (LoggingListener loggingListener : loggingListeners) {
+                loggingListener.onFinish(lineNum);
+            }
+
             result.setFinishAt(new Date());
             log.debug("====== Process Done ======");
         }
     }
 
-    private void shutdown() {
+    /**
+     * Run cmd in the shell session, the session will be closed if cmd is killed, timeout or got exception,
+     * since the state of it is unknown
+     */
+    private void runInSession() {
+        long[] lineNum = {0};
+
         try {
-            executor.shutdown();
-            if (!executor.awaitTermination(ShutdownWaitSeconds, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+            result.setStartAt(new Date());
+            result.setStatus(Status.RUNNING);
+
+            process = session.getProcess();
+            result.setProcessId(getPid(process));
+
+            for (ProcessListener processListener : processListeners) {
+                processListener.onStarted(result);
+            }
+
+            session.run(cmd, result, item -> {
+                item.setCmdId(cmd.getId());
+                item.setNumber(++lineNum[0]);
+                result.setLogSize(lineNum[0]);
+
+                for (LoggingListener loggingListener : loggingListeners) {
+                    loggingListener.onLogging(item);
+                }
+            });
+
+            result.setStatusByCode();
+            result.setFinishAt(new Date());
+
+            if (result.getStatus() == Status.TIMEOUT) {
+                session.close();
             }
+
+            for (ProcessListener processListener : processListeners) {
+                processListener.onExecuted(result);
+            }
+
+            log.debug("====== Session cmd executed : {} ======", result.getCode());
         } catch (InterruptedException e) {
+            session.close();
+            result.setStatus(Status.KILLED);
+            result.setError(e.getMessage());
+
+            for (ProcessListener processListener : processListeners) {
+                processListener.onException(e);
+            }
+
+            log.debug("====== Interrupted ======");
+        } catch (Throwable e) {
+            session.close();
+            result.setStatus(Status.EXCEPTION);
+            result.setError(e.getMessage());
+
+            for (ProcessListener processListener : processListeners) {
+                processListener.onException(e);
+            }
+
             log.warn(e.getMessage());
+        } finally {
+            for (LoggingListener loggingListener : loggingListeners) {
+                loggingListener.onFinish(lineNum[0]);
+            }
+
+            result.setFinishAt(new Date());
+        }
+    }
+
+    private void destroy() {
+        if (!Objects.isNull(process)) {
+            killGroup("TERM");
+            process.destroy();
+            closeStreams();
+        }
+    }
+
+    private void closeStreams() {
+        try {
+            process.getInputStream().close();
+            process.getErrorStream().close();
+        } catch (IOException e) {
+            log.debug("Unable to close process streams: {}", e.getMessage());
+        }
+    }
+
+    private void killGroup(String signal) {
+        if (!Objects.isNull(SetSid)) {
+            killGroup(getPid(process), signal, CloseWaitSeconds);
+        }
+    }
+
+    /**
+     * Send signal to process group by kill builtin of bash, the pid must be the leader of group
+     */
+    static void killGroup(int pid, String signal, long waitSeconds) {
+        if (pid <= 0) {
+            return;
+        }
+
+        try {
+            String kill = String.format("kill -%s -- -%d 2> /dev/null", signal, pid);
+            Process p = new ProcessBuilder(LinuxBash, "-c", kill).start();
+            p.waitFor(waitSeconds, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            log.debug("Unable to kill process group {}: {}", pid, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Path findSetSid() {
+        for (String path : new String[]{"/usr/bin/setsid", "/bin/setsid"}) {
+            Path setsid = Paths.get(path);
+            if (Files.isExecutable(setsid)) {
+                return setsid;
+            }
         }
+        return null;
     }
 
     /**
-     * Get process id
+     * Get process id, returns -1 if it's not available
      */
-    private int getPid(Process process) {
+    static int getPid(Process process) {
         try {
             Class<?> cProcessImpl = process.getClass();
             Field fPid = cProcessImpl.getDeclaredField("pid");
@@ -238,73 +396,61 @@ public class ShellExecutor {
         };
     }
 
-    private Runnable createCmdLoggingReader() {
-        return () -> {
-            long lineNum = 0;
-
-            try {
-                while (true) {
-                    if (stdThreadCountDown.getCount() == 0 && loggingQueue.size() == 0) {
-                        break;
-                    }
-
-                    LogItem log = loggingQueue.poll();
+    /**
+     * Deliver logs from logging queue to listeners, wait for the first log up to timeout
+     */
+    private void consumeLogging(long timeoutInMillis) throws InterruptedException {
+        LogItem item = loggingQueue.poll(timeoutInMillis, TimeUnit.MILLISECONDS);
 
-                    if (Objects.isNull(log)) {
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException ignored) {
+        while (!Objects.isNull(item)) {
+            item.setCmdId(cmd.getId());
+            item.setNumber(++lineNum);
+            result.setLogSize(lineNum);
 
-                        }
+            for (LoggingListener loggingListener : loggingListeners) {
+                loggingListener.onLogging(item);
+            }
 
-                        continue;
-                    }
+            item = loggingQueue.poll();
+        }
+    }
 
-                    log.setCmdId(cmd.getId());
-                    log.setNumber(++lineNum);
-                    result.setLogSize(lineNum);
+    private boolean isLoggingFinished() {
+        return stdThreadCountDown.getCount() == 0 && loggingQueue.isEmpty();
+    }
 
-                    for (LoggingListener loggingListener : loggingListeners) {
-                        loggingListener.onLogging(log);
-                    }
+    private void onStreamEnd() {
+        stdThreadCountDown.countDown();
+        log.trace(" ===== Std Stream Reader Finish =====");
+    }
 
-                }
-            } finally {
-                for (LoggingListener loggingListener : loggingListeners) {
-                    loggingListener.onFinish(lineNum);
-                }
+    /**
+     * Put line to logging queue, or to env lines if the line is after 'endTerm'
+     */
+    private Consumer<String> createStdLineHandler(final LogItem.Type type) {
+        boolean[] isEnv = {false};
 
-                logThreadCountDown.countDown();
-                log.trace(" ===== Logging Reader Thread Finish =====");
+        return line -> {
+            if (isEnv[0]) {
+                envLines.append(line).append(LineSeparator);
+                return;
             }
-        };
-    }
 
-    private Runnable createStdStreamReader(final LogItem.Type type, final InputStream is) {
-        return () -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is), BufferSize)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (Objects.equals(line, endTerm)) {
-                        readEnv(reader);
-                        break;
-                    }
-                    loggingQueue.add(LogItem.of(type, line));
-                }
-            } catch (IOException ignore) {
-
-            } finally {
-                stdThreadCountDown.countDown();
-                log.debug(" ===== {} Stream Reader Thread Finish =====", type);
+            if (Objects.equals(line, endTerm)) {
+                isEnv[0] = true;
+                return;
             }
+
+            loggingQueue.add(LogItem.of(type, line));
         };
     }
 
     /**
      * Start when find log match 'endTerm', and load all env,
-     * put env item which match 'start with filter' to CmdResult.output map
+     * put env item which match 'start with filter' to output map
      */
-    private void readEnv(final BufferedReader reader) throws IOException {
+    static void readEnv(final BufferedReader reader, final Set<String> filters, final VariableMap output)
+        throws IOException {
         String line;
         String currentKey = null;
         StringBuilder value = null;
@@ -313,9 +459,9 @@ public class ShellExecutor {
             int index = line.indexOf('=');
 
             // reset value builder and current key
-            if (index != -1 && !isMatchEnvFilter(line, cmd.getEnvFilters())) {
+            if (index != -1 && !isMatchEnvFilter(line, filters)) {
                 if (value != null && currentKey != null) {
-                    result.getOutput().putString(currentKey, value.toString());
+                    output.putString(currentKey, value.toString());
                 }
 
                 currentKey = null;
@@ -323,11 +469,11 @@ public class ShellExecutor {
                 continue;
             }
 
-            if (isMatchEnvFilter(line, cmd.getEnvFilters())) {
+            if (isMatchEnvFilter(line, filters)) {
 
                 // put previous env to output and reset
                 if (value != null && currentKey != null) {
-                    result.getOutput().putString(currentKey, value.toString());
+                    output.putString(currentKey, value.toString());
                     value = null;
                     currentKey = null;
                 }
@@ -344,7 +490,7 @@ public class ShellExecutor {
         }
     }
 
-    private boolean isMatchEnvFilter(final String line, final Set<String> filters) {
+    private static boolean isMatchEnvFilter(final String line, final Set<String> filters) {
         for (String filter : filters) {
             if (line.startsWith(filter)) {
                 return true;
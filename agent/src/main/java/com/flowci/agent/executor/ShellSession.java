@@ -0,0 +1,328 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.executor;
+
+import com.flowci.domain.Cmd;
+import com.flowci.domain.ExecutedCmd;
+import com.flowci.domain.LogItem;
+import com.google.common.collect.Lists;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Bash process kept alive for cmds of a job, to avoid process start and environment setup for each step.
+ *
+ * Each cmd is written to a script file and sourced in a subshell, so the exit and options of the cmd
+ * do not affect the session. The end of cmd is delimited by a sentinel with exit code on both stdout and
+ * stderr, and the exports are written to a dedicated file instead of stdout.
+ *
+ * Since the cmd runs in a subshell, the working dir, variables, functions and aliases set by a step are not
+ * carried over to the next step, which is the same as running each step in a new process. The inputs of cmd
+ * are exported for each step, and the outputs are only passed by env filters.
+ *
+ * The bash is started by setsid if it's available, so that close kills the process group including the
+ * processes started in background by steps. Otherwise only the bash process is destroyed on close.
+ *
+ * @author yang
+ */
+@Log4j2
+public class ShellSession implements Closeable {
+
+    private final static String LinuxBash = "/bin/bash";
+
+    private final static Pattern EnvName = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final static int LoggingWaitSeconds = 5;
+
+    private final static int CloseWaitSeconds = 1;
+
+    private final static long PollMillis = 100L;
+
+    private final static String LineSeparator = System.lineSeparator();
+
+    @Getter
+    private final String jobId;
+
+    @Getter
+    private final Process process;
+
+    /**
+     * Bash process is the leader of new process group if started by setsid
+     */
+    private final boolean isGroupLeader;
+
+    private final int pid;
+
+    /**
+     * Dir for cmd script and export files of session
+     */
+    private final Path dir;
+
+    private final BufferedWriter stdin;
+
+    private final BlockingQueue<LogItem> lines = new LinkedBlockingQueue<>();
+
+    private final String sentinel = String.format("=====STEP-END-%s=====", UUID.randomUUID());
+
+    @Getter
+    private volatile long lastUsedAt = System.currentTimeMillis();
+
+    private volatile boolean running = false;
+
+    private final ProcessIo io;
+
+    public ShellSession(String jobId, Path workDir, ProcessIo io) throws IOException {
+        this.jobId = jobId;
+        this.io = io;
+        this.dir = Files.createTempDirectory("flowci-session-");
+        this.isGroupLeader = !Objects.isNull(ShellExecutor.SetSid);
+
+        List<String> command = isGroupLeader
+            ? Lists.newArrayList(ShellExecutor.SetSid.toString(), LinuxBash)
+            : Lists.newArrayList(LinuxBash);
+
+        this.process = new ProcessBuilder(command).directory(workDir.toFile()).start();
+        this.pid = ShellExecutor.getPid(process);
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+
+        try {
+            startReader(LogItem.Type.STDOUT, process.getInputStream());
+            startReader(LogItem.Type.STDERR, process.getErrorStream());
+        } catch (RejectedExecutionException e) {
+            close();
+            throw new IOException("No process io worker for session", e);
+        }
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Session is idle if no cmd running and not used in the idle time
+     */
+    public boolean isIdle(long idleMillis) {
+        return !running && System.currentTimeMillis() - lastUsedAt > idleMillis;
+    }
+
+    /**
+     * Mark session is used, to prevent it from being closed as idle before cmd started
+     */
+    public void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Run cmd in session, the logs are delivered to consumer from the calling thread.
+     * The exit code and exports are set to result, the code is CODE_TIMEOUT if cmd not finished in timeout.
+     */
+    public void run(Cmd cmd, ExecutedCmd result, Consumer<LogItem> logging) throws IOException, InterruptedException {
+        running = true;
+        touch();
+
+        String name = UUID.randomUUID().toString();
+        Path script = dir.resolve(name + ".sh");
+        Path exports = dir.resolve(name + ".env");
+
+        try {
+            writeScript(cmd, script, exports);
+            lines.clear();
+
+            stdin.write(String.format("( . %s ) < /dev/null; echo \"%s $?\"; echo \"%s\" >&2" + LineSeparator,
+                quote(script.toString()), sentinel, sentinel));
+            stdin.flush();
+
+            Integer code = waitForSentinel(cmd.getTimeout(), logging);
+            result.setCode(code);
+
+            if (Files.exists(exports)) {
+                try (BufferedReader reader = Files.newBufferedReader(exports)) {
+                    ShellExecutor.readEnv(reader, cmd.getEnvFilters(), result.getOutput());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(script);
+            Files.deleteIfExists(exports);
+            touch();
+            running = false;
+        }
+    }
+
+    /**
+     * Terminate the process group of session, the processes still alive after the wait are killed
+     */
+    @Override
+    public void close() {
+        killGroup("TERM");
+        process.destroy();
+
+        try {
+            if (!process.waitFor(CloseWaitSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+
+        killGroup("KILL");
+        closeStreams();
+
+        try {
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.debug("Unable to delete session dir {}: {}", dir, e.getMessage());
+        }
+
+        log.debug("Shell session of job {} closed", jobId);
+    }
+
+    /**
+     * Wait for sentinel on stdout for exit code, then on stderr to make sure all logs been delivered
+     */
+    private Integer waitForSentinel(long timeoutInSeconds, Consumer<LogItem> logging) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+        Integer code = null;
+        boolean isStderrEnd = false;
+
+        while (Objects.isNull(code) || !isStderrEnd) {
+            if (Objects.isNull(code) && System.currentTimeMillis() > deadline) {
+                return ExecutedCmd.CODE_TIMEOUT;
+            }
+
+            LogItem item = lines.poll(PollMillis, TimeUnit.MILLISECONDS);
+
+            if (Objects.isNull(item)) {
+                // session exited within cmd
+                if (!process.isAlive() && lines.isEmpty()) {
+                    return Objects.isNull(code) ? process.exitValue() : code;
+                }
+
+                if (!Objects.isNull(code) && System.currentTimeMillis() > deadline) {
+                    return code;
+                }
+
+                continue;
+            }
+
+            if (!item.getContent().startsWith(sentinel)) {
+                logging.accept(item);
+                continue;
+            }
+
+            if (item.getType() == LogItem.Type.STDERR) {
+                isStderrEnd = true;
+                continue;
+            }
+
+            code = Integer.parseInt(item.getContent().substring(sentinel.length()).trim());
+            deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LoggingWaitSeconds);
+        }
+
+        return code;
+    }
+
+    private void writeScript(Cmd cmd, Path script, Path exports) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(script)) {
+            if (cmd.hasWorkDir()) {
+                writer.write("cd " + quote(cmd.getWorkDir()) + LineSeparator);
+            }
+
+            for (Map.Entry<String, String> entry : cmd.getInputs().entrySet()) {
+                if (!EnvName.matcher(entry.getKey()).matches() || Objects.isNull(entry.getValue())) {
+                    log.debug("Input {} cannot be exported in shell session", entry.getKey());
+                    continue;
+                }
+
+                writer.write("export " + entry.getKey() + "=" + quote(entry.getValue()) + LineSeparator);
+            }
+
+            for (String line : cmd.getScripts()) {
+                writer.write(line + LineSeparator);
+            }
+
+            // only written when all scripts been executed, as env printed at the end for process per cmd
+            if (!cmd.getEnvFilters().isEmpty()) {
+                writer.write("env > " + quote(exports.toString()) + LineSeparator);
+            }
+        }
+    }
+
+    /**
+     * Read stream on shared io workers, the worker is released when session closed
+     */
+    private void startReader(LogItem.Type type, InputStream is) {
+        io.readLines(is, line -> {
+            int index = line.indexOf(sentinel);
+
+            if (index < 0) {
+                lines.add(LogItem.of(type, line));
+                return;
+            }
+
+            // the sentinel follows the last line without line separator
+            if (index > 0) {
+                lines.add(LogItem.of(type, line.substring(0, index)));
+            }
+
+            lines.add(LogItem.of(type, line.substring(index)));
+        }, () -> log.trace("Shell session {} stream of job {} closed", type, jobId));
+    }
+
+    private void closeStreams() {
+        try {
+            stdin.close();
+        } catch (IOException ignore) {
+            // stdin might be closed since process exited
+        }
+
+        try {
+            process.getInputStream().close();
+            process.getErrorStream().close();
+        } catch (IOException e) {
+            log.debug("Unable to close streams of session: {}", e.getMessage());
+        }
+    }
+
+    private void killGroup(String signal) {
+        if (isGroupLeader) {
+            ShellExecutor.killGroup(pid, signal, CloseWaitSeconds);
+        }
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.flowci.agent.manager;
 
+import com.flowci.agent.config.AgentProperties;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Agent.Status;
 import com.flowci.domain.Settings;
@@ -40,6 +41,9 @@ public class AgentManagerImpl implements AgentManager {
     @Autowired
     private Settings agentSettings;
 
+    @Autowired
+    private AgentProperties agentProperties;
+
     @PostConstruct
     public void init() {
         register();
@@ -54,10 +58,10 @@ public class AgentManagerImpl implements AgentManager {
         String path = getPath();
 
         if (!zk.exist(path)) {
-            zk.create(CreateMode.EPHEMERAL, path, Status.IDLE.getBytes());
+            zk.create(CreateMode.EPHEMERAL, path, Agent.toNodeData(Status.IDLE, agentProperties.getSlots()));
         }
 
-        log.info("Agent {} been registered on zk", path);
+        log.info("Agent {} been registered on zk with {} slots", path, agentProperties.getSlots());
     }
 
     private boolean hasRootNode() {
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.manager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * @author yang
+ */
+public interface LoggingManager {
+
+    /**
+     * Get path of cmd log file
+     */
+    Path getLogPath(String cmdId);
+
+    /**
+     * Compress the cmd log and upload to server
+     */
+    void upload(String cmdId);
+
+    /**
+     * Write raw log to response, whole file, single byte range or last lines of file
+     *
+     * @param follow keep writing new lines until cmd completed
+     */
+    void write(String cmdId, String range, int tail, boolean follow, HttpServletResponse response)
+        throws IOException;
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.manager;
+
+import com.flowci.agent.config.AgentProperties;
+import com.flowci.agent.event.CmdCompleteEvent;
+import com.flowci.agent.event.CmdEvent;
+import com.flowci.agent.event.CmdReceivedEvent;
+import com.flowci.domain.Jsonable;
+import com.flowci.domain.http.ResponseMessage;
+import com.flowci.util.FileHelper;
+import com.flowci.util.HttpRangeHelper;
+import com.flowci.util.HttpRangeHelper.Range;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Upload compressed cmd log to server after cmd completed, the log will be streamed instead of buffered in memory.
+ *
+ * Raw log is written by FileChannel.transferTo, and followed by polling file size while cmd is running.
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class LoggingManagerImpl implements LoggingManager, ApplicationListener<CmdEvent> {
+
+    private static final String HeaderAgentToken = "Agent-Token";
+
+    private static final MediaType GzipType = MediaType.parseMediaType("application/gzip");
+
+    private static final long FollowIntervalInMillis = 500L;
+
+    private static final SimpleClientHttpRequestFactory HttpClientFactory = new SimpleClientHttpRequestFactory();
+
+    private static final RestTemplate UploadTemplate = new RestTemplate(HttpClientFactory);
+
+    static {
+        HttpClientFactory.setReadTimeout(1000 * 60);
+        HttpClientFactory.setConnectTimeout(1000 * 15);
+        HttpClientFactory.setBufferRequestBody(false);
+        HttpClientFactory.setChunkSize(64 * 1024);
+
+        UploadTemplate.setMessageConverters(Lists.newArrayList(
+            new ResourceHttpMessageConverter(),
+            new MappingJackson2HttpMessageConverter(Jsonable.getMapper())
+        ));
+    }
+
+    @Autowired
+    private Path loggingDir;
+
+    @Autowired
+    private AgentProperties agentProperties;
+
+    private final ThreadPoolTaskExecutor uploadExecutor = createExecutor();
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public Path getLogPath(String cmdId) {
+        return Paths.get(loggingDir.toString(), cmdId + ".log");
+    }
+
+    @Override
+    public void upload(String cmdId) {
+        Path logPath = getLogPath(cmdId);
+
+        if (Files.notExists(logPath)) {
+            log.debug("Log not found for cmd {} at {}", cmdId, logPath);
+            return;
+        }
+
+        Path gzPath = Paths.get(loggingDir.toString(), cmdId + ".log.gz");
+
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzPath))) {
+                Files.copy(logPath, out);
+            }
+
+            URI uri = UriComponentsBuilder.fromHttpUrl(agentProperties.getServerUrl())
+                .pathSegment("agents", "logs", cmdId)
+                .build()
+                .toUri();
+
+            RequestEntity<FileSystemResource> request = RequestEntity.post(uri)
+                .header(HeaderAgentToken, agentProperties.getToken())
+                .contentType(GzipType)
+                .body(new FileSystemResource(gzPath.toFile()));
+
+            ResponseMessage message = UploadTemplate.exchange(request, ResponseMessage.class).getBody();
+            if (message == null || message.getCode() != 200) {
+                log.warn("Unable to upload log of cmd {}: {}", cmdId, message == null ? null : message.getMessage());
+                return;
+            }
+
+            log.debug("Log of cmd {} been uploaded", cmdId);
+        } catch (IOException | RestClientException e) {
+            log.warn("Unable to upload log of cmd {}: {}", cmdId, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(gzPath);
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    @Override
+    public void write(String cmdId, String range, int tail, boolean follow, HttpServletResponse response)
+        throws IOException {
+        Path logPath = getLogPath(cmdId);
+
+        if (Files.notExists(logPath)) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Log does not existed on agent");
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+
+            Range resolved = HttpRangeHelper.resolve(channel, range, tail, response);
+            if (Objects.isNull(resolved)) {
+                return;
+            }
+
+            if (!follow || resolved.isPartial()) {
+                HttpRangeHelper.write(channel, resolved, response);
+                return;
+            }
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            follow(cmdId, channel, resolved.getStart(), out, response);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(CmdEvent event) {
+        if (event instanceof CmdReceivedEvent) {
+            running.add(event.getCmd().getId());
+            return;
+        }
+
+        if (event instanceof CmdCompleteEvent) {
+            String cmdId = ((CmdCompleteEvent) event).getExecuted().getId();
+            running.remove(cmdId);
+            uploadExecutor.execute(() -> upload(cmdId));
+        }
+    }
+
+    /**
+     * Write new bytes of log file until cmd is not running and all bytes are written
+     */
+    private void follow(String cmdId, FileChannel channel, long position, WritableByteChannel out,
+                        HttpServletResponse response) throws IOException {
+        while (true) {
+            long size = channel.size();
+
+            if (size > position) {
+                position += FileHelper.transferTo(channel, position, size - position, out);
+                response.flushBuffer();
+                continue;
+            }
+
+            if (!running.contains(cmdId)) {
+                return;
+            }
+
+            try {
+                Thread.sleep(FollowIntervalInMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private ThreadPoolTaskExecutor createExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setMaxPoolSize(1);
+        executor.setCorePoolSize(1);
+        executor.setQueueCapacity(100);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("log-upload-thread-");
+        executor.initialize();
+        return executor;
+    }
+}
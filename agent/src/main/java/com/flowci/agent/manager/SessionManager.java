@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.manager;
+
+import com.flowci.agent.executor.ShellSession;
+import com.flowci.domain.Cmd;
+import java.nio.file.Path;
+
+/**
+ * Manage shell sessions of jobs, one session per slot
+ *
+ * @author yang
+ */
+public interface SessionManager {
+
+    /**
+     * Get shell session for job of cmd on its slot, the session of other job on the slot will be closed.
+     * Returns null if shell session is disabled or the cmd is not from a job
+     */
+    ShellSession get(Cmd cmd, Path workDir);
+
+    /**
+     * Close the session on slot of cmd when job is ended
+     */
+    void close(Cmd cmd);
+
+    /**
+     * Close sessions of job
+     */
+    void close(String jobId);
+}
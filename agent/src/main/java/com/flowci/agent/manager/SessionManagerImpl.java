@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.manager;
+
+import com.flowci.agent.config.AgentProperties;
+import com.flowci.agent.executor.ProcessIo;
+import com.flowci.agent.executor.ShellSession;
+import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author yang
+ */
+@Log4j2
+@Service
+public class SessionManagerImpl implements SessionManager {
+
+    private static final long IdleCheckSeconds = 30;
+
+    @Autowired
+    private AgentProperties agentProperties;
+
+    @Autowired
+    private ProcessIo processIo;
+
+    /**
+     * Sessions by slot index
+     */
+    private final Map<Integer, ShellSession> sessions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService idleChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "shell-session-idle-checker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void scheduleIdleCheck() {
+        idleChecker.scheduleWithFixedDelay(this::closeIdle, IdleCheckSeconds, IdleCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        idleChecker.shutdownNow();
+        for (ShellSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    @Override
+    public ShellSession get(Cmd cmd, Path workDir) {
+        if (!agentProperties.getShellSession()) {
+            return null;
+        }
+
+        CmdId cmdId = CmdId.parse(cmd.getId());
+        if (Objects.isNull(cmdId)) {
+            return null;
+        }
+
+        // reuse or replace the session of slot atomically, so idle check cannot close it in between
+        String jobId = cmdId.getJobId();
+        return sessions.compute(agentProperties.toSlotIndex(cmd.getSlot()), (slot, session) -> {
+            if (!Objects.isNull(session)) {
+                if (session.isAlive() && Objects.equals(session.getJobId(), jobId)) {
+                    session.touch();
+                    return session;
+                }
+                session.close();
+            }
+
+            try {
+                ShellSession started = new ShellSession(jobId, workDir, processIo);
+                log.debug("Shell session started for job {} on slot {}", jobId, slot);
+                return started;
+            } catch (IOException e) {
+                log.warn("Unable to start shell session, cmd will run in new process: {}", e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void close(Cmd cmd) {
+        ShellSession session = sessions.remove(agentProperties.toSlotIndex(cmd.getSlot()));
+        if (!Objects.isNull(session)) {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close(String jobId) {
+        Iterator<ShellSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            ShellSession session = iterator.next();
+            if (Objects.equals(session.getJobId(), jobId)) {
+                iterator.remove();
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Close sessions which are not used for idle seconds, since core doesn't notify agent the job is ended
+     */
+    private void closeIdle() {
+        long idleMillis = TimeUnit.SECONDS.toMillis(agentProperties.getShellSessionIdleSeconds());
+
+        List<ShellSession> idle = new LinkedList<>();
+
+        // check and remove under the lock of slot which is used by get
+        for (Integer slot : sessions.keySet()) {
+            sessions.computeIfPresent(slot, (key, session) -> {
+                if (session.isIdle(idleMillis)) {
+                    idle.add(session);
+                    return null;
+                }
+                return session;
+            });
+        }
+
+        for (ShellSession session : idle) {
+            session.close();
+            log.debug("Idle shell session of job {} closed", session.getJobId());
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.flowci.agent.executor.LoggingListener;
 import com.flowci.domain.Cmd;
 import com.flowci.domain.LogItem;
 import com.flowci.util.StringHelper;
+import io.micrometer.core.instrument.Counter;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -31,22 +32,25 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
  */
 public class CmdLoggingSender implements LoggingListener {
 
-    private static final MessageProperties MessageProperties = new MessageProperties();
-
     private final Cmd cmd;
 
     private final RabbitTemplate rabbitTemplate;
 
     private final String logsExchange;
 
-    public CmdLoggingSender(Cmd cmd, RabbitTemplate rabbitTemplate, String logsExchange) {
+    private final Counter linesCounter;
+
+    public CmdLoggingSender(Cmd cmd, RabbitTemplate rabbitTemplate, String logsExchange, Counter linesCounter) {
         this.cmd = cmd;
         this.rabbitTemplate = rabbitTemplate;
         this.logsExchange = logsExchange;
+        this.linesCounter = linesCounter;
     }
 
     @Override
     public void onLogging(LogItem item) {
-        rabbitTemplate.send(logsExchange, StringHelper.EMPTY, new Message(item.toBytes(), MessageProperties));
+        // properties cannot be shared since timestamp will be set before publish
+        rabbitTemplate.send(logsExchange, StringHelper.EMPTY, new Message(item.toBytes(), new MessageProperties()));
+        linesCounter.increment();
     }
 }
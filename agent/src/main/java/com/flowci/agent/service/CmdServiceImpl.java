@@ -19,31 +19,49 @@ package com.flowci.agent.service;
 import static com.flowci.agent.service.CmdServiceImpl.Variables.AGENT_PLUGIN_PATH;
 import static com.flowci.agent.service.CmdServiceImpl.Variables.AGENT_WORKSPACE;
 
+import com.flowci.agent.config.AgentProperties;
 import com.flowci.agent.dao.ExecutedCmdDao;
 import com.flowci.agent.dao.ReceivedCmdDao;
 import com.flowci.agent.domain.AgentExecutedCmd;
 import com.flowci.agent.domain.AgentReceivedCmd;
 import com.flowci.agent.event.CmdCompleteEvent;
 import com.flowci.agent.event.CmdReceivedEvent;
+import com.flowci.agent.executor.ProcessIo;
 import com.flowci.agent.executor.ProcessListener;
 import com.flowci.agent.executor.ShellExecutor;
+import com.flowci.agent.executor.ShellSession;
+import com.flowci.agent.manager.LoggingManager;
 import com.flowci.agent.manager.PluginManager;
+import com.flowci.agent.manager.SessionManager;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
 import com.flowci.domain.CmdType;
 import com.flowci.domain.ExecutedCmd;
 import com.flowci.domain.ExecutedCmd.Status;
+import com.flowci.domain.PlanStep;
+import com.flowci.domain.TimelineEntry;
+import com.flowci.domain.TimelineEntry.Phase;
+import com.flowci.domain.VariableMap;
 import com.flowci.exception.NotAvailableException;
 import com.flowci.exception.NotFoundException;
+import com.flowci.util.FileHelper;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -61,6 +79,9 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
 /**
+ * Execute shell cmds concurrently up to the num of slots, each slot has its own workspace.
+ * The steps of plan cmd are executed one by one in the same slot, and reported to core as executed cmd of each step
+ *
  * @author yang
  */
 @Log4j2
@@ -88,7 +109,7 @@ public class CmdServiceImpl implements CmdService {
     private Path workspace;
 
     @Autowired
-    private Path loggingDir;
+    private AgentProperties agentProperties;
 
     @Autowired
     private Queue callbackQueue;
@@ -102,6 +123,15 @@ public class CmdServiceImpl implements CmdService {
     @Autowired
     private PluginManager pluginManager;
 
+    @Autowired
+    private LoggingManager loggingManager;
+
+    @Autowired
+    private SessionManager sessionManager;
+
+    @Autowired
+    private ProcessIo processIo;
+
     @Autowired
     private ReceivedCmdDao receivedCmdDao;
 
@@ -111,11 +141,29 @@ public class CmdServiceImpl implements CmdService {
     @Autowired
     private ApplicationContext context;
 
-    private ThreadPoolTaskExecutor cmdThreadPool = createExecutor();
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter logLinesCounter;
+
+    private ThreadPoolTaskExecutor cmdThreadPool;
 
-    private final Object lock = new Object();
+    /**
+     * Running executions by cmd id
+     */
+    private final Map<String, Execution> executions = new ConcurrentHashMap<>();
 
-    private Cmd current;
+    @PostConstruct
+    public void initExecutor() {
+        cmdThreadPool = createExecutor(agentProperties.getSlots());
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        logLinesCounter = Counter.builder("flowci.agent.log.lines")
+            .description("Num of log lines sent by agent")
+            .register(meterRegistry);
+    }
 
     @Override
     public Cmd get(String id) {
@@ -161,48 +209,39 @@ public class CmdServiceImpl implements CmdService {
 
     @Override
     public void execute(Cmd cmd) {
-        if (cmd.getType() == CmdType.SHELL) {
-            if (hasCmdRunning()) {
-                log.debug("Cannot start cmd since {} is running", current);
+        if (cmd.getType() == CmdType.SHELL || cmd.getType() == CmdType.PLAN) {
+            Execution execution = new Execution();
+            if (!tryAcquire(cmd, execution)) {
                 return;
             }
 
-            setCurrent(save(cmd));
-            context.publishEvent(new CmdReceivedEvent(this, current));
-
-            // install or update required plugin
-            if (cmd.hasPlugin()) {
-                try {
-                    pluginManager.load(cmd.getPlugin());
-                } catch (NotAvailableException e) {
-                    ExecutedCmd result = new ExecutedCmd(cmd);
-                    result.setStatus(Status.EXCEPTION);
-                    result.setError(e.getMessage());
-                    onAfterExecute(result);
-                    return;
-                }
+            try {
+                Path slotWorkspace = getSlotWorkspace(cmd);
+
+                execution.future = cmdThreadPool.submit(() -> {
+                    try {
+                        if (cmd.getType() == CmdType.PLAN) {
+                            runPlan(cmd, slotWorkspace, execution);
+                            return;
+                        }
+
+                        ExecutedCmd result = runShell(cmd, slotWorkspace);
+                        onComplete(cmd.getId(), cmd, result, true);
+                    } finally {
+                        executions.remove(cmd.getId());
+                    }
+                });
+            } catch (RuntimeException e) {
+                // release the slot if cmd cannot be started
+                executions.remove(cmd.getId());
+                throw e;
             }
 
-            cmdThreadPool.execute(() -> {
-                current.setWorkDir(workspace.toString());
-                current.getInputs().put(AGENT_WORKSPACE, current.getWorkDir());
-                current.getInputs().put(AGENT_PLUGIN_PATH, pluginManager.getPath().toString());
-
-                ShellExecutor cmdExecutor = new ShellExecutor(current);
-                cmdExecutor.getProcessListeners().add(new CmdProcessListener(cmd));
-                cmdExecutor.getLoggingListeners().add(new CmdLoggingWriter(cmd, getCmdLogPath(cmd.getId())));
-                cmdExecutor.getLoggingListeners().add(new CmdLoggingSender(cmd, queueTemplate, logsExchange));
-                cmdExecutor.run();
-                onAfterExecute(cmdExecutor.getResult());
-            });
-
             return;
         }
 
         if (cmd.getType() == CmdType.KILL) {
-            cmdThreadPool.setWaitForTasksToCompleteOnShutdown(false);
-            cmdThreadPool.shutdown();
-            cmdThreadPool.initialize();
+            kill(cmd);
             return;
         }
 
@@ -219,40 +258,207 @@ public class CmdServiceImpl implements CmdService {
         execute(received);
     }
 
+    /**
+     * Run steps of plan one by one, it moves to the next step only if the step is success and not killed.
+     * The outputs of step are applied to the following steps, except the step environments
+     */
+    private void runPlan(Cmd planCmd, Path slotWorkspace, Execution execution) {
+        List<PlanStep> plan = planCmd.getPlan();
+        VariableMap outputs = new VariableMap();
+        int index = plan.isEmpty() ? PlanStep.END : 0;
+
+        while (index != PlanStep.END && !execution.cancelled) {
+            PlanStep step = plan.get(index);
+            Cmd cmd = step.getCmd();
+            cmd.setSlot(planCmd.getSlot());
+
+            for (Map.Entry<String, String> output : outputs.entrySet()) {
+                if (!step.getEnvironments().contains(output.getKey())) {
+                    cmd.getInputs().put(output.getKey(), output.getValue());
+                }
+            }
+
+            ExecutedCmd result = runShell(cmd, slotWorkspace);
+            boolean isSuccess = result.isSuccess() && result.getStatus() != Status.KILLED;
+            boolean isLast = !isSuccess || step.getOnSuccess() == PlanStep.END || execution.cancelled;
+
+            onComplete(planCmd.getId(), cmd, result, isLast);
+            if (isLast) {
+                return;
+            }
+
+            outputs.merge(result.getOutput());
+            index = step.getOnSuccess();
+        }
+    }
+
+    private ExecutedCmd runShell(Cmd cmd, Path slotWorkspace) {
+        // phases before process started, will be reported to core with executed cmd
+        List<TimelineEntry> timeline = new LinkedList<>();
+        timeline.add(TimelineEntry.of(Phase.CMD_RECEIVED, null));
+
+        Cmd received = save(cmd);
+        received.setWorkDir(slotWorkspace.toString());
+        context.publishEvent(new CmdReceivedEvent(this, received));
+
+        // install or update required plugin
+        if (cmd.hasPlugin()) {
+            try {
+                pluginManager.load(cmd.getPlugin());
+                timeline.add(TimelineEntry.of(Phase.PLUGIN_LOADED, cmd.getPlugin()));
+            } catch (NotAvailableException e) {
+                ExecutedCmd result = new ExecutedCmd(cmd);
+                result.setStatus(Status.EXCEPTION);
+                result.setError(e.getMessage());
+                result.getTimeline().addAll(timeline);
+                onAfterExecute(result);
+                return result;
+            }
+        }
+
+        received.getInputs().put(AGENT_WORKSPACE, received.getWorkDir());
+        received.getInputs().put(AGENT_PLUGIN_PATH, pluginManager.getPath().toString());
+
+        ShellSession session = sessionManager.get(cmd, slotWorkspace);
+
+        ShellExecutor cmdExecutor = new ShellExecutor(received, processIo, session);
+        cmdExecutor.getProcessListeners().add(new CmdProcessListener(cmd));
+        cmdExecutor.getLoggingListeners().add(new CmdLoggingWriter(cmd, getCmdLogPath(cmd.getId())));
+        cmdExecutor.getLoggingListeners().add(new CmdLoggingSender(cmd, queueTemplate, logsExchange, logLinesCounter));
+        cmdExecutor.run();
+
+        // close session when the job ends on the last step or a failed step
+        ExecutedCmd result = cmdExecutor.getResult();
+        boolean isFailure = !result.isSuccess() || result.getStatus() == Status.KILLED;
+        if (cmd.getLastOfJob() || isFailure) {
+            sessionManager.close(cmd);
+        }
+
+        result.getTimeline().addAll(0, timeline);
+        onAfterExecute(result);
+        return result;
+    }
+
     private void onAfterExecute(ExecutedCmd executed) {
         AgentExecutedCmd agentExecutedCmd = new AgentExecutedCmd();
         BeanUtils.copyProperties(executed, agentExecutedCmd);
         executedCmdDao.save(agentExecutedCmd);
+    }
 
+    private void sendCallback(ExecutedCmd executed) {
         queueTemplate.convertAndSend(callbackQueue.getName(), executed);
-        setCurrent(null);
-        context.publishEvent(new CmdCompleteEvent(this, current, executed));
     }
 
-    private ExecutedCmd getExecutedCmd(String id) {
-        Optional<AgentExecutedCmd> optional = executedCmdDao.findById(id);
+    /**
+     * Send callback and publish cmd complete event. The slot of execution is released before the callback
+     * if it's the last cmd, since core could dispatch the next cmd to the slot once the callback is handled
+     */
+    private void onComplete(String executionId, Cmd cmd, ExecutedCmd executed, boolean isLast) {
+        if (isLast) {
+            executions.remove(executionId);
+        }
 
-        if (optional.isPresent()) {
-            return optional.get();
+        sendCallback(executed);
+        context.publishEvent(new CmdCompleteEvent(this, cmd, executed));
+    }
+
+    /**
+     * Register execution of cmd if it's not running and has free slot
+     */
+    private boolean tryAcquire(Cmd cmd, Execution execution) {
+        int running;
+
+        synchronized (executions) {
+            if (executions.containsKey(cmd.getId())) {
+                log.debug("Cmd {} is already running", cmd.getId());
+                return false;
+            }
+
+            running = executions.size();
+            if (running < agentProperties.getSlots()) {
+                executions.put(cmd.getId(), execution);
+                return true;
+            }
         }
 
-        throw new NotFoundException("Executed Cmd {0} is not found", id);
+        log.warn("Cannot start cmd {} since all {} slots are running", cmd.getId(), running);
+        reject(cmd, "No free slot on agent, " + running + " cmds are running");
+        return false;
     }
 
-    private Cmd getCurrent() {
-        synchronized (lock) {
-            return current;
+    /**
+     * Report cmd as exception to core, the first step is reported for plan cmd since it has the same id
+     */
+    private void reject(Cmd cmd, String error) {
+        Cmd target = cmd;
+        if (cmd.getType() == CmdType.PLAN && !cmd.getPlan().isEmpty()) {
+            target = cmd.getPlan().get(0).getCmd();
         }
+
+        ExecutedCmd result = new ExecutedCmd(target);
+        result.setStatus(Status.EXCEPTION);
+        result.setError(error);
+        result.setFinishAt(new Date());
+        onAfterExecute(result);
+        sendCallback(result);
     }
 
-    private void setCurrent(Cmd cmd) {
-        synchronized (lock) {
-            current = cmd;
+    /**
+     * Kill the execution of job which the kill cmd id targets, so the plan of job can be killed by the
+     * cmd id of any step. All executions will be killed if the kill cmd doesn't target a cmd
+     */
+    private void kill(Cmd killCmd) {
+        CmdId target = CmdId.parse(killCmd.getId());
+        boolean killAll = Objects.isNull(target);
+
+        for (Map.Entry<String, Execution> entry : executions.entrySet()) {
+            if (killAll || isSameJob(target, entry.getKey())) {
+                entry.getValue().cancel();
+                continue;
+            }
+
+            log.debug("Cmd {} is not the target to kill", entry.getKey());
+        }
+
+        // tear down shell session after the running cmd been interrupted
+        if (!killAll) {
+            sessionManager.close(target.getJobId());
         }
     }
 
-    private boolean hasCmdRunning() {
-        return getCurrent() != null && cmdThreadPool.getActiveCount() > 0;
+    private static boolean isSameJob(CmdId target, String cmdId) {
+        CmdId running = CmdId.parse(cmdId);
+        return !Objects.isNull(running) && Objects.equals(running.getJobId(), target.getJobId());
+    }
+
+    /**
+     * Workspace of slot of cmd, the agent workspace is used directly if it has only one slot
+     */
+    private Path getSlotWorkspace(Cmd cmd) {
+        int slots = agentProperties.getSlots();
+        if (slots <= 1) {
+            return workspace;
+        }
+
+        int slot = agentProperties.toSlotIndex(cmd.getSlot());
+
+        try {
+            Path slotsDir = FileHelper.createDirectory(workspace.resolve("slots"));
+            return FileHelper.createDirectory(slotsDir.resolve(Integer.toString(slot)));
+        } catch (IOException e) {
+            log.warn("Unable to create workspace for slot {}: {}", slot, e.getMessage());
+            return workspace;
+        }
+    }
+
+    private ExecutedCmd getExecutedCmd(String id) {
+        Optional<AgentExecutedCmd> optional = executedCmdDao.findById(id);
+
+        if (optional.isPresent()) {
+            return optional.get();
+        }
+
+        throw new NotFoundException("Executed Cmd {0} is not found", id);
     }
 
     private Cmd save(Cmd cmd) {
@@ -263,11 +469,13 @@ public class CmdServiceImpl implements CmdService {
         return receivedCmdDao.save(agentCmd);
     }
 
-    private ThreadPoolTaskExecutor createExecutor() {
+    private ThreadPoolTaskExecutor createExecutor(int slots) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setMaxPoolSize(1);
-        executor.setCorePoolSize(1);
-        executor.setQueueCapacity(0);
+        executor.setMaxPoolSize(slots);
+        executor.setCorePoolSize(slots);
+
+        // the num of executions is limited by slots, the queue is for the thread not returned to pool yet
+        executor.setQueueCapacity(slots);
         executor.setDaemon(true);
         executor.setThreadNamePrefix("cmd-exec-thread-");
         executor.initialize();
@@ -275,7 +483,21 @@ public class CmdServiceImpl implements CmdService {
     }
 
     private Path getCmdLogPath(String id) {
-        return Paths.get(loggingDir.toString(), id + ".log");
+        return loggingManager.getLogPath(id);
+    }
+
+    private static class Execution {
+
+        private volatile Future<?> future;
+
+        private volatile boolean cancelled = false;
+
+        void cancel() {
+            cancelled = true;
+            if (!Objects.isNull(future)) {
+                future.cancel(true);
+            }
+        }
     }
 
     private class CmdProcessListener implements ProcessListener {
@@ -16,6 +16,7 @@
 
 package com.flowci.agent.test;
 
+import com.flowci.agent.config.AgentProperties;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Settings;
 import com.flowci.domain.Settings.RabbitMQ;
@@ -57,4 +58,17 @@ public class AgentConfigTest extends SpringScenario {
 
         Assert.assertEquals("queue.jobs.callback.test", agentSettings.getCallbackQueueName());
     }
+
+    @Test
+    public void should_normalize_slot_of_cmd_to_slot_index() {
+        AgentProperties properties = new AgentProperties();
+        properties.setSlots(4);
+
+        Assert.assertEquals(0, properties.toSlotIndex(null));
+        Assert.assertEquals(1, properties.toSlotIndex(5));
+        Assert.assertEquals(3, properties.toSlotIndex(-1));
+
+        properties.setSlots(1);
+        Assert.assertEquals(0, properties.toSlotIndex(5));
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.test.executor;
+
+import com.flowci.agent.executor.ProcessIo;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ProcessIoTest {
+
+    private final ProcessIo io = new ProcessIo(1, 1);
+
+    @After
+    public void shutdown() {
+        io.shutdown();
+    }
+
+    @Test
+    public void should_read_lines_with_different_terminators() throws Throwable {
+        List<String> lines = readLines("first\nsecond\r\nthird\rfourth\n\nlast");
+
+        Assert.assertEquals(6, lines.size());
+        Assert.assertEquals("first", lines.get(0));
+        Assert.assertEquals("second", lines.get(1));
+        Assert.assertEquals("third", lines.get(2));
+        Assert.assertEquals("fourth", lines.get(3));
+        Assert.assertEquals("", lines.get(4));
+        Assert.assertEquals("last", lines.get(5));
+    }
+
+    @Test
+    public void should_read_line_longer_than_buffer() throws Throwable {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200 * 1024; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+
+        String longLine = builder.toString();
+        List<String> lines = readLines("short\n" + longLine + "\nend\n");
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("short", lines.get(0));
+        Assert.assertEquals(longLine, lines.get(1));
+        Assert.assertEquals("end", lines.get(2));
+    }
+
+    @Test
+    public void should_queue_read_and_reject_when_workers_are_taken() throws Throwable {
+        // init: the only worker is taken by stream which is kept open
+        PipedOutputStream out = new PipedOutputStream();
+        CountDownLatch pinnedEnd = new CountDownLatch(1);
+        io.readLines(new PipedInputStream(out), line -> {}, pinnedEnd::countDown);
+
+        // when: read the other stream
+        InputStream is = new ByteArrayInputStream("first\nsecond".getBytes(Charset.defaultCharset()));
+        List<String> lines = new CopyOnWriteArrayList<>();
+        CountDownLatch queuedEnd = new CountDownLatch(1);
+        io.readLines(is, lines::add, queuedEnd::countDown);
+
+        // then: it's queued until the worker is free
+        Assert.assertEquals(1, io.getQueuedCount());
+        Assert.assertFalse(queuedEnd.await(1, TimeUnit.SECONDS));
+
+        // then: the task is rejected since the queue is full
+        try {
+            io.execute(() -> {});
+            Assert.fail();
+        } catch (RejectedExecutionException ignore) {
+
+        }
+
+        // when: close the pinned stream
+        out.close();
+
+        // then: the queued stream is read
+        Assert.assertTrue(pinnedEnd.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(queuedEnd.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, lines.size());
+    }
+
+    private List<String> readLines(String content) throws InterruptedException {
+        InputStream is = new ByteArrayInputStream(content.getBytes(Charset.defaultCharset()));
+        List<String> lines = new CopyOnWriteArrayList<>();
+        CountDownLatch end = new CountDownLatch(1);
+
+        io.readLines(is, lines::add, end::countDown);
+        Assert.assertTrue(end.await(10, TimeUnit.SECONDS));
+        return lines;
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.flowci.agent.test.executor;
 
+import com.flowci.agent.executor.ProcessIo;
 import com.flowci.agent.executor.ShellExecutor;
 import com.flowci.domain.LogItem;
 import com.flowci.agent.executor.LoggingListener;
@@ -27,6 +28,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -35,6 +38,8 @@ import org.junit.Test;
  */
 public class ShellExecutorTest {
 
+    private final ProcessIo io = new ProcessIo(6, 6);
+
     private LoggingListener logListener = new LoggingListener() {
 
         @Override
@@ -43,6 +48,11 @@ public class ShellExecutorTest {
         }
     };
 
+    @After
+    public void shutdown() {
+        io.shutdown();
+    }
+
     @Test
     public void should_execute_command_with_correct_event() throws Throwable {
         ClassLoader loader = this.getClass().getClassLoader();
@@ -54,7 +64,7 @@ public class ShellExecutorTest {
         cmd.setEnvFilters(Sets.newHashSet("CMD_RUNNER_TEST_", "OUTPUT_2"));
 
         // run test.sh and export var start with CMD_RUNNER_TEST_ and OUTPUT_2
-        ShellExecutor executor = new ShellExecutor(cmd);
+        ShellExecutor executor = new ShellExecutor(cmd, io);
         executor.getLoggingListeners().add(logListener);
         executor.run();
 
@@ -82,7 +92,7 @@ public class ShellExecutorTest {
         cmd.setScripts(Lists.newArrayList("set -e", String.format("source %s", path)));
         cmd.setEnvFilters(Sets.newHashSet("CMD_RUNNER_TEST"));
 
-        ShellExecutor executor = new ShellExecutor(cmd);
+        ShellExecutor executor = new ShellExecutor(cmd, io);
         executor.run();
 
         ExecutedCmd result = executor.getResult();
@@ -96,7 +106,7 @@ public class ShellExecutorTest {
         cmd.setScripts(Lists.newArrayList("echo '--- start ---' && sleep 9999 && echo '--- end ---'"));
         cmd.setTimeout(2L);
 
-        ShellExecutor executor = new ShellExecutor(cmd);
+        ShellExecutor executor = new ShellExecutor(cmd, io);
         executor.run();
 
         ExecutedCmd result = executor.getResult();
@@ -104,4 +114,23 @@ public class ShellExecutorTest {
         Assert.assertEquals(Status.TIMEOUT, result.getStatus());
     }
 
+    @Test
+    public void should_release_io_workers_when_background_process_keeps_streams_open() throws Throwable {
+        // init: the background process inherits stdout and stderr of cmd
+        Cmd cmd = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        cmd.setScripts(Lists.newArrayList("echo '--- start ---'", "sleep 999 &"));
+
+        // when:
+        ShellExecutor executor = new ShellExecutor(cmd, io);
+        executor.run();
+
+        // then: cmd is finished and the readers of streams are released
+        Assert.assertEquals(Status.SUCCESS, executor.getResult().getStatus());
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (io.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(0, io.getActiveCount());
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.agent.test.executor;
+
+import com.flowci.agent.executor.LoggingListener;
+import com.flowci.agent.executor.ProcessIo;
+import com.flowci.agent.executor.ShellExecutor;
+import com.flowci.agent.executor.ShellSession;
+import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdType;
+import com.flowci.domain.ExecutedCmd;
+import com.flowci.domain.ExecutedCmd.Status;
+import com.flowci.domain.LogItem;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ShellSessionTest {
+
+    private Path workDir;
+
+    private ShellSession session;
+
+    private final ProcessIo io = new ProcessIo(4, 4);
+
+    @Before
+    public void init() throws IOException {
+        workDir = Files.createTempDirectory("shell-session-test-");
+        session = new ShellSession("job.id", workDir, io);
+    }
+
+    @After
+    public void close() throws IOException {
+        session.close();
+        io.shutdown();
+        Files.deleteIfExists(workDir);
+    }
+
+    @Test
+    public void should_run_cmds_in_the_same_session() {
+        // when: run first cmd which exports var
+        Cmd first = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        first.setScripts(Lists.newArrayList("echo first", "export CMD_RUNNER_TEST_1=test1"));
+        first.setEnvFilters(Sets.newHashSet("CMD_RUNNER_TEST_"));
+        first.getInputs().putString("HELLO", "hello 'world'");
+
+        List<LogItem> logs = new CopyOnWriteArrayList<>();
+        ShellExecutor executor = new ShellExecutor(first, io, session);
+        executor.getLoggingListeners().add(new LoggingListener() {
+            @Override
+            public void onLogging(LogItem item) {
+                logs.add(item);
+            }
+        });
+        executor.run();
+
+        // then: output from export file and logs without sentinel
+        ExecutedCmd result = executor.getResult();
+        Assert.assertEquals(Status.SUCCESS, result.getStatus());
+        Assert.assertEquals("test1", result.getOutput().get("CMD_RUNNER_TEST_1"));
+        Assert.assertEquals(1, logs.size());
+        Assert.assertEquals("first", logs.get(0).getContent());
+        Assert.assertEquals(1L, logs.get(0).getNumber());
+
+        // when: run cmd failed with set -e
+        Cmd failure = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        failure.setScripts(Lists.newArrayList("set -e", "echo $HELLO", "exit 2"));
+        failure.setEnvFilters(Sets.newHashSet("CMD_RUNNER_TEST_"));
+
+        executor = new ShellExecutor(failure, io, session);
+        executor.run();
+
+        // then: exports of previous cmd are not kept, and session still alive
+        result = executor.getResult();
+        Assert.assertEquals(2, result.getCode().intValue());
+        Assert.assertEquals(Status.EXCEPTION, result.getStatus());
+        Assert.assertEquals(0, result.getOutput().size());
+        Assert.assertTrue(session.isAlive());
+
+        // when: run cmd with inputs in the same process
+        Cmd third = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        third.setScripts(Lists.newArrayList("export CMD_RUNNER_TEST_2=\"$HELLO\""));
+        third.setEnvFilters(Sets.newHashSet("CMD_RUNNER_TEST_"));
+        third.getInputs().putString("HELLO", "hello 'world'");
+
+        executor = new ShellExecutor(third, io, session);
+        executor.run();
+
+        result = executor.getResult();
+        Assert.assertEquals(Status.SUCCESS, result.getStatus());
+        Assert.assertEquals("hello 'world'", result.getOutput().get("CMD_RUNNER_TEST_2"));
+        Assert.assertNull(result.getOutput().get("CMD_RUNNER_TEST_1"));
+    }
+
+    @Test
+    public void should_close_session_when_cmd_timeout() {
+        Cmd cmd = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        cmd.setScripts(Lists.newArrayList("echo '--- start ---' && sleep 9999 && echo '--- end ---'"));
+        cmd.setTimeout(2L);
+
+        ShellExecutor executor = new ShellExecutor(cmd, io, session);
+        executor.run();
+
+        ExecutedCmd result = executor.getResult();
+        Assert.assertEquals(Status.TIMEOUT, result.getStatus());
+        Assert.assertFalse(session.isAlive());
+    }
+
+    @Test
+    public void should_kill_background_process_of_step_when_session_closed() throws Exception {
+        Path pidFile = workDir.resolve("bg.pid");
+
+        Cmd cmd = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
+        cmd.setScripts(Lists.newArrayList("sleep 9999 > /dev/null 2>&1 &", "echo $! > " + pidFile));
+
+        ShellExecutor executor = new ShellExecutor(cmd, io, session);
+        executor.run();
+        Assert.assertEquals(Status.SUCCESS, executor.getResult().getStatus());
+
+        String pid = new String(Files.readAllBytes(pidFile)).trim();
+        Assert.assertTrue(isRunning(pid));
+
+        // when:
+        session.close();
+        Files.deleteIfExists(pidFile);
+
+        // then: background process in the process group of session is killed
+        Thread.sleep(500);
+        Assert.assertFalse(isRunning(pid));
+    }
+
+    /**
+     * The killed process might be a zombie if it's not reaped by init
+     */
+    private static boolean isRunning(String pid) throws IOException, InterruptedException {
+        Process ps = new ProcessBuilder("ps", "-o", "stat=", "-p", pid).start();
+        String stat = new String(ByteStreams.toByteArray(ps.getInputStream())).trim();
+        ps.waitFor();
+        return !stat.isEmpty() && !stat.startsWith("Z");
+    }
+}
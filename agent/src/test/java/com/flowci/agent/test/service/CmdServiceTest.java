@@ -27,10 +27,12 @@ import com.flowci.agent.service.CmdService;
 import com.flowci.agent.test.SpringScenario;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
 import com.flowci.domain.CmdType;
 import com.flowci.domain.ExecutedCmd;
 import com.flowci.domain.ExecutedCmd.Status;
 import com.flowci.domain.ObjectWrapper;
+import com.flowci.domain.PlanStep;
 import com.flowci.domain.Settings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -41,13 +43,19 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
@@ -68,6 +76,9 @@ public class CmdServiceTest extends SpringScenario {
     @Autowired
     private RabbitTemplate queueTemplate;
 
+    @Autowired
+    private Queue callbackQueue;
+
     @Autowired
     private Settings agentSettings;
 
@@ -211,6 +222,81 @@ public class CmdServiceTest extends SpringScenario {
         Assert.assertNotNull(executed.getFinishAt());
     }
 
+    @Test
+    public void should_execute_plan_and_apply_outputs_to_next_step() throws InterruptedException {
+        // init: plan with two steps, the second one uses output of the first one
+        String jobId = UUID.randomUUID().toString();
+
+        Cmd first = new Cmd(new CmdId(jobId, "root/first").toString(), CmdType.SHELL);
+        first.setScripts(Lists.newArrayList("export CMD_RUNNER_FIRST=hello"));
+        first.setEnvFilters(Sets.newHashSet("CMD_RUNNER"));
+
+        Cmd second = new Cmd(new CmdId(jobId, "root/second").toString(), CmdType.SHELL);
+        second.setScripts(Lists.newArrayList("export CMD_RUNNER_SECOND=\"$CMD_RUNNER_FIRST $STEP_ENV\""));
+        second.setEnvFilters(Sets.newHashSet("CMD_RUNNER"));
+        second.getInputs().putString("STEP_ENV", "step");
+
+        PlanStep firstStep = new PlanStep(first, Collections.emptySet());
+        firstStep.setOnSuccess(1);
+        PlanStep secondStep = new PlanStep(second, Sets.newHashSet("STEP_ENV"));
+
+        Cmd plan = new Cmd(first.getId(), CmdType.PLAN);
+        plan.setPlan(Lists.newArrayList(firstStep, secondStep));
+
+        // when:
+        CountDownLatch counter = new CountDownLatch(2);
+        List<ExecutedCmd> executed = new CopyOnWriteArrayList<>();
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdCompleteEvent>) event -> {
+            executed.add(event.getExecuted());
+            counter.countDown();
+        });
+
+        cmdService.execute(plan);
+
+        // then: both steps are executed in order
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(first.getId(), executed.get(0).getId());
+        Assert.assertEquals(Status.SUCCESS, executed.get(0).getStatus());
+
+        Assert.assertEquals(second.getId(), executed.get(1).getId());
+        Assert.assertEquals(Status.SUCCESS, executed.get(1).getStatus());
+        Assert.assertEquals("hello step", executed.get(1).getOutput().getString("CMD_RUNNER_SECOND"));
+    }
+
+    @Test
+    public void should_stop_plan_when_step_failed() throws InterruptedException {
+        // init:
+        String jobId = UUID.randomUUID().toString();
+
+        Cmd first = new Cmd(new CmdId(jobId, "root/first").toString(), CmdType.SHELL);
+        first.setScripts(Lists.newArrayList("set -e", "exit 1"));
+
+        Cmd second = new Cmd(new CmdId(jobId, "root/second").toString(), CmdType.SHELL);
+        second.setScripts(Lists.newArrayList("echo second"));
+
+        PlanStep firstStep = new PlanStep(first, Collections.emptySet());
+        firstStep.setOnSuccess(1);
+
+        Cmd plan = new Cmd(first.getId(), CmdType.PLAN);
+        plan.setPlan(Lists.newArrayList(firstStep, new PlanStep(second, Collections.emptySet())));
+
+        // when:
+        CountDownLatch counter = new CountDownLatch(2);
+        List<ExecutedCmd> executed = new CopyOnWriteArrayList<>();
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdCompleteEvent>) event -> {
+            executed.add(event.getExecuted());
+            counter.countDown();
+        });
+
+        cmdService.execute(plan);
+
+        // then: the second step should not be executed
+        Assert.assertFalse(counter.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(first.getId(), executed.get(0).getId());
+        Assert.assertFalse(executed.get(0).isSuccess());
+    }
+
     @Test
     public void should_execute_cmd_and_kill() throws Throwable {
         // init:
@@ -240,6 +326,113 @@ public class CmdServiceTest extends SpringScenario {
         Assert.assertNotNull(executed.getFinishAt());
     }
 
+    @Test
+    public void should_kill_cmd_by_its_id() throws Throwable {
+        // init:
+        String cmdId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        Cmd cmd = new Cmd(cmdId, CmdType.SHELL);
+        cmd.setScripts(Lists.newArrayList("echo '--- start ---' && sleep 9999 && echo '--- end ---'"));
+        cmd.setTimeout(10L);
+
+        CountDownLatch counter = new CountDownLatch(1);
+        ObjectWrapper<ExecutedCmd> wrapper = new ObjectWrapper<>();
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdCompleteEvent>) event -> {
+            wrapper.setValue(event.getExecuted());
+            counter.countDown();
+        });
+
+        // when: kill cmd which is not running then kill the running one
+        cmdService.execute(cmd);
+        Thread.sleep(1000);
+
+        String otherId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        cmdService.execute(new Cmd(otherId, CmdType.KILL));
+        Assert.assertFalse(counter.await(1, TimeUnit.SECONDS));
+
+        cmdService.execute(new Cmd(cmdId, CmdType.KILL));
+
+        // then:
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+
+        ExecutedCmd executed = wrapper.getValue();
+        Assert.assertNotNull(executed);
+        Assert.assertEquals(cmdId, executed.getId());
+        Assert.assertEquals(Status.KILLED, executed.getStatus());
+    }
+
+    @Test
+    public void should_report_exception_when_no_free_slot() throws Throwable {
+        Assert.assertEquals(1, agentProperties.getSlots().intValue());
+
+        // init: cmd running in the only slot
+        String runningId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        Cmd running = new Cmd(runningId, CmdType.SHELL);
+        running.setScripts(Lists.newArrayList("sleep 9999"));
+        running.setTimeout(10L);
+
+        CountDownLatch counter = new CountDownLatch(1);
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdCompleteEvent>) event -> {
+            if (event.getExecuted().getId().equals(runningId)) {
+                counter.countDown();
+            }
+        });
+
+        cmdService.execute(running);
+        Thread.sleep(1000);
+
+        // when: execute other cmd
+        String rejectedId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        Cmd rejected = new Cmd(rejectedId, CmdType.SHELL);
+        rejected.setScripts(Lists.newArrayList("echo hello"));
+        cmdService.execute(rejected);
+
+        // then: it should be reported as exception instead of dropped
+        Optional<AgentExecutedCmd> executed = executedCmdDao.findById(rejectedId);
+        Assert.assertTrue(executed.isPresent());
+        Assert.assertEquals(Status.EXCEPTION, executed.get().getStatus());
+        Assert.assertNotNull(executed.get().getError());
+
+        cmdService.execute(new Cmd(runningId, CmdType.KILL));
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_release_slot_before_sending_callback() throws Throwable {
+        Assert.assertEquals(1, agentProperties.getSlots().intValue());
+
+        String firstId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        Cmd first = new Cmd(firstId, CmdType.SHELL);
+        first.setScripts(Lists.newArrayList("echo first"));
+        first.setTimeout(10L);
+
+        String nextId = new CmdId(UUID.randomUUID().toString(), "root/step").toString();
+        Cmd next = new Cmd(nextId, CmdType.SHELL);
+        next.setScripts(Lists.newArrayList("echo next"));
+        next.setTimeout(10L);
+
+        CountDownLatch counter = new CountDownLatch(1);
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdCompleteEvent>) event -> {
+            if (event.getExecuted().getId().equals(nextId)) {
+                counter.countDown();
+            }
+        });
+
+        cmdService.execute(first);
+
+        // when: the next cmd is dispatched as soon as the callback of the first cmd arrives
+        Message callback;
+        do {
+            callback = queueTemplate.receive(callbackQueue.getName(), 10000);
+            Assert.assertNotNull(callback);
+        } while (!new String(callback.getBody()).contains(firstId));
+
+        cmdService.execute(next);
+
+        // then: it should not be rejected for no free slot
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Status.SUCCESS, executedCmdDao.findById(nextId).get().getStatus());
+    }
+
     @Test
     public void should_execute_cmd_and_timeout() throws Throwable {
         Cmd cmd = new Cmd(UUID.randomUUID().toString(), CmdType.SHELL);
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.domain.VariableMap;
+
+/**
+ * Generated yml and context for benchmarks
+ *
+ * @author yang
+ */
+public abstract class Fixtures {
+
+    private static final int FlowEnvSize = 20;
+
+    /**
+     * Every num of steps has a 'before' condition
+     */
+    private static final int BeforeInterval = 10;
+
+    /**
+     * Every num of steps has a tail step
+     */
+    private static final int TailInterval = 50;
+
+    public static String stepName(int index) {
+        return "step-" + index;
+    }
+
+    /**
+     * Flow yml with num of steps, steps are named from step-0
+     */
+    public static String flowYml(int steps) {
+        StringBuilder yml = new StringBuilder(steps * 128);
+        yml.append("name: root\n");
+        yml.append("envs:\n");
+        for (int i = 0; i < FlowEnvSize; i++) {
+            yml.append("  FLOW_VAR_").append(i).append(": \"value of flow variable ").append(i).append("\"\n");
+        }
+
+        yml.append("selector:\n");
+        yml.append("  tags:\n");
+        yml.append("  - linux\n");
+        yml.append("  - docker\n");
+
+        yml.append("steps:\n");
+        for (int i = 0; i < steps; i++) {
+            yml.append("- name: ").append(stepName(i)).append("\n");
+            yml.append("  allow_failure: ").append(i % 2 == 0).append("\n");
+
+            if (i > 0 && i % TailInterval == 0) {
+                yml.append("  tail: true\n");
+            }
+
+            if (i % BeforeInterval == 0) {
+                yml.append("  before: |\n");
+                yml.append("    println(FLOW_VAR_0)\n");
+                yml.append("    true\n");
+            }
+
+            yml.append("  envs:\n");
+            yml.append("    STEP_VAR_A: \"a of step ").append(i).append("\"\n");
+            yml.append("    STEP_VAR_B: \"b of step ").append(i).append("\"\n");
+            yml.append("  exports:\n");
+            yml.append("  - \"STEP_OUTPUT_\"\n");
+            yml.append("  script: |\n");
+            yml.append("    echo \"step ").append(i).append("\"\n");
+            yml.append("    export STEP_OUTPUT_").append(i).append("=done\n");
+        }
+
+        return yml.toString();
+    }
+
+    /**
+     * Job context like variable map with num of entries
+     */
+    public static VariableMap context(int size) {
+        VariableMap map = new VariableMap(size);
+        for (int i = 0; i < size; i++) {
+            map.putString("FLOWCI_CONTEXT_VARIABLE_" + i, "value of context variable " + i + " /usr/local/bin");
+        }
+        return map;
+    }
+}
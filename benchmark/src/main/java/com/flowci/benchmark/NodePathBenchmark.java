@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.tree.NodePath;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodePathBenchmark {
+
+    private String pathInStr;
+
+    private NodePath parent;
+
+    @Setup
+    public void setup() {
+        pathInStr = "root/" + Fixtures.stepName(500);
+        parent = NodePath.create("root");
+    }
+
+    @Benchmark
+    public NodePath createFromString() {
+        return NodePath.create(pathInStr);
+    }
+
+    @Benchmark
+    public NodePath createFromParent() {
+        return NodePath.create(parent, Fixtures.stepName(500));
+    }
+
+    @Benchmark
+    public boolean equalsOfCreated() {
+        return NodePath.create(pathInStr).equals(NodePath.create(parent, Fixtures.stepName(500)));
+    }
+}
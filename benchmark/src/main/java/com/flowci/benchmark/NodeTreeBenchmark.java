@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
+import com.flowci.tree.Node;
+import com.flowci.tree.NodePath;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.YmlParser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tree construction, and navigation like job execution which walks from root to the last step
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeTreeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int steps;
+
+    private Node root;
+
+    private NodeTree tree;
+
+    private NodePath[] paths;
+
+    private ExecutionPlan plan;
+
+    @Setup
+    public void setup() {
+        root = YmlParser.load("root", Fixtures.flowYml(steps));
+        tree = NodeTree.create(root);
+        plan = ExecutionPlan.compile(tree);
+
+        List<Node> ordered = tree.getOrdered();
+        paths = new NodePath[ordered.size()];
+        for (int i = 0; i < ordered.size(); i++) {
+            paths[i] = ordered.get(i).getPath();
+        }
+    }
+
+    @Benchmark
+    public NodeTree create() {
+        return NodeTree.create(root);
+    }
+
+    @Benchmark
+    public ExecutionPlan compile() {
+        return ExecutionPlan.compile(tree);
+    }
+
+    @Benchmark
+    public void walkByPlan(Blackhole bh) {
+        // step resolved from job current path string as job service does
+        Step step = plan.next(plan.root(), true);
+        while (step != null) {
+            bh.consume(step);
+            step = plan.next(plan.get(step.getPath()), true);
+        }
+    }
+
+    @Benchmark
+    public void walkByNext(Blackhole bh) {
+        Node node = tree.next(root.getPath());
+        while (node != null) {
+            bh.consume(node);
+            node = tree.next(node.getPath());
+        }
+    }
+
+    @Benchmark
+    public void walkByPathString(Blackhole bh) {
+        // path re-created from job current path string on each step as job service does
+        Node node = tree.next(root.getPath());
+        while (node != null) {
+            bh.consume(node);
+            node = tree.next(NodePath.create(node.getPathAsString()));
+        }
+    }
+
+    @Benchmark
+    public void walkById(Blackhole bh) {
+        // path resolved to node id from job current path string
+        Node node = tree.next(0);
+        while (node != null) {
+            bh.consume(node);
+            node = tree.next(tree.id(node.getPathAsString()));
+        }
+    }
+
+    @Benchmark
+    public void nextFinal(Blackhole bh) {
+        for (NodePath path : paths) {
+            bh.consume(tree.nextFinal(path));
+        }
+    }
+
+    @Benchmark
+    public void get(Blackhole bh) {
+        for (NodePath path : paths) {
+            bh.consume(tree.get(path));
+        }
+    }
+}
@@ -54,12 +54,36 @@ public class Application {
         return new ConfigProperties.Job();
     }
 
+    @Bean("cacheProperties")
+    @ConfigurationProperties(prefix = "app.cache")
+    public ConfigProperties.Cache cacheProperties() {
+        return new ConfigProperties.Cache();
+    }
+
+    @Bean("retentionProperties")
+    @ConfigurationProperties(prefix = "app.retention")
+    public ConfigProperties.Retention retentionProperties() {
+        return new ConfigProperties.Retention();
+    }
+
+    @Bean("loggingProperties")
+    @ConfigurationProperties(prefix = "app.logging")
+    public ConfigProperties.Logging loggingProperties() {
+        return new ConfigProperties.Logging();
+    }
+
     @Bean("pluginProperties")
     @ConfigurationProperties(prefix = "app.plugin")
     public ConfigProperties.Plugin pluginProperties() {
         return new ConfigProperties.Plugin();
     }
 
+    @Bean("webhookProperties")
+    @ConfigurationProperties(prefix = "app.webhook")
+    public ConfigProperties.Webhook webhookProperties() {
+        return new ConfigProperties.Webhook();
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
@@ -18,9 +18,11 @@ package com.flowci.core.agent;
 
 import com.flowci.core.agent.domain.CreateAgent;
 import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.job.service.LoggingService;
 import com.flowci.domain.Agent;
 import com.flowci.domain.AgentConnect;
 import com.flowci.domain.Settings;
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
@@ -31,6 +33,7 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -41,9 +44,14 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/agents")
 public class AgentController {
 
+    public static final String HeaderAgentToken = "Agent-Token";
+
     @Autowired
     private AgentService agentService;
 
+    @Autowired
+    private LoggingService loggingService;
+
     @GetMapping("/{token}")
     public Agent getByToken(@PathVariable String token) {
         return agentService.getByToken(token);
@@ -61,6 +69,17 @@ public class AgentController {
         return agentService.connect(connect.getToken(), agentIp, port);
     }
 
+    /**
+     * Upload gzip compressed log of cmd from agent
+     */
+    @PostMapping("/logs/{cmdId}")
+    public void uploadLog(@RequestHeader(HeaderAgentToken) String token,
+                          @PathVariable String cmdId,
+                          HttpServletRequest request) throws IOException {
+        Agent agent = agentService.getByToken(token);
+        loggingService.save(agent, cmdId, request.getInputStream());
+    }
+
     @PostMapping()
     public Agent create(@RequestBody CreateAgent body) {
         return agentService.create(body.getName(), body.getTags());
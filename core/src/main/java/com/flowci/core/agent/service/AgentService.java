@@ -69,14 +69,14 @@ public interface AgentService {
     Agent setTags(String token, Set<String> tags);
 
     /**
-     * Try to lock agent resource, and set agent status to BUSY
+     * Try to lock a slot of agent for the agent job id, and set agent status to BUSY if all slots are locked
      */
     Boolean tryLock(Agent agent);
 
     /**
-     * Release agent, send 'stop' cmd to agent
+     * Release the slot locked by job, and set agent status to IDLE
      */
-    void tryRelease(Agent agent);
+    void tryRelease(Agent agent, String jobId);
 
     /**
      * Create agent by name and tags
@@ -23,6 +23,7 @@ import com.flowci.core.config.ConfigProperties;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Agent.Status;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.ObjectWrapper;
 import com.flowci.domain.Settings;
 import com.flowci.exception.DuplicateException;
 import com.flowci.exception.NotFoundException;
@@ -30,6 +31,8 @@ import com.flowci.util.ObjectsHelper;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.flowci.zookeeper.ZookeeperException;
 import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -54,8 +57,10 @@ import org.springframework.util.StringUtils;
 
 /**
  * Manage agent from zookeeper nodes
- *  - The ephemeral node present agent, path is /{root}/{agent id}
+ *  - The ephemeral node present agent, path is /{root}/{agent id}, data is {status}#{num of slots}
  *  - The persistent node present agent of lock, path is /{root}/{agent id}-lock, managed by server side
+ *
+ * Each job locks a slot of agent, the agent is BUSY only when all slots are locked
  * @author yang
  */
 @Log4j2
@@ -64,6 +69,8 @@ public class AgentServiceImpl implements AgentService {
 
     private static final String LockPathSuffix = "-lock";
 
+    private static final long ReleaseWaitSeconds = 10;
+
     @Autowired
     private ConfigProperties.Zookeeper zkProperties;
 
@@ -85,6 +92,19 @@ public class AgentServiceImpl implements AgentService {
     @Autowired
     private Settings baseSettings;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter lockAttempts;
+
+    private Counter lockFailures;
+
+    @PostConstruct
+    public void initMetrics() {
+        lockAttempts = meterRegistry.counter("flowci.agent.lock.attempts");
+        lockFailures = meterRegistry.counter("flowci.agent.lock.failures");
+    }
+
     @PostConstruct
     public void initRootNode() {
         String root = zkProperties.getAgentRoot();
@@ -116,9 +136,10 @@ public class AgentServiceImpl implements AgentService {
                 continue;
             }
 
-            // sync status and lock node
+            // sync status, slots and lock node
             Status status = getStatusFromZk(agent);
             agent.setStatus(status);
+            agent.setSlots(getSlotsFromZk(agent));
             agentDao.save(agent);
             syncLockNode(agent, Type.CHILD_ADDED);
         }
@@ -199,6 +220,17 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Boolean tryLock(Agent agent) {
+        lockAttempts.increment();
+
+        Boolean isLocked = lock(agent);
+        if (!isLocked) {
+            lockFailures.increment();
+        }
+
+        return isLocked;
+    }
+
+    private Boolean lock(Agent agent) {
         // check agent is available form db
         Agent reload = get(agent.getId());
         if (reload.isBusy()) {
@@ -212,10 +244,11 @@ public class AgentServiceImpl implements AgentService {
                 return false;
             }
 
-            // lock and set status to busy
+            // lock a free slot for job, and set status to busy if all slots are locked
+            ObjectWrapper<Boolean> isLocked = new ObjectWrapper<>(Boolean.FALSE);
             String zkLockPath = getLockPath(agent);
-            zk.lock(zkLockPath, path -> updateAgentStatus(agent, Status.BUSY));
-            return true;
+            zk.lock(zkLockPath, path -> isLocked.setValue(lockSlot(agent)));
+            return isLocked.getValue();
         } catch (ZookeeperException e) {
             log.debug(e);
             return false;
@@ -223,13 +256,62 @@ public class AgentServiceImpl implements AgentService {
     }
 
     @Override
-    public void tryRelease(Agent agent) {
+    public void tryRelease(Agent agent, String jobId) {
+        try {
+            zk.lock(getLockPath(agent), ReleaseWaitSeconds, path -> releaseSlot(agent, jobId));
+        } catch (ZookeeperException e) {
+            log.warn("Unable to release slot of agent {} for job {}: {}", agent.getName(), jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Lock free slot for agent job id, must be called within the zk lock of agent
+     */
+    private boolean lockSlot(Agent agent) {
         Agent reload = get(agent.getId());
-        if (reload.isIdle()) {
+        String key = Agent.slotKey(agent.getJobId());
+
+        if (reload.getJobSlots().containsKey(key)) {
+            return false;
+        }
+
+        int slot = reload.getFreeSlot();
+        if (slot < 0) {
+            return false;
+        }
+
+        reload.getJobSlots().put(key, slot);
+        reload.setJobId(agent.getJobId());
+        saveSlots(reload, reload.getFreeSlot() < 0 ? Status.BUSY : Status.IDLE);
+
+        agent.setStatus(reload.getStatus());
+        agent.setJobSlots(reload.getJobSlots());
+        return true;
+    }
+
+    /**
+     * Release slot of job, must be called within the zk lock of agent
+     */
+    private void releaseSlot(Agent agent, String jobId) {
+        Agent reload = get(agent.getId());
+        if (Objects.isNull(reload.getJobSlots().remove(Agent.slotKey(jobId)))) {
+            return;
+        }
+
+        saveSlots(reload, reload.isOffline() ? Status.OFFLINE : Status.IDLE);
+
+        agent.setStatus(reload.getStatus());
+        agent.setJobSlots(reload.getJobSlots());
+    }
+
+    private void saveSlots(Agent agent, Status status) {
+        if (agent.getStatus() == status) {
+            agentDao.save(agent);
+            applicationEventPublisher.publishEvent(new StatusChangeEvent(this, agent));
             return;
         }
 
-        updateAgentStatus(agent, Status.IDLE);
+        updateAgentStatus(agent, status);
     }
 
     @Override
@@ -285,7 +367,7 @@ public class AgentServiceImpl implements AgentService {
             // try update zookeeper status if new status not same with zk
             Status current = getStatusFromZk(agent);
             if (current != status) {
-                zk.set(path, status.getBytes());
+                zk.set(path, Agent.toNodeData(status, agent.getSlots()));
             }
         } catch (ZookeeperException e) {
             // set agent to offline when zk exception
@@ -327,6 +409,11 @@ public class AgentServiceImpl implements AgentService {
         return Status.fromBytes(statusInBytes);
     }
 
+    private Integer getSlotsFromZk(Agent agent) {
+        byte[] data = zk.get(getPath(agent));
+        return Agent.slotsFromNodeData(data);
+    }
+
     private class RootNodeListener implements PathChildrenCacheListener {
 
         private final Set<Type> ChildOperations = ImmutableSet.of(
@@ -357,6 +444,10 @@ public class AgentServiceImpl implements AgentService {
             Agent agent = get(agentId);
 
             if (event.getType() == Type.CHILD_ADDED) {
+                agent.setSlots(getSlotsFromZk(agent));
+                agent.getJobSlots().clear();
+                agentDao.save(agent);
+
                 syncLockNode(agent, Type.CHILD_ADDED);
                 updateAgentStatus(agent, Status.IDLE);
                 log.debug("Event '{}' of agent '{}' with status '{}'", event.getType(), agent.getName(), Status.IDLE);
@@ -364,6 +455,9 @@ public class AgentServiceImpl implements AgentService {
             }
             
             if (event.getType() == Type.CHILD_REMOVED) {
+                agent.getJobSlots().clear();
+                agentDao.save(agent);
+
                 syncLockNode(agent, Type.CHILD_REMOVED);
                 updateAgentStatus(agent, Status.OFFLINE);
                 log.debug("Event '{}' of agent '{}' with status '{}'", event.getType(), agent.getName(),
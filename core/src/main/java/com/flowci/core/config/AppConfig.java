@@ -26,6 +26,7 @@ import com.flowci.core.user.User;
 import com.flowci.domain.Jsonable;
 import com.flowci.util.FileHelper;
 import com.google.common.collect.ImmutableList;
+import io.netty.channel.ChannelOption;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
@@ -39,6 +40,8 @@ import org.springframework.context.event.ApplicationEventMulticaster;
 import org.springframework.context.event.SimpleApplicationEventMulticaster;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.ResourceHttpMessageConverter;
@@ -48,8 +51,11 @@ import org.springframework.http.converter.support.AllEncompassingFormHttpMessage
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import reactor.ipc.netty.resources.PoolResources;
 
 /**
  * @author yang
@@ -79,6 +85,9 @@ public class AppConfig {
     @Autowired
     private ConfigProperties appProperties;
 
+    @Autowired
+    private ConfigProperties.Logging loggingProperties;
+
     @PostConstruct
     private void initWorkspace() throws IOException {
         Path path = appProperties.getWorkspace();
@@ -107,6 +116,28 @@ public class AppConfig {
         return restTemplate;
     }
 
+    /**
+     * Non-blocking http client for agent, connections are pooled for each agent address
+     */
+    @Bean("agentWebClient")
+    public WebClient agentWebClient() {
+        int timeout = loggingProperties.getProxyTimeoutInSeconds() * 1000;
+        int maxConnections = loggingProperties.getProxyConnectionsPerAgent();
+
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(options -> options
+            .poolResources(PoolResources.fixed("agent-http", maxConnections))
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout));
+
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+            .codecs(configurer -> configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(Mapper)))
+            .build();
+
+        return WebClient.builder()
+            .clientConnector(connector)
+            .exchangeStrategies(strategies)
+            .build();
+    }
+
     @Bean("currentUser")
     public ThreadLocal<User> currentUser() {
         return new ThreadLocal<>();
@@ -128,7 +159,9 @@ public class AppConfig {
                     .addPathPatterns("/jobs/**")
                     .addPathPatterns("/agents/**")
                     .addPathPatterns("/credentials/**")
-                    .excludePathPatterns("/agents/connect");
+                    .addPathPatterns("/stats/**")
+                    .excludePathPatterns("/agents/connect")
+                    .excludePathPatterns("/agents/logs/**");
             }
 
             @Override
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.config;
+
+import com.flowci.core.helper.CacheHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Read through caches on api request path, they are evicted by save and delete in the same node
+ *
+ * @author yang
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Users by email
+     */
+    @Bean("userCache")
+    public Cache userCache(ConfigProperties.Cache cacheProperties, MeterRegistry meterRegistry) {
+        return CacheHelper.createCache("USER", cacheProperties.getUserSize(),
+            cacheProperties.getExpireInSeconds(), meterRegistry);
+    }
+
+    /**
+     * Flows by name
+     */
+    @Bean("flowCache")
+    public Cache flowCache(ConfigProperties.Cache cacheProperties, MeterRegistry meterRegistry) {
+        return CacheHelper.createCache("FLOW", cacheProperties.getFlowSize(),
+            cacheProperties.getExpireInSeconds(), meterRegistry);
+    }
+}
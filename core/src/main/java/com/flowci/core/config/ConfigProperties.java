@@ -16,6 +16,7 @@
 
 package com.flowci.core.config;
 
+import com.flowci.core.message.LogsChannelInterceptor.OverflowPolicy;
 import java.nio.file.Path;
 import lombok.Data;
 
@@ -51,6 +52,122 @@ public class ConfigProperties {
         private Long expireInSeconds;
 
         private Long retryWaitingSeconds;
+
+        /**
+         * The waiting seconds of retry is doubled on each retry of job up to the max
+         */
+        private Long retryMaxWaitingSeconds;
+
+        /**
+         * Max num of compiled execution plans kept in memory
+         */
+        private Integer planCacheSize;
+
+        /**
+         * Max num of jobs can be created in one batch
+         */
+        private Integer batchLimit;
+
+        /**
+         * Max num of pending and queued jobs per flow, 0 is unlimited
+         */
+        private Integer maxQueuedPerFlow;
+
+        /**
+         * Max num of running jobs per flow, 0 is unlimited
+         */
+        private Integer maxRunningPerFlow;
+
+        /**
+         * Max num of pending and queued jobs of all flows, 0 is unlimited
+         */
+        private Integer maxBacklog;
+
+        /**
+         * Ship consecutive steps to agent as one plan cmd instead of dispatching step by step
+         */
+        private Boolean shipPlan;
+
+        /**
+         * Max num of steps shipped to agent in one plan cmd
+         */
+        private Integer maxShippedSteps;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Seconds to keep cached users, flows and latest jobs, to bound the staleness across core nodes
+         */
+        private Long expireInSeconds;
+
+        private Integer userSize;
+
+        private Integer flowSize;
+
+        private Integer latestJobSize;
+    }
+
+    @Data
+    public static class Retention {
+
+        private Boolean enabled;
+
+        /**
+         * Default num of latest jobs of each flow kept in hot collections
+         */
+        private Integer hotJobs;
+
+        /**
+         * Max num of jobs archived in each round
+         */
+        private Integer batchSize;
+
+        private Long intervalInSeconds;
+
+        /**
+         * Job updated or restored within the seconds will not be archived
+         */
+        private Long coolDownInSeconds;
+    }
+
+    @Data
+    public static class Logging {
+
+        /**
+         * Max num of log lines buffered for each websocket session
+         */
+        private Integer sessionBufferSize;
+
+        /**
+         * Ask session to resync from paged api if num of dropped lines over the threshold
+         */
+        private Integer resyncThreshold;
+
+        private OverflowPolicy overflowPolicy;
+
+        /**
+         * Max num of recent log lines kept in memory for each running cmd, 0 to disable
+         */
+        private Integer recentLines;
+
+        /**
+         * Max num of chars of recent log lines kept in memory for each running cmd
+         */
+        private Long recentChars;
+
+        /**
+         * Max num of connections to each agent for log proxy
+         */
+        private Integer proxyConnectionsPerAgent;
+
+        private Integer proxyTimeoutInSeconds;
+
+        /**
+         * Max num of log pages of finished steps kept in cache
+         */
+        private Integer finishedPageCacheSize;
     }
 
     @Data
@@ -61,6 +178,27 @@ public class ConfigProperties {
         private Boolean autoUpdate;
     }
 
+    @Data
+    public static class Webhook {
+
+        /**
+         * Max num of received events waiting to be processed
+         */
+        private Integer queueSize;
+
+        /**
+         * Max num of events processed by worker at once
+         */
+        private Integer batchSize;
+
+        private Integer workers;
+
+        /**
+         * Num of recent delivery ids kept for de-duplication
+         */
+        private Integer recentDeliveries;
+    }
+
 
     @Data
     public static class Zookeeper {
@@ -73,6 +211,11 @@ public class ConfigProperties {
 
         private String cronRoot;
 
+        /**
+         * Ephemeral node to make sure only one core node compacts jobs at a time
+         */
+        private String retentionLock;
+
         private Integer timeout;
 
         private Integer retry;
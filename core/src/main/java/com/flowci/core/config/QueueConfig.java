@@ -17,10 +17,16 @@
 package com.flowci.core.config;
 
 import com.flowci.domain.Jsonable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.log4j.Log4j2;
+import org.aopalliance.intercept.MethodInterceptor;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
@@ -49,6 +55,9 @@ public class QueueConfig {
     @Autowired
     private ConfigProperties.Job jobProperties;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Bean("queueAdmin")
     public RabbitAdmin rabbitAdmin(ConnectionFactory connectionFactory) {
         return new RabbitAdmin(connectionFactory);
@@ -87,29 +96,60 @@ public class QueueConfig {
 
     @Bean("jobAndCallbackContainerFactory")
     public SimpleRabbitListenerContainerFactory jobAndCallbackContainerFactory(ConnectionFactory connectionFactory) {
-        return createContainerFactory(connectionFactory, 1, jsonMessageConverter);
+        return createContainerFactory(connectionFactory, 1, jsonMessageConverter, "job");
     }
 
     @Bean("logsContainerFactory")
     public SimpleRabbitListenerContainerFactory logsContainerFactory(ConnectionFactory connectionFactory) {
-        return createContainerFactory(connectionFactory, 1, null);
+        return createContainerFactory(connectionFactory, 1, null, "logs");
     }
 
     @Bean("queueTemplate")
     public RabbitTemplate rabbitTemplate(ConnectionFactory factory) {
         RabbitTemplate template = new RabbitTemplate(factory);
         template.setMessageConverter(jsonMessageConverter);
+        template.setBeforePublishPostProcessors(message -> {
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        });
         return template;
     }
 
     private SimpleRabbitListenerContainerFactory createContainerFactory(ConnectionFactory connectionFactory,
                                                                         int concurrent,
-                                                                        MessageConverter converter) {
+                                                                        MessageConverter converter,
+                                                                        String listener) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setConcurrentConsumers(concurrent);
         factory.setMaxConcurrentConsumers(concurrent);
         factory.setMessageConverter(converter);
+        factory.setAdviceChain(lagRecorder(listener));
         return factory;
     }
+
+    /**
+     * Record time from message published with timestamp to message received by listener
+     */
+    private MethodInterceptor lagRecorder(String listener) {
+        Timer lag = Timer.builder("flowci.rabbit.lag")
+            .description("Time between message published and received by listener")
+            .tag("listener", listener)
+            .register(meterRegistry);
+
+        return invocation -> {
+            for (Object arg : invocation.getArguments()) {
+                if (!(arg instanceof Message)) {
+                    continue;
+                }
+
+                Date timestamp = ((Message) arg).getMessageProperties().getTimestamp();
+                if (timestamp != null) {
+                    lag.record(System.currentTimeMillis() - timestamp.getTime(), TimeUnit.MILLISECONDS);
+                }
+            }
+
+            return invocation.proceed();
+        };
+    }
 }
@@ -16,8 +16,16 @@
 
 package com.flowci.core.config;
 
+import com.flowci.core.job.manager.RecentLogManager;
+import com.flowci.core.message.LogsChannelInterceptor;
+import com.flowci.core.message.LogsSubscribeInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -44,6 +52,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final String agentsTopic = "/topic/agents";
 
+    @Autowired
+    private ConfigProperties.Logging loggingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RecentLogManager recentLogManager;
+
+    @Lazy
+    @Autowired
+    private MessageChannel clientOutboundChannel;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").setAllowedOrigins("*").withSockJS();
@@ -55,6 +76,26 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(logsSubscribeInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(logsChannelInterceptor());
+    }
+
+    @Bean("logsChannelInterceptor")
+    public LogsChannelInterceptor logsChannelInterceptor() {
+        return new LogsChannelInterceptor(logsTopic, loggingProperties, meterRegistry);
+    }
+
+    @Bean("logsSubscribeInterceptor")
+    public LogsSubscribeInterceptor logsSubscribeInterceptor() {
+        return new LogsSubscribeInterceptor(logsTopic, recentLogManager, clientOutboundChannel);
+    }
+
     @Bean("topicForJobs")
     public String topicForJobs() {
         return jobsTopic;
@@ -23,6 +23,7 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.ToString;
+import org.springframework.beans.BeanUtils;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -47,4 +48,12 @@ public abstract class Mongoable implements Serializable {
     protected Date updatedAt;
 
     protected String createdBy;
+
+    /**
+     * Copy all properties which have getter and setter from the other document,
+     * so new fields are copied without changes. Mutable values are shared and should be copied by subclass
+     */
+    protected void copyFrom(Mongoable other) {
+        BeanUtils.copyProperties(other, this);
+    }
 }
@@ -18,6 +18,7 @@ package com.flowci.core.flow;
 
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.service.FlowService;
+import com.flowci.exception.ArgumentException;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -30,6 +31,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -80,6 +82,17 @@ public class FlowController {
         flowService.update(flow);
     }
 
+    @PatchMapping("/{name}/retention")
+    public void updateRetention(@PathVariable String name, @RequestParam int hotJobs) {
+        if (hotJobs <= 0) {
+            throw new ArgumentException("The num of hot jobs must be positive");
+        }
+
+        Flow flow = flowService.get(name);
+        flow.setHotJobs(hotJobs);
+        flowService.update(flow);
+    }
+
     @DeleteMapping("/{name}")
     public Flow delete(@PathVariable String name) {
         return flowService.delete(name);
@@ -17,8 +17,10 @@
 package com.flowci.core.flow.dao;
 
 import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.trigger.domain.GitTrigger;
 import java.util.List;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -33,4 +35,10 @@ public interface FlowDao extends MongoRepository<Flow, String> {
 
     List<Flow> findAllByCreatedBy(String createdBy);
 
+    /**
+     * Find flows which have git url in variables to subscribe repository webhook
+     */
+    @Query("{'variables." + GitTrigger.Variables.GIT_URL + "': {$exists: true, $ne: ''}}")
+    List<Flow> findAllWithGitUrl();
+
 }
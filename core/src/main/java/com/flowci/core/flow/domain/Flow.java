@@ -45,7 +45,25 @@ public final class Flow extends Mongoable {
     @NonNull
     private VariableMap variables = new VariableMap();
 
+    /**
+     * Num of latest jobs kept in hot collections, the older jobs will be archived.
+     * The default from app retention properties is applied if it's null
+     */
+    @Getter
+    @Setter
+    private Integer hotJobs;
+
     public Flow(String name) {
         this.name = name;
     }
+
+    /**
+     * Copy of flow, since the cached flow is shared by callers
+     */
+    public Flow copy() {
+        Flow copy = new Flow(name);
+        copy.copyFrom(this);
+        copy.variables = new VariableMap(variables);
+        return copy;
+    }
 }
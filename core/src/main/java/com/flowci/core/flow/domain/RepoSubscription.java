@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.flow.domain;
+
+import com.flowci.tree.Node;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Flow subscribed to repository webhook with parsed yml
+ *
+ * @author yang
+ */
+@Getter
+@AllArgsConstructor
+@ToString(of = {"repoUrl", "flowName"})
+public class RepoSubscription {
+
+    /**
+     * Normalized repository url
+     */
+    private final String repoUrl;
+
+    private final String flowId;
+
+    /**
+     * Flow is loaded by name when event received, instead of keeping a copy which could be changed
+     */
+    private final String flowName;
+
+    /**
+     * Secret to verify signature of repository webhook event
+     */
+    private final String secret;
+
+    private final Yml yml;
+
+    private final Node root;
+}
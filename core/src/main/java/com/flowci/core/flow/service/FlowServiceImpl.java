@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 
 /**
@@ -52,6 +53,12 @@ public class FlowServiceImpl implements FlowService {
     @Autowired
     private CronService cronService;
 
+    @Autowired
+    private RepoIndexService repoIndexService;
+
+    @Autowired
+    private Cache flowCache;
+
     @Override
     public List<Flow> list() {
         return flowDao.findAllByCreatedBy(currentUserHelper.get().getId());
@@ -59,7 +66,7 @@ public class FlowServiceImpl implements FlowService {
 
     @Override
     public Flow create(String name) {
-        Flow existed = flowDao.findByName(name);
+        Flow existed = getByName(name);
 
         if (!Objects.isNull(existed)) {
             throw new DuplicateException("The flow {0} already existed", name);
@@ -72,13 +79,15 @@ public class FlowServiceImpl implements FlowService {
 
         Flow newFlow = new Flow(name);
         newFlow.setCreatedBy(currentUserHelper.get().getId());
-        return flowDao.save(newFlow);
+        newFlow = flowDao.save(newFlow);
+        flowCache.evict(name);
+        return newFlow;
     }
 
     @Override
     public Flow get(String name) {
-        Flow flow = flowDao.findByNameAndCreatedBy(name, currentUserHelper.get().getId());
-        if (Objects.isNull(flow)) {
+        Flow flow = getByName(name);
+        if (Objects.isNull(flow) || !Objects.equals(flow.getCreatedBy(), currentUserHelper.get().getId())) {
             throw new NotFoundException("The flow with name {0} cannot found", name);
         }
         return flow;
@@ -88,6 +97,8 @@ public class FlowServiceImpl implements FlowService {
     public Flow delete(String name) {
         Flow flow = get(name);
         flowDao.delete(flow);
+        flowCache.evict(flow.getName());
+        repoIndexService.remove(flow);
 
         try {
             Yml yml = getYml(flow);
@@ -103,6 +114,10 @@ public class FlowServiceImpl implements FlowService {
     public void update(Flow flow) {
         verifyFlowIdAndUser(flow);
         flowDao.save(flow);
+        flowCache.evict(flow.getName());
+
+        // update repository subscription by git url in variables
+        repoIndexService.update(flow);
     }
 
     @Override
@@ -130,9 +145,18 @@ public class FlowServiceImpl implements FlowService {
 
         // update cron task
         cronService.update(flow, ymlObj);
+        repoIndexService.update(flow, ymlObj);
         return ymlObj;
     }
 
+    /**
+     * Get copy of cached flow, so changes on it are not seen by others before saved
+     */
+    private Flow getByName(String name) {
+        Flow flow = flowCache.get(name, () -> flowDao.findByName(name));
+        return Objects.isNull(flow) ? null : flow.copy();
+    }
+
     private void verifyFlowIdAndUser(Flow flow) {
         String flowId = flow.getId();
         if (Strings.isNullOrEmpty(flowId)) {
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.flow.service;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.RepoSubscription;
+import com.flowci.core.flow.domain.Yml;
+import java.util.Collection;
+
+/**
+ * In memory index from repository url to the flows which have the url in variables
+ *
+ * @author yang
+ */
+public interface RepoIndexService {
+
+    /**
+     * Find subscribed flows by repository url
+     */
+    Collection<RepoSubscription> find(String repoUrl);
+
+    /**
+     * Add or update flow in the index by git url in flow variables
+     */
+    void update(Flow flow, Yml yml);
+
+    /**
+     * Update flow in the index with the yml of current subscription, yml is loaded only if not subscribed
+     */
+    void update(Flow flow);
+
+    /**
+     * Remove flow from the index
+     */
+    void remove(Flow flow);
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.flow.service;
+
+import com.flowci.core.flow.dao.FlowDao;
+import com.flowci.core.flow.dao.YmlDao;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.RepoSubscription;
+import com.flowci.core.flow.domain.Yml;
+import com.flowci.core.trigger.domain.GitTrigger;
+import com.flowci.tree.Node;
+import com.flowci.tree.YmlParser;
+import com.google.common.base.Strings;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author yang
+ */
+@Log4j2
+@Service
+public class RepoIndexServiceImpl implements RepoIndexService {
+
+    private static final String GitSuffix = ".git";
+
+    private static final String SshPrefix = "git@";
+
+    @Autowired
+    private FlowDao flowDao;
+
+    @Autowired
+    private YmlDao ymlDao;
+
+    /**
+     * Subscriptions by normalized repository url and flow id
+     */
+    private final Map<String, Map<String, RepoSubscription>> index = new ConcurrentHashMap<>();
+
+    /**
+     * Normalized repository url by flow id
+     */
+    private final Map<String, String> repoOfFlow = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        List<Flow> flows = flowDao.findAllWithGitUrl();
+
+        Map<String, Yml> ymlOfFlow = new HashMap<>(flows.size());
+        for (Yml yml : ymlDao.findAllById(flows.stream().map(Flow::getId).collect(Collectors.toList()))) {
+            ymlOfFlow.put(yml.getId(), yml);
+        }
+
+        for (Flow flow : flows) {
+            Yml yml = ymlOfFlow.get(flow.getId());
+            if (!Objects.isNull(yml)) {
+                update(flow, yml);
+            }
+        }
+
+        log.info("{} flows subscribed to repository webhook", repoOfFlow.size());
+    }
+
+    @Override
+    public Collection<RepoSubscription> find(String repoUrl) {
+        String key = normalize(repoUrl);
+        if (Objects.isNull(key)) {
+            return Collections.emptyList();
+        }
+
+        Map<String, RepoSubscription> subscriptions = index.get(key);
+        if (Objects.isNull(subscriptions)) {
+            return Collections.emptyList();
+        }
+
+        return subscriptions.values();
+    }
+
+    @Override
+    public synchronized void update(Flow flow, Yml yml) {
+        remove(flow);
+
+        String key = normalize(flow.getVariables().get(GitTrigger.Variables.GIT_URL));
+        if (Objects.isNull(key) || Objects.isNull(yml)) {
+            return;
+        }
+
+        try {
+            Node root = YmlParser.load(flow.getName(), yml.getRaw());
+            String secret = flow.getVariables().get(GitTrigger.Variables.GIT_WEBHOOK_SECRET);
+            RepoSubscription subscription = new RepoSubscription(key, flow.getId(), flow.getName(), secret, yml, root);
+
+            index.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(flow.getId(), subscription);
+            repoOfFlow.put(flow.getId(), key);
+        } catch (Throwable e) {
+            log.warn("Unable to subscribe flow {} to repository {}: {}", flow.getName(), key, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void update(Flow flow) {
+        String key = normalize(flow.getVariables().get(GitTrigger.Variables.GIT_URL));
+        if (Objects.isNull(key)) {
+            remove(flow);
+            return;
+        }
+
+        RepoSubscription current = null;
+        String currentKey = repoOfFlow.get(flow.getId());
+        if (!Objects.isNull(currentKey)) {
+            current = index.getOrDefault(currentKey, Collections.emptyMap()).get(flow.getId());
+        }
+
+        Yml yml = Objects.isNull(current) ? ymlDao.findById(flow.getId()).orElse(null) : current.getYml();
+        update(flow, yml);
+    }
+
+    @Override
+    public synchronized void remove(Flow flow) {
+        String key = repoOfFlow.remove(flow.getId());
+        if (Objects.isNull(key)) {
+            return;
+        }
+
+        Map<String, RepoSubscription> subscriptions = index.get(key);
+        if (Objects.isNull(subscriptions)) {
+            return;
+        }
+
+        subscriptions.remove(flow.getId());
+        if (subscriptions.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Normalize repository url to host/owner/name, ex: https://github.com/owner/name.git and
+     * git@github.com:owner/name are normalized to github.com/owner/name
+     */
+    private static String normalize(String url) {
+        if (Strings.isNullOrEmpty(url)) {
+            return null;
+        }
+
+        String value = url.trim().toLowerCase();
+
+        int schemeIndex = value.indexOf("://");
+        if (schemeIndex != -1) {
+            value = value.substring(schemeIndex + 3);
+        } else if (value.startsWith(SshPrefix)) {
+            value = value.substring(SshPrefix.length()).replaceFirst(":", "/");
+        }
+
+        // remove user info
+        int atIndex = value.indexOf('@');
+        int slashIndex = value.indexOf('/');
+        if (atIndex != -1 && (slashIndex == -1 || atIndex < slashIndex)) {
+            value = value.substring(atIndex + 1);
+        }
+
+        while (value.endsWith("/")) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        if (value.endsWith(GitSuffix)) {
+            value = value.substring(0, value.length() - GitSuffix.length());
+        }
+
+        return value.isEmpty() ? null : value;
+    }
+}
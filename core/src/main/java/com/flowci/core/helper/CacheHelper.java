@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.helper;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.TimeUnit;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+/**
+ * @author yang
+ */
+public abstract class CacheHelper {
+
+    /**
+     * Create bounded caffeine cache which expires after write, and bind stats to metrics
+     */
+    public static Cache createCache(String name, int maxSize, long expireInSeconds, MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireInSeconds, TimeUnit.SECONDS)
+            .recordStats();
+
+        return monitor(new CaffeineCache(name, cache.build()), meterRegistry);
+    }
+
+    /**
+     * Bind hit, miss and eviction stats of caffeine cache to metrics
+     */
+    public static Cache monitor(Cache cache, MeterRegistry meterRegistry) {
+        com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache =
+            (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, cache.getName());
+        return cache;
+    }
+}
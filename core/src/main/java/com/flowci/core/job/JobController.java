@@ -20,24 +20,39 @@ import com.flowci.core.flow.service.FlowService;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.job.domain.CreateJob;
+import com.flowci.core.job.domain.CreateJobs;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummaryPage;
 import com.flowci.core.job.domain.JobYml;
 import com.flowci.core.job.service.JobService;
+import com.flowci.core.job.service.LoggingService;
 import com.flowci.core.job.service.StepService;
 import com.flowci.domain.ExecutedCmd;
+import com.flowci.domain.TimelineEntry;
 import com.flowci.domain.VariableMap;
 import com.flowci.exception.ArgumentException;
+import com.flowci.util.HttpRangeHelper;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -64,6 +79,9 @@ public class JobController {
     @Autowired
     private StepService stepService;
 
+    @Autowired
+    private LoggingService loggingService;
+
     @GetMapping("/{flow}")
     public Page<Job> list(@PathVariable("flow") String name,
                           @RequestParam(required = false, defaultValue = DefaultPage) int page,
@@ -73,6 +91,31 @@ public class JobController {
         return jobService.list(flow, page, size);
     }
 
+    /**
+     * List job summaries by build number cursor, the 'next' of the response is the cursor of next page
+     */
+    @GetMapping("/{flow}/summary")
+    public JobSummaryPage listSummary(@PathVariable("flow") String name,
+                                      @RequestParam(required = false) Long before,
+                                      @RequestParam(required = false, defaultValue = DefaultSize) int size) {
+
+        Flow flow = flowService.get(name);
+        return jobService.listSummary(flow, before, size);
+    }
+
+    /**
+     * Search job summaries by status, trigger, branch, commitId, author or prNumber on indexed fields
+     */
+    @GetMapping("/{flow}/search")
+    public JobSummaryPage search(@PathVariable("flow") String name,
+                                 JobQuery query,
+                                 @RequestParam(required = false) Long before,
+                                 @RequestParam(required = false, defaultValue = DefaultSize) int size) {
+
+        Flow flow = flowService.get(name);
+        return jobService.search(flow, query, before, size);
+    }
+
     @GetMapping("/{flow}/{buildNumberOrLatest}")
     public Job get(@PathVariable("flow") String name, @PathVariable String buildNumberOrLatest) {
         Flow flow = flowService.get(name);
@@ -96,6 +139,15 @@ public class JobController {
         return yml.getRaw();
     }
 
+    /**
+     * Phase transitions of scheduling and execution recorded by core and agent, in time order
+     */
+    @GetMapping("/{flow}/{buildNumber}/timeline")
+    public List<TimelineEntry> getTimeline(@PathVariable String flow, @PathVariable String buildNumber) {
+        Job job = get(flow, buildNumber);
+        return jobService.getTimeline(job);
+    }
+
     @GetMapping("/{flow}/{buildNumberOrLatest}/steps")
     public List<ExecutedCmd> getSteps(@PathVariable String flow,
                                       @PathVariable String buildNumberOrLatest) {
@@ -104,26 +156,77 @@ public class JobController {
     }
 
     @GetMapping("/{flow}/{buildNumber}/{executedCmdId}")
-    public Page<String> getStepLog(@PathVariable String flow,
-                                   @PathVariable String buildNumber,
-                                   @PathVariable String executedCmdId,
-                                   @RequestParam(required = false, defaultValue = "0") int page,
-                                   @RequestParam(required = false, defaultValue = "50") int size) {
+    public CompletableFuture<Page<String>> getStepLog(@PathVariable String flow,
+                                                      @PathVariable String buildNumber,
+                                                      @PathVariable String executedCmdId,
+                                                      @RequestParam(required = false, defaultValue = "0") int page,
+                                                      @RequestParam(required = false, defaultValue = "50") int size) {
         Job job = get(flow, buildNumber);
         return stepService.logs(job, executedCmdId, PageRequest.of(page, size));
     }
 
+    /**
+     * Raw log from server if it has been uploaded, otherwise stream it from agent
+     */
+    @GetMapping("/{flow}/{buildNumber}/{executedCmdId}/download")
+    public void downloadStepLog(@PathVariable String flow,
+                                @PathVariable String buildNumber,
+                                @PathVariable String executedCmdId,
+                                @RequestParam(required = false, defaultValue = "false") boolean follow,
+                                @RequestParam(required = false, defaultValue = "0") int tail,
+                                @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                HttpServletResponse response) throws IOException {
+        Job job = get(flow, buildNumber);
+
+        if (!loggingService.hasLog(executedCmdId)) {
+            stepService.streamLogs(job, executedCmdId, range, follow, tail, response);
+            return;
+        }
+
+        Path path = loggingService.getLogPath(job, executedCmdId);
+
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + path.getFileName());
+        HttpRangeHelper.write(path, range, tail, response);
+    }
+
+    /**
+     * A job is created for each combination if flow has env matrix, the first one is returned
+     */
     @PostMapping
     public Job create(@Validated @RequestBody CreateJob data) {
-        Flow flow = flowService.get(data.getFlow());
-        Yml yml = flowService.getYml(flow);
-        return jobService.create(flow, yml, Trigger.API, VariableMap.EMPTY);
+        return createJobs(data).get(0);
     }
 
     @PostMapping("/run")
     public Job createAndRun(@Validated @RequestBody CreateJob data) {
-        Job job = create(data);
-        return jobService.start(job);
+        List<Job> jobs = createJobs(data);
+        return jobService.start(jobs).get(0);
+    }
+
+    @PostMapping("/batch/run")
+    public List<Job> createAndRunAll(@Validated @RequestBody CreateJobs data) {
+        Flow flow = flowService.get(data.getFlow());
+        Yml yml = flowService.getYml(flow);
+
+        List<VariableMap> inputs = new ArrayList<>(data.getInputs().size());
+        for (Map<String, String> input : data.getInputs()) {
+            inputs.add(new VariableMap(input));
+        }
+
+        List<Job> jobs = jobService.create(flow, yml, Trigger.API, inputs);
+        return jobService.start(jobs);
+    }
+
+    @PostMapping("/{flow}/{buildNumber}/restore")
+    public Job restore(@PathVariable("flow") String name, @PathVariable String buildNumber) {
+        Flow flow = flowService.get(name);
+
+        try {
+            return jobService.restore(flow, Long.parseLong(buildNumber));
+        } catch (NumberFormatException e) {
+            throw new ArgumentException("Build number must be a integer");
+        }
     }
 
     @PostMapping("/{flow}/{buildNumber}/cancel")
@@ -131,4 +234,10 @@ public class JobController {
         Job job = get(flow, buildNumber);
         return jobService.cancel(job);
     }
+
+    private List<Job> createJobs(CreateJob data) {
+        Flow flow = flowService.get(data.getFlow());
+        Yml yml = flowService.getYml(flow);
+        return jobService.create(flow, yml, Trigger.API, Collections.singletonList(VariableMap.EMPTY));
+    }
 }
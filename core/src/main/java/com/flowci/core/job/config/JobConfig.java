@@ -16,11 +16,15 @@
 
 package com.flowci.core.job.config;
 
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.helper.CacheHelper;
 import com.flowci.core.helper.ThreadHelper;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.concurrent.TimeUnit;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,29 +36,63 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @Configuration
 public class JobConfig {
 
-    @Bean("retryExecutor")
-    public ThreadPoolTaskExecutor retryExecutor() {
-        return ThreadHelper.createTaskExecutor(1, 1, 100, "job-retry-");
+    /**
+     * Write job yml and steps concurrently on job creation
+     */
+    @Bean("jobCreateExecutor")
+    public ThreadPoolTaskExecutor jobCreateExecutor() {
+        return ThreadHelper.createTaskExecutor(20, 4, 1000, "job-create-");
     }
 
     @Bean("jobCacheManager")
     public CacheManager cacheManager() {
         Caffeine<Object, Object> cache = Caffeine.newBuilder()
             .maximumSize(100)
-            .expireAfterWrite(120, TimeUnit.SECONDS);
+            .expireAfterWrite(120, TimeUnit.SECONDS)
+            .recordStats();
 
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
         cacheManager.setCaffeine(cache);
         return cacheManager;
     }
 
-    @Bean("jobTreeCache")
-    public Cache jobTreeCache(CacheManager jobCacheManager) {
-        return jobCacheManager.getCache("JOB_TREE");
+    /**
+     * Execution plans are immutable and compact, keep them as long as job is accessed
+     */
+    @Bean("jobPlanCache")
+    public Cache jobPlanCache(ConfigProperties.Job jobProperties, MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> cache = Caffeine.newBuilder()
+            .maximumSize(jobProperties.getPlanCacheSize())
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .recordStats();
+
+        return CacheHelper.monitor(new CaffeineCache("JOB_PLAN", cache.build()), meterRegistry);
+    }
+
+    /**
+     * Latest job of flow for dashboard polling, it will be evicted when job of flow is saved
+     */
+    @Bean("jobLatestCache")
+    public Cache jobLatestCache(ConfigProperties.Cache cacheProperties, MeterRegistry meterRegistry) {
+        return CacheHelper.createCache("JOB_LATEST", cacheProperties.getLatestJobSize(),
+            cacheProperties.getExpireInSeconds(), meterRegistry);
     }
 
     @Bean("jobStepCache")
-    public Cache jobStepCache(CacheManager jobCacheManager) {
-        return jobCacheManager.getCache("JOB_STEPS");
+    public Cache jobStepCache(CacheManager jobCacheManager, MeterRegistry meterRegistry) {
+        return CacheHelper.monitor(jobCacheManager.getCache("JOB_STEPS"), meterRegistry);
+    }
+
+    /**
+     * Log pages of finished steps never change, keep them longer than other job caches
+     */
+    @Bean("jobLogPageCache")
+    public Cache jobLogPageCache(ConfigProperties.Logging loggingProperties, MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> cache = Caffeine.newBuilder()
+            .maximumSize(loggingProperties.getFinishedPageCacheSize())
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .recordStats();
+
+        return CacheHelper.monitor(new CaffeineCache("JOB_LOG_PAGES", cache.build()), meterRegistry);
     }
 }
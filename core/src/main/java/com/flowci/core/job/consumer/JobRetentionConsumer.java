@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.consumer;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.service.RetentionService;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keep the out of hot window mark of finished job, which could be dropped by saving a running copy
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class JobRetentionConsumer implements ApplicationListener<JobStatusChangeEvent> {
+
+    private static final Set<Job.Status> FinishStatus = ImmutableSet.of(
+        Job.Status.SUCCESS,
+        Job.Status.FAILURE,
+        Job.Status.CANCELLED,
+        Job.Status.TIMEOUT
+    );
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Override
+    public void onApplicationEvent(JobStatusChangeEvent event) {
+        Job job = event.getJob();
+
+        if (!FinishStatus.contains(job.getStatus())) {
+            return;
+        }
+
+        try {
+            retentionService.checkHotWindow(job);
+        } catch (Throwable e) {
+            log.warn("Unable to check hot window of job {}: {}", job.getKey(), e.getMessage());
+        }
+    }
+}
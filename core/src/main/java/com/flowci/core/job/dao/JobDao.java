@@ -17,6 +17,8 @@
 package com.flowci.core.job.dao;
 
 import com.flowci.core.job.domain.Job;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -26,9 +28,19 @@ import org.springframework.stereotype.Repository;
  * @author yang
  */
 @Repository
-public interface JobDao extends MongoRepository<Job, String> {
+public interface JobDao extends MongoRepository<Job, String>, JobDaoExtend {
 
     Job findByKey(String key);
 
     Page<Job> findAllByFlowId(String flowId, Pageable pageable);
+
+    List<Job> findAllByFlowIdAndStatus(String flowId, Job.Status status);
+
+    long countByFlowIdAndStatus(String flowId, Job.Status status);
+
+    long countByStatus(Job.Status status);
+
+    long countByFlowIdAndStatusIn(String flowId, Collection<Job.Status> status);
+
+    long countByStatusIn(Collection<Job.Status> status);
 }
\ No newline at end of file
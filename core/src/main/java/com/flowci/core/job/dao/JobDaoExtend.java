@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummary;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author yang
+ */
+public interface JobDaoExtend {
+
+    /**
+     * List job summaries of flow ordered by build number desc, which build number is less than the cursor.
+     * It's the first page if the cursor is null.
+     */
+    List<JobSummary> listSummary(String flowId, Long before, int limit);
+
+    /**
+     * Search job summaries of flow on indexed fields, ordered by build number desc
+     */
+    List<JobSummary> searchSummary(String flowId, JobQuery query, Long before, int limit);
+
+    /**
+     * Set job as cancelled only if it's still queued, returns false if it has been taken from queue
+     */
+    boolean cancelQueued(String jobId, String message);
+
+    /**
+     * Mark jobs of flow which build number is in range of (after, upTo] as out of hot window
+     */
+    void markOutOfHotWindow(String flowId, long after, long upTo);
+
+    /**
+     * Find finished jobs of all flows out of hot window and not updated since the date,
+     * ordered by updated date asc
+     */
+    List<Job> findArchivable(Date updatedBefore, int limit);
+}
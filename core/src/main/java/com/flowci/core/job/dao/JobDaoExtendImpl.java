@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.dao;
+
+import com.flowci.core.domain.Variables;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobArchive;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummary;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * @author yang
+ */
+public class JobDaoExtendImpl implements JobDaoExtend {
+
+    private static final Sort SortByBuildNumber = Sort.by(Direction.DESC, "buildNumber");
+
+    private static final Sort SortByUpdatedAtAsc = Sort.by(Direction.ASC, "updatedAt");
+
+    private static final List<Job.Status> FinishedStatus = ImmutableList.of(
+        Job.Status.SUCCESS, Job.Status.FAILURE, Job.Status.CANCELLED, Job.Status.TIMEOUT);
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public List<JobSummary> listSummary(String flowId, Long before, int limit) {
+        return searchSummary(flowId, new JobQuery(), before, limit);
+    }
+
+    @Override
+    public List<JobSummary> searchSummary(String flowId, JobQuery conditions, Long before, int limit) {
+        Criteria criteria = Criteria.where("flowId").is(flowId);
+        if (!Objects.isNull(before)) {
+            criteria = criteria.and("buildNumber").lt(before);
+        }
+
+        // only indexed fields of job are searchable, the context is never scanned
+        criteria = and(criteria, "", conditions);
+
+        // range scan on (flowId, ..., buildNumber) index, no skip and count, see indexes of Job
+        Query query = Query.query(criteria).with(SortByBuildNumber).limit(limit);
+        for (String field : JobSummary.Fields) {
+            query.fields().include(field);
+        }
+
+        String collection = operations.getCollectionName(Job.class);
+        List<JobSummary> hot = operations.find(query, JobSummary.class, collection);
+
+        // archived jobs are not in hot collection, only the ones above the last job of a full page are needed
+        Long after = hot.size() < limit ? null : hot.get(hot.size() - 1).getBuildNumber();
+        List<JobSummary> archived = searchArchive(flowId, conditions, before, after, limit);
+
+        if (archived.isEmpty()) {
+            return hot;
+        }
+
+        return merge(hot, archived, limit);
+    }
+
+    @Override
+    public boolean cancelQueued(String jobId, String message) {
+        Criteria criteria = Criteria.where("_id").is(jobId).and("status").is(Job.Status.QUEUED);
+
+        Update update = Update.update("status", Job.Status.CANCELLED)
+            .set("message", message)
+            .set("context." + Variables.JOB_STATUS, Job.Status.CANCELLED.name())
+            .set("updatedAt", new Date());
+
+        return operations.updateFirst(Query.query(criteria), update, Job.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public void markOutOfHotWindow(String flowId, long after, long upTo) {
+        Criteria criteria = Criteria.where("flowId").is(flowId).and("buildNumber").gt(after).lte(upTo);
+        operations.updateMulti(Query.query(criteria), Update.update("outOfHotWindow", true), Job.class);
+    }
+
+    @Override
+    public List<Job> findArchivable(Date updatedBefore, int limit) {
+        Criteria criteria = Criteria.where("outOfHotWindow").is(true)
+            .and("status").in(FinishedStatus)
+            .and("updatedAt").lte(updatedBefore);
+
+        // range scan on (outOfHotWindow, status, updatedAt) index across all flows
+        Query query = Query.query(criteria).with(SortByUpdatedAtAsc).limit(limit);
+        return operations.find(query, Job.class);
+    }
+
+    /**
+     * Search summaries in job archive which build number is in range of (after, before)
+     */
+    private List<JobSummary> searchArchive(String flowId, JobQuery conditions, Long before, Long after, int limit) {
+        Criteria criteria = Criteria.where("flowId").is(flowId);
+        if (!Objects.isNull(before) || !Objects.isNull(after)) {
+            criteria = criteria.and("buildNumber");
+            if (!Objects.isNull(before)) {
+                criteria = criteria.lt(before);
+            }
+            if (!Objects.isNull(after)) {
+                criteria = criteria.gt(after);
+            }
+        }
+
+        criteria = and(criteria, "summary.", conditions);
+
+        Query query = Query.query(criteria).with(SortByBuildNumber).limit(limit);
+        query.fields().include("summary");
+
+        List<JobSummary> summaries = new ArrayList<>(limit);
+        for (JobArchive archive : operations.find(query, JobArchive.class)) {
+            if (!Objects.isNull(archive.getSummary())) {
+                summaries.add(archive.getSummary());
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Merge summaries ordered by build number desc, the hot one is used if job is in both
+     */
+    private static List<JobSummary> merge(List<JobSummary> hot, List<JobSummary> archived, int limit) {
+        List<JobSummary> merged = new ArrayList<>(Math.min(limit, hot.size() + archived.size()));
+        int i = 0;
+        int j = 0;
+
+        while (merged.size() < limit && (i < hot.size() || j < archived.size())) {
+            if (j >= archived.size()) {
+                merged.add(hot.get(i++));
+                continue;
+            }
+
+            if (i >= hot.size()) {
+                merged.add(archived.get(j++));
+                continue;
+            }
+
+            long hotNumber = hot.get(i).getBuildNumber();
+            long archivedNumber = archived.get(j).getBuildNumber();
+
+            if (archivedNumber == hotNumber) {
+                j++;
+                continue;
+            }
+
+            merged.add(hotNumber > archivedNumber ? hot.get(i++) : archived.get(j++));
+        }
+
+        return merged;
+    }
+
+    private static Criteria and(Criteria criteria, String prefix, JobQuery conditions) {
+        if (Objects.isNull(conditions.getStatus()) && hasAny(conditions.getBranch(), conditions.getAuthor())) {
+            // status in all values, to sort by merging (branch|author, status, buildNumber) index ranges
+            criteria = criteria.and(prefix + "status").in((Object[]) Job.Status.values());
+        }
+
+        criteria = and(criteria, prefix + "status", conditions.getStatus());
+        criteria = and(criteria, prefix + "trigger", conditions.getTrigger());
+        criteria = and(criteria, prefix + "branch", conditions.getBranch());
+        criteria = and(criteria, prefix + "commitId", conditions.getCommitId());
+        criteria = and(criteria, prefix + "author", conditions.getAuthor());
+        return and(criteria, prefix + "prNumber", conditions.getPrNumber());
+    }
+
+    private static boolean hasAny(String... values) {
+        for (String value : values) {
+            if (!Objects.isNull(value) && !value.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Criteria and(Criteria criteria, String field, Object value) {
+        if (Objects.isNull(value) || value.toString().isEmpty()) {
+            return criteria;
+        }
+        return criteria.and(field).is(value);
+    }
+}
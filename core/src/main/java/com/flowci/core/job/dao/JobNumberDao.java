@@ -24,6 +24,6 @@ import org.springframework.stereotype.Repository;
  * @author yang
  */
 @Repository
-public interface JobNumberDao extends MongoRepository<JobNumber, String> {
+public interface JobNumberDao extends MongoRepository<JobNumber, String>, JobNumberDaoExtend {
 
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.dao;
+
+/**
+ * @author yang
+ */
+public interface JobNumberDaoExtend {
+
+    /**
+     * Increase and return the job number of flow in one round trip, it starts from 1
+     */
+    Long increase(String flowId);
+
+    /**
+     * Allocate a block of job numbers for flow atomically, returns the last number of the block
+     */
+    Long increase(String flowId, int num);
+
+    /**
+     * Move hot window of flow forward to the build number, returns the previous window or 0 if not moved before
+     */
+    Long moveWindow(String flowId, long window);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.JobRefNumber;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * @author yang
+ */
+public class JobRefNumberDaoExtendImpl implements JobRefNumberDaoExtend {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public Long max(String key, String flowId, String ref, Long number) {
+        Query query = Query.query(Criteria.where("_id").is(key));
+        Update update = new Update()
+            .max("number", number)
+            .setOnInsert("flow_id", flowId)
+            .setOnInsert("ref", ref);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        return operations.findAndModify(query, update, options, JobRefNumber.class).getNumber();
+    }
+}
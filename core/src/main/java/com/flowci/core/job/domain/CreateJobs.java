@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.domain;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * Create jobs of flow in batch, a job will be created for each input and each combination of env matrix
+ *
+ * @author yang
+ */
+@Data
+public class CreateJobs {
+
+    @NotNull
+    private String flow;
+
+    /**
+     * Input variables for each job, single job without input will be created if it's empty
+     */
+    @NotNull
+    private List<Map<String, String>> inputs = new LinkedList<>();
+}
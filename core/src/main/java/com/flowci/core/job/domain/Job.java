@@ -19,19 +19,41 @@ package com.flowci.core.job.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.flowci.core.domain.Mongoable;
 import com.flowci.domain.VariableMap;
+import com.flowci.tree.AutoCancel;
 import com.flowci.tree.Selector;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
+ * Indexes follow the job search shape, equality fields first and the build number as sort key at last,
+ * the status is expanded to all values by search if not given, so that branch or author only search
+ * still reads (branch|author, status, buildNumber) in order. Commit and pr are selective enough without
+ * the sort key, and trigger is filtered on the (flowId, buildNumber) range.
+ *
  * @author yang
  */
 @Getter
 @Setter
 @Document(collection = "job")
+@CompoundIndexes({
+    @CompoundIndex(name = "index_job_flow_build_number", def = "{'flowId': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_flow_status", def = "{'flowId': 1, 'status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_flow_branch_status",
+        def = "{'flowId': 1, 'branch': 1, 'status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_flow_author_status",
+        def = "{'flowId': 1, 'author': 1, 'status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_flow_commit", def = "{'flowId': 1, 'commitId': 1}"),
+    @CompoundIndex(name = "index_job_flow_pr", def = "{'flowId': 1, 'prNumber': 1}"),
+    @CompoundIndex(name = "index_job_out_of_hot_window",
+        def = "{'outOfHotWindow': 1, 'status': 1, 'updatedAt': 1}")
+})
 public class Job extends Mongoable {
 
     public enum Trigger {
@@ -110,6 +132,11 @@ public class Job extends Mongoable {
         TIMEOUT
     }
 
+    /**
+     * Lock attempts and re-queue are not recorded to timeline once it reached the size
+     */
+    private static final int MaxTimelineRetries = 200;
+
     /**
      * Job key is generated from {flow id}-{build number}
      */
@@ -122,20 +149,79 @@ public class Job extends Mongoable {
 
     private Trigger trigger;
 
+    @Indexed(name = "index_job_status")
     private Status status = Status.PENDING;
 
     private Date expireAt;
 
+    /**
+     * Time of the first time job been put into the queue
+     */
+    private Date queuedAt;
+
     private Selector agentSelector;
 
+    /**
+     * Auto cancel policy of flow when job created, the superseded check is skipped for NONE
+     */
+    private AutoCancel autoCancel = AutoCancel.NONE;
+
+    /**
+     * Set when newer jobs pushed the job out of the hot window of flow, then it's archived after cool down
+     */
+    private Boolean outOfHotWindow;
+
     private String agentId;
 
     private String currentPath;
 
+    /**
+     * Node paths of steps shipped to agent within plan cmd, which will be executed without dispatching by core
+     */
+    private Set<String> shippedPaths = new HashSet<>();
+
     private VariableMap context = new VariableMap();
 
+    /**
+     * Git branch or tag from trigger, the head branch for pull request
+     */
+    private String branch;
+
+    /**
+     * Git commit id from trigger, the head commit for pull request
+     */
+    private String commitId;
+
+    /**
+     * Git author from trigger
+     */
+    private String author;
+
+    private String prNumber;
+
     private String message;
 
+    /**
+     * Num of re-enqueue since deferred or no agent available, for backoff of the next retry
+     */
+    private Integer retries = 0;
+
+    /**
+     * Num of queued, deferred and lock attempt entries recorded to job timeline
+     */
+    private Integer timelineRetries = 0;
+
+    /**
+     * Count the retry entry of timeline, returns false if it reached the max and should not be recorded
+     */
+    public boolean countTimelineRetry() {
+        if (timelineRetries >= MaxTimelineRetries) {
+            return false;
+        }
+        timelineRetries++;
+        return true;
+    }
+
     @JsonIgnore
     public boolean isRunning() {
         return status == Status.RUNNING;
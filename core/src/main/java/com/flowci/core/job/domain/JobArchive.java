@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.domain;
+
+import com.flowci.core.domain.Mongoable;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Cold storage of job out of the hot window, the id is the same as job id.
+ * The summary fields are indexed in the same shape as the job search indexes.
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document(collection = "job_archive")
+@CompoundIndexes({
+    @CompoundIndex(name = "index_job_archive_flow_build_number", def = "{'flowId': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_archive_flow_status",
+        def = "{'flowId': 1, 'summary.status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_archive_flow_branch_status",
+        def = "{'flowId': 1, 'summary.branch': 1, 'summary.status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_archive_flow_author_status",
+        def = "{'flowId': 1, 'summary.author': 1, 'summary.status': 1, 'buildNumber': -1}"),
+    @CompoundIndex(name = "index_job_archive_flow_commit", def = "{'flowId': 1, 'summary.commitId': 1}"),
+    @CompoundIndex(name = "index_job_archive_flow_pr", def = "{'flowId': 1, 'summary.prNumber': 1}")
+})
+public class JobArchive extends Mongoable {
+
+    @Indexed(name = "index_job_archive_key", unique = true)
+    private String key;
+
+    private String flowId;
+
+    private Long buildNumber;
+
+    /**
+     * Summary fields kept uncompressed, to list and search archived jobs with the hot jobs
+     */
+    private JobSummary summary;
+
+    /**
+     * Gzip compressed json of ArchivedJob
+     */
+    private byte[] data;
+}
@@ -40,6 +40,13 @@ public class JobNumber {
     @Setter
     private Long number = 1L;
 
+    /**
+     * Jobs which build number is not greater than it have been marked as out of hot window
+     */
+    @Getter
+    @Setter
+    private Long window;
+
     public JobNumber(String flowId) {
         this.flowId = flowId;
     }
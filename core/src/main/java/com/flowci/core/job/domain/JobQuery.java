@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.domain;
+
+import com.flowci.core.job.domain.Job.Status;
+import com.flowci.core.job.domain.Job.Trigger;
+import lombok.Data;
+
+/**
+ * Conditions to search jobs of flow on indexed fields, the null condition is ignored
+ *
+ * @author yang
+ */
+@Data
+public class JobQuery {
+
+    private Status status;
+
+    private Trigger trigger;
+
+    private String branch;
+
+    private String commitId;
+
+    private String author;
+
+    private String prNumber;
+}
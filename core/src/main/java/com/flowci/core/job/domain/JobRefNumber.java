@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * Latest build number of git ref in flow, the builds of the ref with lower number are superseded
+ *
+ * @author yang
+ */
+@Document(collection = "job_ref_number")
+@NoArgsConstructor
+public class JobRefNumber {
+
+    /**
+     * Key of flow id and ref
+     */
+    @Id
+    @Getter
+    @Setter
+    private String key;
+
+    @Getter
+    @Setter
+    @Field("flow_id")
+    private String flowId;
+
+    @Getter
+    @Setter
+    private String ref;
+
+    @Getter
+    @Setter
+    private Long number;
+}
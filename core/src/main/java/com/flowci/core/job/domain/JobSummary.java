@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.domain;
+
+import com.flowci.core.job.domain.Job.Status;
+import com.flowci.core.job.domain.Job.Trigger;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * Projection of job for history listing without context and yml
+ *
+ * @author yang
+ */
+@Data
+public class JobSummary implements Serializable {
+
+    /**
+     * Fields of job document included in the projection
+     */
+    public static final String[] Fields = {
+        "flowId", "buildNumber", "trigger", "status", "message", "agentId", "branch", "commitId", "author",
+        "prNumber", "createdBy", "createdAt", "updatedAt"
+    };
+
+    private String id;
+
+    private String flowId;
+
+    private Long buildNumber;
+
+    private Trigger trigger;
+
+    private Status status;
+
+    private String message;
+
+    private String agentId;
+
+    private String branch;
+
+    private String commitId;
+
+    private String author;
+
+    private String prNumber;
+
+    private String createdBy;
+
+    private Date createdAt;
+
+    private Date updatedAt;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Page of job summaries ordered by build number desc
+ *
+ * @author yang
+ */
+@Getter
+@AllArgsConstructor
+public class JobSummaryPage {
+
+    private final List<JobSummary> content;
+
+    /**
+     * Cursor for the next page, it's the smallest build number in the page, null if no more jobs
+     */
+    private final Long next;
+}
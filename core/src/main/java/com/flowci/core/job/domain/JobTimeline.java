@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.domain;
+
+import com.flowci.domain.TimelineEntry;
+import com.flowci.domain.TimelineEntry.Phase;
+import java.util.Date;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Timeline entry of job stored in its own collection, so recording a phase is an insert
+ * instead of rewriting the job document
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document(collection = "job_timeline")
+@CompoundIndexes({
+    @CompoundIndex(name = "index_job_timeline_job_at", def = "{'jobId': 1, 'at': 1}")
+})
+public class JobTimeline {
+
+    @Id
+    private String id;
+
+    private String jobId;
+
+    private Phase phase;
+
+    private Date at;
+
+    private String detail;
+
+    public static JobTimeline of(String jobId, TimelineEntry entry) {
+        JobTimeline timeline = new JobTimeline();
+        timeline.setJobId(jobId);
+        timeline.setPhase(entry.getPhase());
+        timeline.setAt(entry.getAt());
+        timeline.setDetail(entry.getDetail());
+        return timeline;
+    }
+
+    public TimelineEntry toEntry() {
+        return new TimelineEntry(phase, at, detail);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.manager;
+
+/**
+ * Bound num of queued and running jobs per flow, and the global queued jobs
+ *
+ * @author yang
+ */
+public interface AdmissionManager {
+
+    /**
+     * Verify num of new jobs can be queued for the flow, the pending jobs are counted as queued
+     *
+     * @throws com.flowci.exception.NotAvailableException if over max queued per flow or max backlog
+     */
+    void verifyQueued(String flowId, int num);
+
+    /**
+     * Check the flow has less running jobs than the max running per flow
+     */
+    boolean canRun(String flowId);
+}
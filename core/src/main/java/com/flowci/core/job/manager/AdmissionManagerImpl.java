@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.manager;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.exception.NotAvailableException;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits are counted from job status in database, which are soft limits since jobs could be queued by
+ * multiple core nodes at the same time. The limit is disabled if it's not greater than 0.
+ *
+ * @author yang
+ */
+@Component
+public class AdmissionManagerImpl implements AdmissionManager {
+
+    /**
+     * Jobs created but not started, the pending jobs are created and then queued in batch
+     */
+    private static final List<Job.Status> WaitingStatus = ImmutableList.of(Job.Status.PENDING, Job.Status.QUEUED);
+
+    @Autowired
+    private ConfigProperties.Job jobProperties;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Override
+    public void verifyQueued(String flowId, int num) {
+        int maxQueuedPerFlow = jobProperties.getMaxQueuedPerFlow();
+        if (maxQueuedPerFlow > 0) {
+            long queued = jobDao.countByFlowIdAndStatusIn(flowId, WaitingStatus);
+            if (queued + num > maxQueuedPerFlow) {
+                throw new NotAvailableException("Too many queued jobs of flow, {0} queued and max is {1}",
+                    Long.toString(queued), Integer.toString(maxQueuedPerFlow));
+            }
+        }
+
+        int maxBacklog = jobProperties.getMaxBacklog();
+        if (maxBacklog > 0) {
+            long queued = jobDao.countByStatusIn(WaitingStatus);
+            if (queued + num > maxBacklog) {
+                throw new NotAvailableException("Too many queued jobs, {0} queued and max is {1}",
+                    Long.toString(queued), Integer.toString(maxBacklog));
+            }
+        }
+    }
+
+    @Override
+    public boolean canRun(String flowId) {
+        int maxRunningPerFlow = jobProperties.getMaxRunningPerFlow();
+        if (maxRunningPerFlow <= 0) {
+            return true;
+        }
+
+        return jobDao.countByFlowIdAndStatus(flowId, Job.Status.RUNNING) < maxRunningPerFlow;
+    }
+}
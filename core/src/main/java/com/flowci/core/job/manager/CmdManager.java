@@ -16,11 +16,13 @@
 
 package com.flowci.core.job.manager;
 
-import com.flowci.core.job.domain.CmdId;
 import com.flowci.core.job.domain.Job;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
 import com.flowci.tree.Node;
-import org.springframework.data.domain.Page;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * @author yang
@@ -29,12 +31,24 @@ public interface CmdManager {
 
     CmdId createId(Job job, Node node);
 
-    Cmd createShellCmd(Job job, Node node);
+    CmdId createId(Job job, Step step);
 
-    Cmd createKillCmd();
+    Cmd createShellCmd(Job job, Step step);
 
     /**
-     * Get logs from agent
+     * Create plan cmd with consecutive steps from the first step on success path, which can be executed
+     * by agent without core. The plan stops before the step has 'before' condition or reaches the max steps
      */
-    Page<String> getLogs(String agentHost, String cmdId);
+    Cmd createPlanCmd(Job job, ExecutionPlan plan, Step first, int maxSteps);
+
+    /**
+     * Create kill cmd which targets the executing cmd of the job current step on agent
+     */
+    Cmd createKillCmd(Job job);
+
+    /**
+     * Stream raw logs from agent to response without buffering, status and range headers are passed through
+     */
+    void getLogs(String agentHost, String cmdId, String range, boolean follow, int tail,
+                 HttpServletResponse response);
 }
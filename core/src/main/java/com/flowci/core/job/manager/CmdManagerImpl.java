@@ -16,28 +16,42 @@
 
 package com.flowci.core.job.manager;
 
-import com.flowci.core.job.domain.CmdId;
+import com.flowci.core.domain.Variables;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.plugin.domain.Plugin;
 import com.flowci.core.plugin.service.PluginService;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
 import com.flowci.domain.CmdType;
+import com.flowci.domain.PlanStep;
 import com.flowci.domain.Variable;
 import com.flowci.domain.VariableMap;
 import com.flowci.exception.ArgumentException;
+import com.flowci.exception.NotFoundException;
+import com.flowci.exception.StatusException;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
 import com.flowci.tree.Node;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.RequestEntity;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -47,15 +61,40 @@ import org.springframework.web.util.UriComponentsBuilder;
 @Repository
 public class CmdManagerImpl implements CmdManager {
 
-    private static final ParameterizedTypeReference<Page<String>> LoggingPageType =
-        new ParameterizedTypeReference<Page<String>>() {
-        };
+    private static final String[] PassThroughHeaders = {
+        HttpHeaders.CONTENT_TYPE,
+        HttpHeaders.CONTENT_LENGTH,
+        HttpHeaders.CONTENT_RANGE,
+        HttpHeaders.ACCEPT_RANGES
+    };
+
+    private static final int StreamBufferSize = 8 * 1024;
+
+    /**
+     * Rest template for raw log streaming, error status of agent is passed through instead of exception
+     */
+    private static final RestTemplate StreamingTemplate = new RestTemplate();
+
+    static {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(1000 * 15);
+        factory.setReadTimeout(1000 * 60 * 5);
+
+        StreamingTemplate.setRequestFactory(factory);
+        StreamingTemplate.setErrorHandler(new ResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
 
-    @Autowired
-    private PluginService pluginService;
+            @Override
+            public void handleError(ClientHttpResponse response) {
+            }
+        });
+    }
 
     @Autowired
-    private RestTemplate restTemplate;
+    private PluginService pluginService;
 
     @Override
     public CmdId createId(Job job, Node node) {
@@ -63,48 +102,136 @@ public class CmdManagerImpl implements CmdManager {
     }
 
     @Override
-    public Cmd createShellCmd(Job job, Node node) {
-        // node envs has top priority;
-        VariableMap inputs = VariableMap.merge(job.getContext(), node.getEnvironments());
-        String script = node.getScript();
-        boolean allowFailure = node.isAllowFailure();
-
-        if (node.hasPlugin()) {
-            Plugin plugin = pluginService.get(node.getPlugin());
-            verifyPluginInput(inputs, plugin);
+    public CmdId createId(Job job, Step step) {
+        return new CmdId(job.getId(), step.getPath());
+    }
 
-            script = plugin.getScript();
-            allowFailure = plugin.isAllowFailure();
-        }
+    @Override
+    public Cmd createShellCmd(Job job, Step step) {
+        return createShellCmd(job, step, job.getContext());
+    }
 
-        String failureScript = allowFailure ? "set +e" : "set -e";
+    @Override
+    public Cmd createPlanCmd(Job job, ExecutionPlan plan, Step first, int maxSteps) {
+        // the job context expected by steps, as core merges it on each step callback
+        VariableMap context = VariableMap.merge(job.getContext());
+        List<PlanStep> steps = new ArrayList<>(Math.min(maxSteps, plan.size()));
+
+        Step step = first;
+        while (!Objects.isNull(step) && steps.size() < maxSteps) {
+            // the 'before' condition is evaluated by core, so the plan stops at the step has condition
+            if (step != first && step.hasBefore()) {
+                break;
+            }
 
-        // create cmd based on plugin
-        Cmd cmd = new Cmd(createId(job, node).toString(), CmdType.SHELL);
-        cmd.setInputs(inputs);
-        cmd.setAllowFailure(allowFailure);
-        cmd.setEnvFilters(Sets.newHashSet(node.getExports()));
-        cmd.setScripts(Lists.newArrayList(failureScript, script));
-        cmd.setPlugin(node.getPlugin());
+            Cmd cmd;
+            try {
+                cmd = createShellCmd(job, step, context);
+            } catch (ArgumentException | NotFoundException e) {
+                // let core dispatch the step and handle the error with the context at the time
+                if (step == first) {
+                    throw e;
+                }
+                break;
+            }
+
+            if (!steps.isEmpty()) {
+                steps.get(steps.size() - 1).setOnSuccess(steps.size());
+            }
+            steps.add(new PlanStep(cmd, new HashSet<>(step.getEnvironments().keySet())));
+
+            if (!step.isTail()) {
+                context.putString(Variables.JOB_STATUS, Job.Status.SUCCESS.name());
+            }
+
+            step = plan.next(step, true);
+        }
 
+        Cmd cmd = new Cmd(createId(job, first).toString(), CmdType.PLAN);
+        cmd.setPlan(steps);
         return cmd;
     }
 
     @Override
-    public Cmd createKillCmd() {
-        return new Cmd(UUID.randomUUID().toString(), CmdType.KILL);
+    public Cmd createKillCmd(Job job) {
+        CmdId target = new CmdId(job.getId(), job.getCurrentPath());
+        return new Cmd(target.toString(), CmdType.KILL);
     }
 
     @Override
-    public Page<String> getLogs(String agentHost, String cmdId) {
+    public void getLogs(String agentHost, String cmdId, String range, boolean follow, int tail,
+                        HttpServletResponse response) {
         URI uri = UriComponentsBuilder.fromHttpUrl(agentHost)
-            .pathSegment("cmd", cmdId)
+            .pathSegment("cmd", cmdId, "logs", "raw")
+            .queryParam("follow", follow)
+            .queryParam("tail", tail)
             .build().toUri();
 
-        ResponseEntity<Page<String>> response =
-            restTemplate.exchange(new RequestEntity<>(HttpMethod.GET, uri), LoggingPageType);
+        try {
+            StreamingTemplate.execute(uri, HttpMethod.GET, request -> {
+                if (!Strings.isNullOrEmpty(range)) {
+                    request.getHeaders().set(HttpHeaders.RANGE, range);
+                }
+            }, agentResponse -> {
+                response.setStatus(agentResponse.getRawStatusCode());
+
+                for (String header : PassThroughHeaders) {
+                    String value = agentResponse.getHeaders().getFirst(header);
+                    if (!Strings.isNullOrEmpty(value)) {
+                        response.setHeader(header, value);
+                    }
+                }
+
+                copy(agentResponse.getBody(), response);
+                return null;
+            });
+        } catch (RestClientException e) {
+            throw new StatusException("Agent not available: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Copy and flush each chunk, so followed logs can be received by client immediately
+     */
+    private static void copy(InputStream in, HttpServletResponse response) throws IOException {
+        OutputStream out = response.getOutputStream();
+        byte[] buffer = new byte[StreamBufferSize];
+
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+            response.flushBuffer();
+        }
+    }
+
+    private Cmd createShellCmd(Job job, Step step, VariableMap context) {
+        // step envs has top priority;
+        VariableMap inputs = VariableMap.merge(context);
+        inputs.load(step.getEnvironments());
+
+        String script = step.getScript();
+        boolean allowFailure = step.isAllowFailure();
+
+        if (step.hasPlugin()) {
+            Plugin plugin = pluginService.get(step.getPlugin());
+            verifyPluginInput(inputs, plugin);
+
+            script = plugin.getScript();
+            allowFailure = plugin.isAllowFailure();
+        }
+
+        String failureScript = allowFailure ? "set +e" : "set -e";
+
+        // create cmd based on plugin
+        Cmd cmd = new Cmd(createId(job, step).toString(), CmdType.SHELL);
+        cmd.setInputs(inputs);
+        cmd.setAllowFailure(allowFailure);
+        cmd.setEnvFilters(Sets.newHashSet(step.getExports()));
+        cmd.setScripts(Lists.newArrayList(failureScript, script));
+        cmd.setPlugin(step.getPlugin());
+        cmd.setLastOfJob(step.isLast());
 
-        return response.getBody();
+        return cmd;
     }
 
     private void verifyPluginInput(VariableMap context, Plugin plugin) {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keep most recent log lines of running cmd in memory
+ *
+ * @author yang
+ */
+public interface RecentLogManager {
+
+    /**
+     * Lock of cmd, to make append + publish and snapshot + subscribe atomic
+     */
+    Lock lock(String cmdId);
+
+    /**
+     * Append log line to the ring of cmd
+     */
+    void append(String cmdId, String line);
+
+    /**
+     * Get copy of recent lines of cmd, empty list if not existed
+     */
+    List<String> snapshot(String cmdId);
+
+    /**
+     * Remove the ring of cmd
+     */
+    void evict(String cmdId);
+}
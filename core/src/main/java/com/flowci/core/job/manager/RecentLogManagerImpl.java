@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.job.event.StepStatusChangeEvent;
+import com.flowci.core.job.util.LogRing;
+import com.flowci.domain.ExecutedCmd;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Striped;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rings are evicted when step finished, and expired if no log received for a while
+ * in case of late log items after step finished
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class RecentLogManagerImpl implements RecentLogManager, ApplicationListener<StepStatusChangeEvent> {
+
+    private static final int LockStripes = 64;
+
+    private static final int MaxCmds = 1000;
+
+    private static final int ExpireInMinutes = 30;
+
+    private final Striped<Lock> locks = Striped.lock(LockStripes);
+
+    @Autowired
+    private ConfigProperties.Logging loggingProperties;
+
+    private Cache<String, LogRing> rings;
+
+    @PostConstruct
+    public void initRings() {
+        rings = Caffeine.newBuilder()
+            .maximumSize(MaxCmds)
+            .expireAfterAccess(ExpireInMinutes, TimeUnit.MINUTES)
+            .build();
+    }
+
+    @Override
+    public Lock lock(String cmdId) {
+        return locks.get(cmdId);
+    }
+
+    @Override
+    public void append(String cmdId, String line) {
+        if (loggingProperties.getRecentLines() <= 0) {
+            return;
+        }
+
+        LogRing ring = rings.get(cmdId,
+            key -> new LogRing(loggingProperties.getRecentLines(), loggingProperties.getRecentChars()));
+        ring.append(line);
+    }
+
+    @Override
+    public List<String> snapshot(String cmdId) {
+        LogRing ring = rings.getIfPresent(cmdId);
+        if (Objects.isNull(ring)) {
+            return Collections.emptyList();
+        }
+        return ring.snapshot();
+    }
+
+    @Override
+    public void evict(String cmdId) {
+        rings.invalidate(cmdId);
+    }
+
+    @Override
+    public void onApplicationEvent(StepStatusChangeEvent event) {
+        ExecutedCmd cmd = event.getExecutedCmd();
+        if (cmd.isRunning() || cmd.getStatus() == ExecutedCmd.Status.PENDING) {
+            return;
+        }
+
+        evict(cmd.getId());
+        log.debug("Recent logs of cmd {} been evicted", cmd.getId());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.domain.VariableMap;
+
+/**
+ * Keep the latest build number of each git ref as tombstone for older builds
+ *
+ * @author yang
+ */
+public interface SupersedeManager {
+
+    /**
+     * Get git ref of job which could be superseded, null if job is not triggered by push, pull request open or update
+     */
+    String getRef(Job job);
+
+    /**
+     * Get git ref from trigger and variables of job before it's created
+     */
+    String getRef(Job.Trigger trigger, VariableMap context);
+
+    /**
+     * Mark the builds of the same flow and ref which have lower build number than the job as superseded,
+     * the job should have the lowest build number of the jobs created together for the ref
+     */
+    void supersede(Job job);
+
+    /**
+     * Check a newer build of the same flow and ref has been created
+     */
+    boolean isSuperseded(Job job);
+}
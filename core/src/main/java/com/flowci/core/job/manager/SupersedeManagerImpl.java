@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.manager;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.job.dao.JobRefNumberDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobRefNumber;
+import com.flowci.core.trigger.domain.GitPrTrigger;
+import com.flowci.core.trigger.domain.GitPushTrigger;
+import com.flowci.domain.VariableMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Strings;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The latest build numbers are persisted, so they are shared by core nodes and kept over restart.
+ * The cache in front only short-cuts the superseded builds, since the number of ref never goes down.
+ *
+ * @author yang
+ */
+@Component
+public class SupersedeManagerImpl implements SupersedeManager {
+
+    private static final int MaxRefs = 10000;
+
+    @Autowired
+    private ConfigProperties.Job jobProperties;
+
+    @Autowired
+    private JobRefNumberDao jobRefNumberDao;
+
+    /**
+     * Latest build number by flow id and ref, the queued job will be expired after expireInSeconds
+     */
+    private Cache<String, Long> latest;
+
+    @PostConstruct
+    public void init() {
+        latest = Caffeine.newBuilder()
+            .maximumSize(MaxRefs)
+            .expireAfterWrite(jobProperties.getExpireInSeconds(), TimeUnit.SECONDS)
+            .build();
+    }
+
+    @Override
+    public String getRef(Job job) {
+        return getRef(job.getTrigger(), job.getContext());
+    }
+
+    @Override
+    public String getRef(Job.Trigger trigger, VariableMap context) {
+        if (trigger == Job.Trigger.PUSH) {
+            return context.get(GitPushTrigger.Variables.GIT_BRANCH);
+        }
+
+        if (trigger == Job.Trigger.PR_OPEN) {
+            String number = context.get(GitPrTrigger.Variables.PR_NUMBER);
+            return Strings.isNullOrEmpty(number) ? null : "pr/" + number;
+        }
+
+        return null;
+    }
+
+    @Override
+    public void supersede(Job job) {
+        String key = getKey(job);
+        if (Objects.isNull(key)) {
+            return;
+        }
+
+        Long number = jobRefNumberDao.max(key, job.getFlowId(), getRef(job), job.getBuildNumber());
+        latest.asMap().merge(key, number, Math::max);
+    }
+
+    @Override
+    public boolean isSuperseded(Job job) {
+        String key = getKey(job);
+        if (Objects.isNull(key)) {
+            return false;
+        }
+
+        Long cached = latest.getIfPresent(key);
+        if (!Objects.isNull(cached) && cached > job.getBuildNumber()) {
+            return true;
+        }
+
+        // the newer build could be created on other core node
+        Optional<JobRefNumber> stored = jobRefNumberDao.findById(key);
+        if (!stored.isPresent()) {
+            return false;
+        }
+
+        Long number = stored.get().getNumber();
+        latest.asMap().merge(key, number, Math::max);
+        return number > job.getBuildNumber();
+    }
+
+    private String getKey(Job job) {
+        String ref = getRef(job);
+        if (Strings.isNullOrEmpty(ref)) {
+            return null;
+        }
+        return job.getFlowId() + "/" + ref;
+    }
+}
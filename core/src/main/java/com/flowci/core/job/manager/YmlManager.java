@@ -20,7 +20,9 @@ import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobYml;
+import com.flowci.tree.ExecutionPlan;
 import com.flowci.tree.NodeTree;
+import java.util.List;
 
 /**
  * @author yang
@@ -29,10 +31,18 @@ public interface YmlManager {
 
     JobYml get(Job job);
 
-    JobYml create(Flow flow, Job job, Yml yml);
+    /**
+     * Create job yml for jobs in one batch and keep the compiled plan in cache
+     */
+    List<JobYml> create(Flow flow, List<Job> jobs, Yml yml, ExecutionPlan plan);
 
     /**
-     * Get node tree from job
+     * Load node tree from job yml
      */
     NodeTree getTree(Job job);
+
+    /**
+     * Get compiled execution plan from job, it's cached
+     */
+    ExecutionPlan getPlan(Job job);
 }
@@ -22,9 +22,12 @@ import com.flowci.core.job.dao.JobYmlDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobYml;
 import com.flowci.exception.NotFoundException;
+import com.flowci.tree.ExecutionPlan;
 import com.flowci.tree.Node;
 import com.flowci.tree.NodeTree;
 import com.flowci.tree.YmlParser;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,7 +42,7 @@ import org.springframework.stereotype.Component;
 public class YmlManagerImpl implements YmlManager {
 
     @Autowired
-    private Cache jobTreeCache;
+    private Cache jobPlanCache;
 
     @Autowired
     private JobYmlDao jobYmlDao;
@@ -56,18 +59,34 @@ public class YmlManagerImpl implements YmlManager {
     }
 
     @Override
-    public JobYml create(Flow flow, Job job, Yml yml) {
-        JobYml jobYml = new JobYml(job.getId(), flow.getName(), yml.getRaw());
-        return jobYmlDao.save(jobYml);
+    public List<JobYml> create(Flow flow, List<Job> jobs, Yml yml, ExecutionPlan plan) {
+        List<JobYml> ymlList = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            ymlList.add(new JobYml(job.getId(), flow.getName(), yml.getRaw()));
+        }
+
+        ymlList = jobYmlDao.insert(ymlList);
+
+        // plan is immutable, share it between jobs
+        for (Job job : jobs) {
+            jobPlanCache.put(job.getId(), plan);
+        }
+
+        return ymlList;
     }
 
     @Override
     public NodeTree getTree(Job job) {
-        return jobTreeCache.get(job.getId(), () -> {
-            log.debug("Load node tree for job: {}", job.getId());
-            JobYml yml = jobYmlDao.findById(job.getId()).get();
-            Node root = YmlParser.load(yml.getName(), yml.getRaw());
-            return NodeTree.create(root);
+        JobYml yml = get(job);
+        Node root = YmlParser.load(yml.getName(), yml.getRaw());
+        return NodeTree.create(root);
+    }
+
+    @Override
+    public ExecutionPlan getPlan(Job job) {
+        return jobPlanCache.get(job.getId(), () -> {
+            log.debug("Compile execution plan for job: {}", job.getId());
+            return ExecutionPlan.compile(getTree(job));
         });
     }
 }
@@ -20,9 +20,13 @@ import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummaryPage;
 import com.flowci.core.job.domain.JobYml;
 import com.flowci.domain.ExecutedCmd;
+import com.flowci.domain.TimelineEntry;
 import com.flowci.domain.VariableMap;
+import java.util.List;
 import org.springframework.data.domain.Page;
 
 /**
@@ -35,13 +39,23 @@ public interface JobService {
      */
     Job get(Flow flow, Long buildNumber);
 
+    /**
+     * Restore archived job to hot collections, the job is returned directly if not archived
+     */
+    Job restore(Flow flow, Long buildNumber);
+
     /**
      * Get job yml by job
      */
     JobYml getYml(Job job);
 
     /**
-     * Get latest job
+     * Get phase transitions of job in time order
+     */
+    List<TimelineEntry> getTimeline(Job job);
+
+    /**
+     * Get latest job, the job is shared by callers from cache and must not be changed
      */
     Job getLatest(Flow flow);
 
@@ -51,15 +65,36 @@ public interface JobService {
     Page<Job> list(Flow flow, int page, int size);
 
     /**
-     * Create job by flow and yml
+     * List job summaries for flow by build number cursor, it's the first page if before is null
+     */
+    JobSummaryPage listSummary(Flow flow, Long before, int size);
+
+    /**
+     * Search job summaries for flow on indexed fields by build number cursor
+     */
+    JobSummaryPage search(Flow flow, JobQuery query, Long before, int size);
+
+    /**
+     * Create job by flow and yml, a job is created for each combination in batch
+     * if flow has env matrix and the first one is returned
      */
     Job create(Flow flow, Yml yml, Trigger trigger, VariableMap input);
 
+    /**
+     * Create jobs for each input and each combination of env matrix in one batch, the yml is parsed once
+     */
+    List<Job> create(Flow flow, Yml yml, Trigger trigger, List<VariableMap> inputs);
+
     /**
      * Send to job queue
      */
     Job start(Job job);
 
+    /**
+     * Send jobs to job queue in one batch
+     */
+    List<Job> start(List<Job> jobs);
+
     /**
      * Force to stop the job if it's running
      */
@@ -23,48 +23,80 @@ import com.flowci.core.config.ConfigProperties;
 import com.flowci.core.domain.Variables;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
-import com.flowci.core.helper.ThreadHelper;
 import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.dao.JobNumberDao;
-import com.flowci.core.job.domain.CmdId;
+import com.flowci.core.job.dao.JobTimelineDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Trigger;
 import com.flowci.core.job.domain.JobNumber;
+import com.flowci.core.job.domain.JobSummary;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummaryPage;
+import com.flowci.core.job.domain.JobTimeline;
 import com.flowci.core.job.domain.JobYml;
 import com.flowci.core.job.event.CreateNewJobEvent;
 import com.flowci.core.job.event.JobCreatedEvent;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.manager.AdmissionManager;
 import com.flowci.core.job.manager.CmdManager;
+import com.flowci.core.job.manager.SupersedeManager;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.util.JobKeyBuilder;
 import com.flowci.core.job.util.StatusHelper;
+import com.flowci.core.trigger.domain.GitPrTrigger;
+import com.flowci.core.trigger.domain.GitPushTrigger;
 import com.flowci.core.user.CurrentUserHelper;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Agent.Status;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdId;
 import com.flowci.domain.ExecutedCmd;
+import com.flowci.domain.PlanStep;
+import com.flowci.domain.TimelineEntry;
+import com.flowci.domain.TimelineEntry.Phase;
 import com.flowci.domain.VariableMap;
+import com.flowci.exception.ArgumentException;
+import com.flowci.exception.NotAvailableException;
 import com.flowci.exception.NotFoundException;
 import com.flowci.exception.StatusException;
+import com.flowci.tree.AutoCancel;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
 import com.flowci.tree.GroovyRunner;
 import com.flowci.tree.Node;
-import com.flowci.tree.NodePath;
 import com.flowci.tree.NodeTree;
 import com.flowci.tree.YmlParser;
+import com.google.common.collect.ImmutableSet;
 import groovy.util.ScriptException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.data.domain.Page;
@@ -85,6 +117,34 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
 
     private static final Integer DefaultBeforeTimeout = 5;
 
+    private static final Integer MaxSummaryPageSize = 100;
+
+    /**
+     * Jobs are re-enqueued with delay, the thread is not blocked on waiting
+     */
+    private static final int MaxRetryShift = 16;
+
+    private static final String CoalescedMessage = "Replaced by a newer build of the same ref";
+
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Queued jobs of these triggers are replaced by the newer job of the same ref when over limit,
+     * the ref of scheduler is the flow itself
+     */
+    private static final Set<Trigger> CoalescibleTriggers = ImmutableSet.of(
+        Trigger.SCHEDULER,
+        Trigger.PUSH,
+        Trigger.PR_OPEN
+    );
+
+    private static final Sort TimelineOrder = Sort.by(Direction.ASC, "at", "_id");
+
+    /**
+     * Max num of agent phases recorded to timeline for each step
+     */
+    private static final int MaxStepTimeline = 10;
+
     @Autowired
     private ConfigProperties appProperties;
 
@@ -100,6 +160,12 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
     @Autowired
     private JobNumberDao jobNumberDao;
 
+    @Autowired
+    private JobTimelineDao jobTimelineDao;
+
+    @Autowired
+    private Cache jobLatestCache;
+
     @Autowired
     private ApplicationEventPublisher applicationEventPublisher;
 
@@ -110,7 +176,7 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
     private Queue jobQueue;
 
     @Autowired
-    private ThreadPoolTaskExecutor retryExecutor;
+    private ThreadPoolTaskExecutor jobCreateExecutor;
 
     @Autowired
     private CmdManager cmdManager;
@@ -118,12 +184,50 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
     @Autowired
     private YmlManager ymlManager;
 
+    @Autowired
+    private SupersedeManager supersedeManager;
+
+    @Autowired
+    private AdmissionManager admissionManager;
+
     @Autowired
     private AgentService agentService;
 
     @Autowired
     private StepService stepService;
 
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer queueWaitTimer;
+
+    private Timer dispatchTimer;
+
+    private Timer callbackTimer;
+
+    /**
+     * Step duration timers by flow name, to avoid registry lookup on each callback
+     */
+    private final Map<String, Timer> stepDurationTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initMetrics() {
+        queueWaitTimer = Timer.builder("flowci.job.queue.wait")
+            .description("Time of job from queued to running")
+            .register(meterRegistry);
+
+        dispatchTimer = Timer.builder("flowci.job.dispatch")
+            .description("Time to dispatch step of job to agent")
+            .register(meterRegistry);
+
+        callbackTimer = Timer.builder("flowci.job.callback")
+            .description("Time to process executed cmd callback")
+            .register(meterRegistry);
+    }
+
     @Override
     public Job get(Flow flow, Long buildNumber) {
         String key = JobKeyBuilder.build(flow, buildNumber);
@@ -137,15 +241,49 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         return job;
     }
 
+    @Override
+    public Job restore(Flow flow, Long buildNumber) {
+        String key = JobKeyBuilder.build(flow, buildNumber);
+        Job job = jobDao.findByKey(key);
+
+        if (Objects.isNull(job)) {
+            job = retentionService.restore(key);
+        }
+
+        if (Objects.isNull(job)) {
+            throw new NotFoundException(
+                "The job {0} for build number {1} cannot found", flow.getName(), buildNumber.toString());
+        }
+
+        return job;
+    }
+
     @Override
     public JobYml getYml(Job job) {
         return ymlManager.get(job);
     }
 
+    @Override
+    public List<TimelineEntry> getTimeline(Job job) {
+        List<JobTimeline> records = jobTimelineDao.findAllByJobId(job.getId(), TimelineOrder);
+        List<TimelineEntry> timeline = new ArrayList<>(records.size());
+        for (JobTimeline record : records) {
+            timeline.add(record.toEntry());
+        }
+        return timeline;
+    }
+
     @Override
     public Job getLatest(Flow flow) {
+        Job cached = jobLatestCache.get(flow.getId(), Job.class);
+        if (!Objects.isNull(cached)) {
+            return cached;
+        }
+
         JobNumber latest = jobNumberDao.findById(flow.getId()).get();
-        return get(flow, latest.getNumber());
+        Job job = get(flow, latest.getNumber());
+        jobLatestCache.put(flow.getId(), job);
+        return job;
     }
 
     @Override
@@ -155,47 +293,64 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
     }
 
     @Override
-    public Job create(Flow flow, Yml yml, Trigger trigger, VariableMap input) {
-        // verify yml and parse to Node
-        Node root = YmlParser.load(flow.getName(), yml.getRaw());
+    public JobSummaryPage listSummary(Flow flow, Long before, int size) {
+        return search(flow, new JobQuery(), before, size);
+    }
 
-        // create job number
-        Long buildNumber = getJobNumber(flow);
+    @Override
+    public JobSummaryPage search(Flow flow, JobQuery query, Long before, int size) {
+        if (size <= 0 || size > MaxSummaryPageSize) {
+            throw new ArgumentException("The page size must be in 1 - {0}", MaxSummaryPageSize.toString());
+        }
 
-        // create job
-        Job job = new Job();
-        job.setKey(JobKeyBuilder.build(flow, buildNumber));
-        job.setFlowId(flow.getId());
-        job.setTrigger(trigger);
-        job.setBuildNumber(buildNumber);
-        job.setCurrentPath(root.getPathAsString());
-        job.setAgentSelector(root.getSelector());
+        // fetch one more to know whether has next page
+        List<JobSummary> summaries = jobDao.searchSummary(flow.getId(), query, before, size + 1);
+        if (summaries.size() <= size) {
+            return new JobSummaryPage(summaries, null);
+        }
 
-        // init job context
-        VariableMap defaultContext = initJobContext(flow, job, root.getEnvironments(), input);
-        job.getContext().merge(defaultContext);
+        List<JobSummary> content = summaries.subList(0, size);
+        return new JobSummaryPage(content, content.get(size - 1).getBuildNumber());
+    }
 
-        // setup created by form login user or git event author
-        if (currentUserHelper.hasLogin()) {
-            job.setCreatedBy(currentUserHelper.get().getId());
-        } else {
-            String createdBy = job.getContext().get(GIT_AUTHOR, "Unknown");
-            job.setCreatedBy(createdBy);
+    @Override
+    public Job create(Flow flow, Yml yml, Trigger trigger, VariableMap input) {
+        long start = System.nanoTime();
+
+        // verify yml and parse to Node, the compiled plan is used to init steps without reloading yml
+        Node root = YmlParser.load(flow.getName(), yml.getRaw());
+        ExecutionPlan plan = ExecutionPlan.compile(NodeTree.create(root));
+        long parsed = recordCreatePhase("parse", start);
+
+        // a job for each combination of env matrix
+        if (root.hasMatrix()) {
+            List<VariableMap> inputs = Collections.singletonList(input);
+            return createInBatch(flow, yml, root, plan, trigger, inputs, start, parsed).get(0);
         }
 
-        // set expire at
-        Instant expireAt = Instant.now().plus(jobProperties.getExpireInSeconds(), ChronoUnit.SECONDS);
-        job.setExpireAt(Date.from(expireAt));
-        jobDao.save(job);
+        try {
+            admissionManager.verifyQueued(flow.getId(), 1);
+        } catch (NotAvailableException e) {
+            recordAdmission("rejected", 1);
+            throw e;
+        }
 
-        // create job yml
-        ymlManager.create(flow, job, yml);
+        List<VariableMap[]> variants = Collections.singletonList(new VariableMap[]{input});
+        List<Job> jobs = create(flow, yml, root, plan, trigger, variants, parsed);
+        supersede(root, jobs, 1);
+        recordCreatePhase("total", start);
+        return jobs.get(0);
+    }
 
-        // init job steps as executed cmd
-        stepService.init(job);
+    @Override
+    public List<Job> create(Flow flow, Yml yml, Trigger trigger, List<VariableMap> inputs) {
+        long start = System.nanoTime();
 
-        applicationEventPublisher.publishEvent(new JobCreatedEvent(this, job));
-        return job;
+        Node root = YmlParser.load(flow.getName(), yml.getRaw());
+        ExecutionPlan plan = ExecutionPlan.compile(NodeTree.create(root));
+        long parsed = recordCreatePhase("parse", start);
+
+        return createInBatch(flow, yml, root, plan, trigger, inputs, start, parsed);
     }
 
     @Override
@@ -211,12 +366,27 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         }
     }
 
+    @Override
+    public List<Job> start(List<Job> jobs) {
+        for (Job job : jobs) {
+            if (job.getStatus() != Job.Status.PENDING) {
+                throw new StatusException("Job not in pending status");
+            }
+        }
+
+        List<Job> started = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            started.add(start(job));
+        }
+        return started;
+    }
+
     @Override
     public Job cancel(Job job) {
         // send stop cmd when is running
         if (job.isRunning()) {
             Agent agent = agentService.get(job.getAgentId());
-            Cmd killCmd = cmdManager.createKillCmd();
+            Cmd killCmd = cmdManager.createKillCmd(job);
 
             agentService.dispatch(killCmd, agent);
             log.info("Stop cmd been send to {} for job {}", agent.getName(), job.getId());
@@ -233,20 +403,24 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
 
     @Override
     public boolean dispatch(Job job) {
-        NodeTree tree = ymlManager.getTree(job);
-        Node node = tree.get(currentNodePath(job));
+        return dispatchTimer.record(() -> doDispatch(job));
+    }
+
+    private boolean doDispatch(Job job) {
+        ExecutionPlan plan = ymlManager.getPlan(job);
+        Step step = plan.get(job.getCurrentPath());
         Agent agent = agentService.get(job.getAgentId());
 
         try {
             // set executed cmd step to running
-            ExecutedCmd executedCmd = stepService.get(job, node);
+            setStepRunning(job, step);
 
-            if (!executedCmd.isRunning()) {
-                executedCmd.setStatus(ExecutedCmd.Status.RUNNING);
-                stepService.update(job, executedCmd);
-            }
+            Cmd cmd = createCmd(job, plan, step);
+            cmd.setSlot(agent.getSlot(job.getId()));
+
+            // record before sending to agent, since the callback may save job before it
+            addTimeline(job, Phase.DISPATCHED, step.getPath());
 
-            Cmd cmd = cmdManager.createShellCmd(job, node);
             agentService.dispatch(cmd, agent);
             log.debug("Job {} with cmd {} been dispatched to agent {}", job.getId(), cmd.getId());
 
@@ -254,15 +428,49 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         } catch (Throwable e) {
             log.debug("Fail to dispatch job {} to agent {}", job.getId(), agent.getId(), e);
             setJobStatus(job, Job.Status.FAILURE, e.getMessage());
-            agentService.tryRelease(agent);
+            agentService.tryRelease(agent, job.getId());
             return false;
         }
     }
 
+    /**
+     * Create shell cmd of step, or plan cmd from the step if ship plan is enabled
+     */
+    private Cmd createCmd(Job job, ExecutionPlan plan, Step step) {
+        if (!jobProperties.getShipPlan()) {
+            return cmdManager.createShellCmd(job, step);
+        }
+
+        Cmd cmd = cmdManager.createPlanCmd(job, plan, step, jobProperties.getMaxShippedSteps());
+
+        // save shipped steps before sending to agent, the callback of them will not dispatch the next step
+        Set<String> shipped = new HashSet<>(cmd.getPlan().size());
+        for (PlanStep planStep : cmd.getPlan()) {
+            CmdId cmdId = CmdId.parse(planStep.getCmd().getId());
+            shipped.add(cmdId.getNodePath());
+        }
+
+        shipped.remove(step.getPath());
+        job.setShippedPaths(shipped);
+        save(job);
+        return cmd;
+    }
+
+    private void setStepRunning(Job job, Step step) {
+        ExecutedCmd executedCmd = stepService.get(job, step);
+
+        // the callback of a shipped step may be saved before it, do not overwrite the result
+        if (executedCmd.getStatus() == ExecutedCmd.Status.PENDING) {
+            executedCmd.setStatus(ExecutedCmd.Status.RUNNING);
+            stepService.update(job, executedCmd);
+        }
+    }
+
     @Override
     public void onApplicationEvent(CreateNewJobEvent event) {
-        Job job = create(event.getFlow(), event.getYml(), event.getTrigger(), event.getInput());
-        start(job);
+        List<VariableMap> inputs = Collections.singletonList(event.getInput());
+        List<Job> jobs = create(event.getFlow(), event.getYml(), event.getTrigger(), inputs);
+        start(jobs);
     }
 
     @Override
@@ -276,6 +484,27 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
             return;
         }
 
+        // the queued job could be cancelled by a newer job of the same ref after enqueued
+        Optional<Job> stored = jobDao.findById(job.getId());
+        if (!stored.isPresent() || !stored.get().isQueuing()) {
+            log.info("Job {} been cancelled or removed after enqueued", job.getId());
+            return;
+        }
+
+        if (job.getAutoCancel() != AutoCancel.NONE && supersedeManager.isSuperseded(job)) {
+            log.info("Job {} been superseded by newer build", job.getId());
+            setJobStatus(job, Job.Status.CANCELLED, "Superseded by a newer build");
+            return;
+        }
+
+        if (!admissionManager.canRun(job.getFlowId())) {
+            log.debug("Job {} deferred since max running jobs of flow reached", job.getId());
+            addTimeline(job, Phase.DEFERRED, "max running of flow");
+            recordAdmission("deferred", 1);
+            retry(job);
+            return;
+        }
+
         try {
             // find available agents
             Set<String> agentTags = job.getAgentSelector().getTags();
@@ -284,12 +513,15 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
             // try to lock it
             Boolean isLocked = Boolean.FALSE;
             Agent available = null;
+            boolean hasIdle = availableList.hasNext();
 
             while (availableList.hasNext()) {
                 Agent agent = availableList.next();
                 agent.setJobId(job.getId());
 
                 isLocked = agentService.tryLock(agent);
+                addTimeline(job, Phase.LOCK_ATTEMPT, agent.getId() + (isLocked ? " locked" : " busy"));
+
                 if (isLocked) {
                     available = agent;
                     break;
@@ -300,13 +532,16 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
 
             // re-enqueue to job while agent been locked by other
             if (!isLocked) {
+                if (!hasIdle) {
+                    addTimeline(job, Phase.LOCK_ATTEMPT, "no idle agent");
+                }
                 log.debug("Agent not found for job {}, put into the retrying queue", job.getId());
                 retry(job);
                 return;
             }
 
-            NodeTree tree = ymlManager.getTree(job);
-            Node next =  tree.next(currentNodePath(job));
+            ExecutionPlan plan = ymlManager.getPlan(job);
+            Step next = plan.next(plan.get(job.getCurrentPath()), true);
 
             // do not accept job without regular steps
             if (Objects.isNull(next)) {
@@ -317,9 +552,10 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
             log.debug("Next step of job {} is {}", job.getId(), next.getName());
 
             // set path, agent id, and status to job
-            job.setCurrentPath(next.getPathAsString());
+            job.setCurrentPath(next.getPath());
             job.setAgentId(available.getId());
             setJobStatus(job, Job.Status.RUNNING, null);
+            recordQueueWait(job);
 
             // execute condition script
             Boolean executed = executeBeforeCondition(job, next);
@@ -334,6 +570,7 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         } catch (NotFoundException e) {
             // re-enqueue to job while agent not found
             log.debug("Agent not available, job {} retry", job.getId());
+            addTimeline(job, Phase.LOCK_ATTEMPT, "no agent");
             retry(job);
         }
     }
@@ -341,6 +578,10 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
     @Override
     @RabbitListener(queues = "${app.job.callback-queue-name}", containerFactory = "jobAndCallbackContainerFactory")
     public void processCallback(ExecutedCmd execCmd) {
+        callbackTimer.record(() -> doProcessCallback(execCmd));
+    }
+
+    private void doProcessCallback(ExecutedCmd execCmd) {
         CmdId cmdId = CmdId.parse(execCmd.getId());
         if (Objects.isNull(cmdId)) {
             log.debug("Illegal cmd callback: {}", execCmd.getId());
@@ -349,15 +590,18 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
 
         // get cmd related job
         Job job = jobDao.findById(cmdId.getJobId()).get();
-        NodePath currentFromCmd = NodePath.create(cmdId.getNodePath());
-
-        NodeTree tree = ymlManager.getTree(job);
-        Node node = tree.get(currentFromCmd);
+        ExecutionPlan plan = ymlManager.getPlan(job);
+        int currentFromCmd = plan.id(cmdId.getNodePath());
+        Step step = plan.get(currentFromCmd);
+
+        // verify job node path is match cmd node path, or the cmd is shipped within the plan cmd
+        if (currentFromCmd != plan.id(job.getCurrentPath())) {
+            if (!job.getShippedPaths().contains(step.getPath())) {
+                log.error("Invalid executed cmd callback: does not match job current node path");
+                return;
+            }
 
-        // verify job node path is match cmd node path
-        if (!currentFromCmd.equals(currentNodePath(job))) {
-            log.error("Invalid executed cmd callback: does not match job current node path");
-            return;
+            job.setCurrentPath(step.getPath());
         }
 
         // verify job status
@@ -366,8 +610,16 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
             return;
         }
 
+        // the shipped step is handled by this callback, the agent will not send it again
+        job.getShippedPaths().remove(step.getPath());
+
+        // agent phases are kept in job timeline only, not in executed cmd
+        addTimeline(job, cmdId.getNodePath(), execCmd);
+        execCmd.setTimeline(null);
+
         // save executed cmd
         stepService.update(job, execCmd);
+        recordStepDuration(job, execCmd);
         log.debug("Executed cmd {} been recorded", execCmd);
 
         // merge output to job context
@@ -375,14 +627,14 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         context.merge(execCmd.getOutput());
 
         // setup current job status if not tail node
-        if (!node.isTail()) {
+        if (!step.isTail()) {
             context.putString(Variables.JOB_STATUS, StatusHelper.convert(execCmd).name());
         }
 
-        jobDao.save(job);
+        save(job);
 
         // find next node
-        Node next = findNext(job, tree, node, execCmd.isSuccess());
+        Step next = findNext(job, plan, step, execCmd.isSuccess());
 
         // job finished
         if (Objects.isNull(next)) {
@@ -390,48 +642,65 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
             setJobStatus(job, statusFromContext, execCmd.getError());
 
             Agent agent = agentService.get(job.getAgentId());
-            agentService.tryRelease(agent);
+            agentService.tryRelease(agent, job.getId());
 
             log.info("Job {} been executed with status {}", job.getId(), statusFromContext);
             return;
         }
 
         // continue to run next node
-        job.setCurrentPath(next.getPathAsString());
-        jobDao.save(job);
+        job.setCurrentPath(next.getPath());
+
+        // next step is running on agent within the shipped plan, wait for its callback
+        if (isShipped(job, execCmd, next)) {
+            save(job);
+            setStepRunning(job, next);
+            log.debug("Job {} continue to shipped step {}", job.getId(), next.getPath());
+            return;
+        }
+
+        job.getShippedPaths().clear();
+        save(job);
 
         log.debug("Dispatch job : {}", job);
         dispatch(job);
     }
 
-    private Node findNext(Job job, NodeTree tree, Node current, boolean isSuccess) {
-        Node next = isSuccess ? tree.next(current.getPath()) : tree.nextFinal(current.getPath());
-
-        if (Objects.isNull(next)) {
-            return null;
+    /**
+     * The agent moves to the next shipped step only if the current step is success and not killed
+     */
+    private static boolean isShipped(Job job, ExecutedCmd execCmd, Step next) {
+        if (!execCmd.isSuccess() || execCmd.getStatus() == ExecutedCmd.Status.KILLED) {
+            return false;
         }
+        return job.getShippedPaths().contains(next.getPath());
+    }
 
-        // Execute before condition to check the next node should be skipped or not
-        if (executeBeforeCondition(job, next)) {
-            return next;
+    private Step findNext(Job job, ExecutionPlan plan, Step current, boolean isSuccess) {
+        Step next = plan.next(current, isSuccess);
+
+        // Execute before condition to check the next step should be skipped or not
+        while (!Objects.isNull(next) && !executeBeforeCondition(job, next)) {
+            next = plan.next(next, true);
         }
 
-        return findNext(job, tree, next, true);
+        return next;
     }
 
-    private Boolean executeBeforeCondition(Job job, Node node) {
-        if (!node.hasBefore()) {
+    private Boolean executeBeforeCondition(Job job, Step step) {
+        if (!step.hasBefore()) {
             return true;
         }
 
-        VariableMap map = VariableMap.merge(job.getContext(), node.getEnvironments());
+        VariableMap map = VariableMap.merge(job.getContext());
+        map.load(step.getEnvironments());
 
         try {
-            GroovyRunner<Boolean> runner = GroovyRunner.create(DefaultBeforeTimeout, node.getBefore(), map);
+            GroovyRunner<Boolean> runner = GroovyRunner.create(DefaultBeforeTimeout, step.getBefore(), map);
             Boolean result = runner.run();
 
             if (Objects.isNull(result) || result == Boolean.FALSE) {
-                ExecutedCmd executedCmd = stepService.get(job, node);
+                ExecutedCmd executedCmd = stepService.get(job, step);
                 executedCmd.setStatus(ExecutedCmd.Status.SKIPPED);
                 executedCmd.setError("The 'before' condition cannot be matched");
                 stepService.update(job, executedCmd);
@@ -440,7 +709,7 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
 
             return true;
         } catch (ScriptException e) {
-            ExecutedCmd executedCmd = stepService.get(job, node);
+            ExecutedCmd executedCmd = stepService.get(job, step);
             executedCmd.setStatus(ExecutedCmd.Status.SKIPPED);
             executedCmd.setError(e.getMessage());
             stepService.update(job, executedCmd);
@@ -448,6 +717,226 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         }
     }
 
+    /**
+     * Verify num of queued jobs, the older queued jobs of the same ref are cancelled to make room for
+     * jobs from git event or scheduler, it throws NotAvailableException if still over the limit
+     */
+    private void verifyQueued(Flow flow, Trigger trigger, List<VariableMap> inputs, int num) {
+        try {
+            admissionManager.verifyQueued(flow.getId(), num);
+            return;
+        } catch (NotAvailableException e) {
+            int coalesced = coalesce(flow, trigger, inputs);
+            if (coalesced == 0) {
+                recordAdmission("rejected", num);
+                throw e;
+            }
+
+            recordAdmission("coalesced", coalesced);
+            log.info("{} queued jobs of flow {} been replaced by new jobs from {}",
+                coalesced, flow.getName(), trigger);
+        }
+
+        try {
+            admissionManager.verifyQueued(flow.getId(), num);
+        } catch (NotAvailableException e) {
+            recordAdmission("rejected", num);
+            throw e;
+        }
+    }
+
+    /**
+     * Cancel queued jobs of flow from the same trigger and ref of inputs
+     *
+     * @return num of jobs cancelled
+     */
+    private int coalesce(Flow flow, Trigger trigger, List<VariableMap> inputs) {
+        if (!CoalescibleTriggers.contains(trigger)) {
+            return 0;
+        }
+
+        Set<String> refs = new HashSet<>(inputs.size());
+        for (VariableMap input : inputs) {
+            refs.add(supersedeManager.getRef(trigger, input));
+        }
+
+        int num = 0;
+        for (Job queued : jobDao.findAllByFlowIdAndStatus(flow.getId(), Job.Status.QUEUED)) {
+            if (queued.getTrigger() != trigger || !refs.contains(supersedeManager.getRef(queued))) {
+                continue;
+            }
+
+            // the job could be taken from queue in the meantime
+            if (!jobDao.cancelQueued(queued.getId(), CoalescedMessage)) {
+                continue;
+            }
+
+            queued.setStatus(Job.Status.CANCELLED);
+            queued.setMessage(CoalescedMessage);
+            queued.getContext().putString(Variables.JOB_STATUS, Job.Status.CANCELLED.name());
+
+            jobLatestCache.evict(queued.getFlowId());
+            applicationEventPublisher.publishEvent(new JobStatusChangeEvent(this, queued));
+            num++;
+        }
+
+        return num;
+    }
+
+    /**
+     * Create jobs for each input and each combination of env matrix from parsed yml
+     */
+    private List<Job> createInBatch(Flow flow, Yml yml, Node root, ExecutionPlan plan, Trigger trigger,
+                                    List<VariableMap> inputs, long start, long parsed) {
+        if (Objects.isNull(inputs) || inputs.isEmpty()) {
+            inputs = Collections.singletonList(VariableMap.EMPTY);
+        }
+
+        // expand each input with env matrix, input has higher priority than matrix
+        List<VariableMap> matrix = root.expandMatrix();
+        List<VariableMap[]> variants = new ArrayList<>(inputs.size() * matrix.size());
+        for (VariableMap input : inputs) {
+            for (VariableMap combination : matrix) {
+                variants.add(new VariableMap[]{combination, input});
+            }
+        }
+
+        if (variants.size() > jobProperties.getBatchLimit()) {
+            throw new ArgumentException("The num of jobs {0} is over the batch limit {1}",
+                Integer.toString(variants.size()), jobProperties.getBatchLimit().toString());
+        }
+
+        verifyQueued(flow, trigger, inputs, variants.size());
+
+        List<Job> jobs = create(flow, yml, root, plan, trigger, variants, parsed);
+        supersede(root, jobs, matrix.size());
+        recordCreatePhase("total", start);
+        return jobs;
+    }
+
+    /**
+     * Create jobs from parsed yml for each variant of inputs, the build numbers are allocated in one block
+     */
+    private List<Job> create(Flow flow, Yml yml, Node root, ExecutionPlan plan, Trigger trigger,
+                             List<VariableMap[]> variants, long phaseStart) {
+        // create job numbers
+        long lastNumber = jobNumberDao.increase(flow.getId(), variants.size());
+        long buildNumber = lastNumber - variants.size() + 1;
+        long numbered = recordCreatePhase("number", phaseStart);
+
+        // setup created by form login user or git event author
+        String loginUserId = currentUserHelper.hasLogin() ? currentUserHelper.get().getId() : null;
+        Instant expireAt = Instant.now().plus(jobProperties.getExpireInSeconds(), ChronoUnit.SECONDS);
+
+        List<Job> jobs = new ArrayList<>(variants.size());
+        for (VariableMap[] variant : variants) {
+            Job job = new Job();
+            job.setKey(JobKeyBuilder.build(flow, buildNumber));
+            job.setFlowId(flow.getId());
+            job.setTrigger(trigger);
+            job.setBuildNumber(buildNumber++);
+            job.setCurrentPath(root.getPathAsString());
+            job.setAgentSelector(root.getSelector());
+            job.setAutoCancel(root.getAutoCancel());
+
+            // init job context, root envs < matrix < input
+            VariableMap[] inputs = new VariableMap[variant.length + 1];
+            inputs[0] = root.getEnvironments();
+            System.arraycopy(variant, 0, inputs, 1, variant.length);
+
+            VariableMap defaultContext = initJobContext(flow, job, inputs);
+            job.getContext().merge(defaultContext);
+
+            setGitFields(job);
+
+            if (Objects.isNull(loginUserId)) {
+                job.setCreatedBy(job.getContext().get(GIT_AUTHOR, "Unknown"));
+            } else {
+                job.setCreatedBy(loginUserId);
+            }
+
+            // set expire at
+            job.setExpireAt(Date.from(expireAt));
+            jobs.add(job);
+        }
+
+        jobDao.insert(jobs);
+
+        List<JobTimeline> created = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            created.add(JobTimeline.of(job.getId(), TimelineEntry.of(Phase.CREATED, null)));
+        }
+        jobTimelineDao.insert(created);
+        evictLatest(jobs);
+        retentionService.moveHotWindow(flow, lastNumber);
+        long saved = recordCreatePhase("job", numbered);
+
+        // create job yml and init job steps as executed cmd concurrently, both of them depend on job id only
+        CompletableFuture<List<JobYml>> ymlFuture =
+            CompletableFuture.supplyAsync(() -> ymlManager.create(flow, jobs, yml, plan), jobCreateExecutor);
+        stepService.init(jobs, plan);
+        join(ymlFuture);
+        recordCreatePhase("steps", saved);
+
+        for (Job job : jobs) {
+            applicationEventPublisher.publishEvent(new JobCreatedEvent(this, job));
+        }
+        return jobs;
+    }
+
+    /**
+     * Copy git variables of trigger from context to indexed fields of job for search
+     */
+    private static void setGitFields(Job job) {
+        VariableMap context = job.getContext();
+        job.setAuthor(context.get(GIT_AUTHOR));
+
+        if (job.getTrigger() == Trigger.PR_OPEN || job.getTrigger() == Trigger.PR_CLOSE) {
+            job.setBranch(context.get(GitPrTrigger.Variables.PR_HEAD_REPO_BRANCH));
+            job.setCommitId(context.get(GitPrTrigger.Variables.PR_HEAD_REPO_COMMIT));
+            job.setPrNumber(context.get(GitPrTrigger.Variables.PR_NUMBER));
+            return;
+        }
+
+        job.setBranch(context.get(GitPushTrigger.Variables.GIT_BRANCH));
+        job.setCommitId(context.get(GitPushTrigger.Variables.GIT_COMMIT_ID));
+    }
+
+    /**
+     * Apply auto cancel policy of flow. The jobs are created input by input, and each input has one job with
+     * its own build number for each env matrix variant, so a group of consecutive jobs is the matrix of an input.
+     */
+    private void supersede(Node root, List<Job> jobs, int groupSize) {
+        if (root.getAutoCancel() == AutoCancel.NONE || jobs.isEmpty()) {
+            return;
+        }
+
+        // the lowest build number of each group is recorded, so the other variants of it are not superseded
+        Map<String, Long> latest = new HashMap<>();
+        for (int i = 0; i < jobs.size(); i += groupSize) {
+            Job job = jobs.get(i);
+            supersedeManager.supersede(job);
+
+            String ref = supersedeManager.getRef(job);
+            if (!Objects.isNull(ref)) {
+                latest.put(ref, job.getBuildNumber());
+            }
+        }
+
+        if (root.getAutoCancel() != AutoCancel.RUNNING || latest.isEmpty()) {
+            return;
+        }
+
+        String flowId = jobs.get(0).getFlowId();
+        for (Job running : jobDao.findAllByFlowIdAndStatus(flowId, Job.Status.RUNNING)) {
+            Long number = latest.get(supersedeManager.getRef(running));
+            if (!Objects.isNull(number) && running.getBuildNumber() < number) {
+                log.info("Running job {} been superseded by build {}", running.getId(), number);
+                cancel(running);
+            }
+        }
+    }
+
     private VariableMap initJobContext(Flow flow, Job job, VariableMap... inputs) {
         VariableMap context = new VariableMap(20);
         context.putString(Variables.SERVER_URL, appProperties.getServerAddress());
@@ -470,25 +959,123 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         return context;
     }
 
-    private void setupNodePathAndDispatch(Job job, Node next) {
-        job.setCurrentPath(next.getPathAsString());
-        jobDao.save(job);
+    private void setupNodePathAndDispatch(Job job, Step next) {
+        job.setCurrentPath(next.getPath());
+        save(job);
 
         dispatch(job);
     }
 
-    private NodePath currentNodePath(Job job) {
-        return NodePath.create(job.getCurrentPath());
+    /**
+     * Insert entry to job timeline, the retry entries are not recorded once reached the max of job
+     */
+    private void addTimeline(Job job, Phase phase, String detail) {
+        boolean isRetry = phase == Phase.QUEUED || phase == Phase.DEFERRED || phase == Phase.LOCK_ATTEMPT;
+        if (isRetry && !job.countTimelineRetry()) {
+            return;
+        }
+        jobTimelineDao.insert(JobTimeline.of(job.getId(), TimelineEntry.of(phase, detail)));
+    }
+
+    /**
+     * Insert agent phases from executed cmd, process start and finish time, and callback processed to job
+     * timeline in one batch, the agent phases are capped for each step
+     */
+    private void addTimeline(Job job, String nodePath, ExecutedCmd execCmd) {
+        List<JobTimeline> records = new ArrayList<>();
+
+        if (!Objects.isNull(execCmd.getTimeline())) {
+            for (TimelineEntry entry : execCmd.getTimeline()) {
+                if (records.size() >= MaxStepTimeline) {
+                    break;
+                }
+                String detail = Objects.isNull(entry.getDetail()) ? nodePath : entry.getDetail();
+                records.add(JobTimeline.of(job.getId(), new TimelineEntry(entry.getPhase(), entry.getAt(), detail)));
+            }
+        }
+
+        if (!Objects.isNull(execCmd.getStartAt())) {
+            TimelineEntry started = new TimelineEntry(Phase.PROCESS_STARTED, execCmd.getStartAt(), nodePath);
+            records.add(JobTimeline.of(job.getId(), started));
+        }
+
+        if (!Objects.isNull(execCmd.getFinishAt())) {
+            TimelineEntry finished = new TimelineEntry(Phase.FINISHED, execCmd.getFinishAt(), nodePath);
+            records.add(JobTimeline.of(job.getId(), finished));
+        }
+
+        records.add(JobTimeline.of(job.getId(), TimelineEntry.of(Phase.CALLBACK_PROCESSED, nodePath)));
+        jobTimelineDao.insert(records);
+    }
+
+    private void recordQueueWait(Job job) {
+        if (Objects.isNull(job.getQueuedAt())) {
+            return;
+        }
+
+        long wait = System.currentTimeMillis() - job.getQueuedAt().getTime();
+        queueWaitTimer.record(wait, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record latency of job creation phase, returns the end time of the phase
+     */
+    private long recordCreatePhase(String phase, long startNanos) {
+        long now = System.nanoTime();
+        meterRegistry.timer("flowci.job.create", "phase", phase).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private void recordAdmission(String result, int num) {
+        meterRegistry.counter("flowci.job.admission", "result", result).increment(num);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void recordStepDuration(Job job, ExecutedCmd execCmd) {
+        if (Objects.isNull(execCmd.getStartAt()) || Objects.isNull(execCmd.getFinishAt())) {
+            return;
+        }
+
+        long duration = execCmd.getFinishAt().getTime() - execCmd.getStartAt().getTime();
+        String flow = job.getContext().get(Variables.FLOW_NAME, "unknown");
+
+        Timer timer = stepDurationTimers.computeIfAbsent(flow, name ->
+            Timer.builder("flowci.job.step.duration")
+                .description("Duration of step executed on agent")
+                .tag("flow", name)
+                .register(meterRegistry)
+        );
+
+        timer.record(duration, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Re-enqueue job after few seconds
+     * Re-enqueue job after the waiting seconds, which is doubled on each retry of the job up to the max
      */
     private void retry(Job job) {
-        retryExecutor.execute(() -> {
-            ThreadHelper.sleep(jobProperties.getRetryWaitingSeconds() * 1000);
-            enqueue(job);
-        });
+        int retries = job.getRetries();
+        job.setRetries(retries + 1);
+
+        long waiting = jobProperties.getRetryWaitingSeconds() << Math.min(retries, MaxRetryShift);
+        waiting = Math.min(waiting, jobProperties.getRetryMaxWaitingSeconds());
+
+        retryExecutor.schedule(() -> {
+            try {
+                enqueue(job);
+            } catch (Throwable e) {
+                log.warn("Unable to re-enqueue job {}: {}", job.getId(), e.getMessage());
+            }
+        }, waiting, TimeUnit.SECONDS);
     }
 
     private Job enqueue(Job job) {
@@ -499,6 +1086,12 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         }
 
         try {
+            if (Objects.isNull(job.getQueuedAt())) {
+                job.setQueuedAt(new Date());
+            }
+
+            addTimeline(job, Phase.QUEUED, null);
+
             setJobStatus(job, Job.Status.QUEUED, null);
             queueTemplate.convertAndSend(jobQueue.getName(), job);
             return job;
@@ -507,23 +1100,26 @@ public class JobServiceImpl implements JobService, ApplicationListener<CreateNew
         }
     }
 
+    /**
+     * Save job and evict the latest job cache of flow
+     */
+    private void save(Job job) {
+        jobDao.save(job);
+        jobLatestCache.evict(job.getFlowId());
+    }
+
+    private void evictLatest(List<Job> jobs) {
+        for (Job job : jobs) {
+            jobLatestCache.evict(job.getFlowId());
+        }
+    }
+
     private Job setJobStatus(Job job, Job.Status newStatus, String message) {
         job.setStatus(newStatus);
         job.setMessage(message);
         job.getContext().putString(Variables.JOB_STATUS, newStatus.name());
-        jobDao.save(job);
+        save(job);
         applicationEventPublisher.publishEvent(new JobStatusChangeEvent(this, job));
         return job;
     }
-
-    private Long getJobNumber(Flow flow) {
-        Optional<JobNumber> optional = jobNumberDao.findById(flow.getId());
-        if (optional.isPresent()) {
-            JobNumber number = optional.get();
-            number.setNumber(number.getNumber() + 1);
-            return jobNumberDao.save(number).getNumber();
-        }
-
-        return jobNumberDao.save(new JobNumber(flow.getId())).getNumber();
-    }
 }
@@ -16,7 +16,14 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.job.domain.Job;
+import com.flowci.domain.Agent;
+import com.flowci.domain.ExecutedCmd;
+import java.io.InputStream;
+import java.nio.file.Path;
 import org.springframework.amqp.core.Message;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 /**
  * @author yang
@@ -25,4 +32,23 @@ public interface LoggingService {
 
     void processLogItem(Message message);
 
+    /**
+     * Save gzipped log of cmd uploaded from agent which executed the cmd
+     */
+    void save(Agent agent, String cmdId, InputStream gzipped);
+
+    /**
+     * Is log of cmd been uploaded
+     */
+    boolean hasLog(String cmdId);
+
+    /**
+     * Get path of uploaded log file of cmd in the job
+     */
+    Path getLogPath(Job job, String cmdId);
+
+    /**
+     * Read lines of uploaded log by page
+     */
+    Page<String> read(ExecutedCmd cmd, Pageable pageable);
 }
@@ -16,12 +16,40 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.manager.RecentLogManager;
+import com.flowci.domain.Agent;
+import com.flowci.domain.CmdId;
+import com.flowci.domain.ExecutedCmd;
 import com.flowci.domain.LogItem;
+import com.flowci.exception.ArgumentException;
+import com.flowci.exception.NotFoundException;
+import com.flowci.exception.StatusException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -41,6 +69,15 @@ public class LoggingServiceImpl implements LoggingService {
     @Autowired
     private SimpMessagingTemplate simpMessagingTemplate;
 
+    @Autowired
+    private RecentLogManager recentLogManager;
+
+    @Autowired
+    private ConfigProperties appProperties;
+
+    @Autowired
+    private JobDao jobDao;
+
     @Override
     @RabbitListener(queues = "#{logsQueue.getName()}", containerFactory = "logsContainerFactory")
     public void processLogItem(Message message) {
@@ -54,6 +91,109 @@ public class LoggingServiceImpl implements LoggingService {
 
         // send string message without cmd id
         String body = logItemAsString.substring(firstIndex + 1);
-        simpMessagingTemplate.convertAndSend(destination, body);
+
+        // keep line in recent logs and publish within the lock, so new subscriber gets snapshot and live lines in order
+        Lock lock = recentLogManager.lock(cmdId);
+        lock.lock();
+        try {
+            recentLogManager.append(cmdId, body);
+            simpMessagingTemplate.convertAndSend(destination, body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void save(Agent agent, String cmdId, InputStream gzipped) {
+        Job job = getJob(parseCmdId(cmdId).getJobId());
+
+        if (!Objects.equals(job.getAgentId(), agent.getId())) {
+            throw new StatusException("Agent {0} is not the executor of cmd {1}", agent.getName(), cmdId);
+        }
+
+        Path target = getLogPath(cmdId);
+        Path tmp = Paths.get(appProperties.getLogDir().toString(), cmdId + ".log.tmp");
+
+        try (InputStream in = new GZIPInputStream(gzipped)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Log of cmd {} been saved to {}", cmdId, target);
+        } catch (IOException e) {
+            throw new StatusException("Unable to save log of cmd {0}: {1}", cmdId, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean hasLog(String cmdId) {
+        return Files.exists(getLogPath(cmdId));
+    }
+
+    @Override
+    public Path getLogPath(Job job, String cmdId) {
+        if (!parseCmdId(cmdId).getJobId().equals(job.getId())) {
+            throw new StatusException("Job does not matched");
+        }
+
+        Path path = getLogPath(cmdId);
+        if (Files.notExists(path)) {
+            throw new NotFoundException("Log of cmd {0} not found", cmdId);
+        }
+
+        return path;
+    }
+
+    @Override
+    public Page<String> read(ExecutedCmd cmd, Pageable pageable) {
+        Path path = getLogPath(cmd.getId());
+        long skip = (long) pageable.getPageNumber() * pageable.getPageSize();
+
+        try (Stream<String> lines = Files.lines(path)) {
+            if (hasLogSize(cmd)) {
+                List<String> logs = lines.skip(skip)
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+
+                return new PageImpl<>(logs, pageable, cmd.getLogSize());
+            }
+
+            // log size not reported by agent, count lines while reading the page
+            List<String> logs = new ArrayList<>(pageable.getPageSize());
+            long total = 0;
+
+            for (Iterator<String> iter = lines.iterator(); iter.hasNext(); total++) {
+                String line = iter.next();
+                if (total >= skip && logs.size() < pageable.getPageSize()) {
+                    logs.add(line);
+                }
+            }
+
+            return new PageImpl<>(logs, pageable, total);
+        } catch (IOException e) {
+            throw new StatusException("Unable to read log of cmd {0}: {1}", cmd.getId(), e.getMessage());
+        }
+    }
+
+    private static boolean hasLogSize(ExecutedCmd cmd) {
+        return !Objects.isNull(cmd.getLogSize()) && cmd.getLogSize() >= 0;
+    }
+
+    private Path getLogPath(String cmdId) {
+        return Paths.get(appProperties.getLogDir().toString(), cmdId + ".log");
+    }
+
+    private static CmdId parseCmdId(String cmdId) {
+        CmdId parsed = CmdId.parse(cmdId);
+        if (Objects.isNull(parsed)) {
+            throw new ArgumentException("Invalid cmd id");
+        }
+        return parsed;
+    }
+
+    private Job getJob(String id) {
+        Optional<Job> optional = jobDao.findById(id);
+        if (optional.isPresent()) {
+            return optional.get();
+        }
+        throw new NotFoundException("Job {0} is not existed", id);
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.service;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.domain.Job;
+
+/**
+ * Keep latest jobs of each flow in hot collections, and archive the older ones with steps and yml
+ *
+ * @author yang
+ */
+public interface RetentionService {
+
+    /**
+     * Mark jobs of flow pushed out of the hot window by the latest build number, they will be archived
+     * by compact after cool down
+     */
+    void moveHotWindow(Flow flow, long latestBuildNumber);
+
+    /**
+     * Mark finished job as out of hot window if the window has passed it, since the job saved from
+     * a copy loaded before the window moved drops the mark
+     */
+    void checkHotWindow(Job job);
+
+    /**
+     * Archive a bounded batch of jobs out of the hot window of all flows in one query
+     *
+     * @return num of jobs archived
+     */
+    int compact();
+
+    /**
+     * Restore archived job with steps and yml to hot collections by job key
+     *
+     * @return restored job or null if not archived
+     */
+    Job restore(String key);
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.job.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.dao.JobArchiveDao;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.dao.JobNumberDao;
+import com.flowci.core.job.dao.JobTimelineDao;
+import com.flowci.core.job.dao.JobYmlDao;
+import com.flowci.core.job.domain.ArchivedJob;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobArchive;
+import com.flowci.core.job.domain.JobNumber;
+import com.flowci.core.job.domain.JobSummary;
+import com.flowci.core.job.domain.JobYml;
+import com.flowci.core.job.manager.CmdManager;
+import com.flowci.domain.ExecutedCmd;
+import com.flowci.exception.StatusException;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.YmlParser;
+import com.flowci.zookeeper.ZookeeperClient;
+import com.flowci.zookeeper.ZookeeperException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.apache.zookeeper.CreateMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Jobs out of the hot window of flow are compacted into job archive in small batches, only summary fields,
+ * steps and yml are kept in gzip json. The archived job is restored to hot collections on request.
+ *
+ * @author yang
+ */
+@Log4j2
+@Service
+public class RetentionServiceImpl implements RetentionService {
+
+    @Autowired
+    private ConfigProperties.Retention retentionProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobNumberDao jobNumberDao;
+
+    @Autowired
+    private JobYmlDao jobYmlDao;
+
+    @Autowired
+    private ExecutedCmdDao executedCmdDao;
+
+    @Autowired
+    private JobArchiveDao jobArchiveDao;
+
+    @Autowired
+    private JobTimelineDao jobTimelineDao;
+
+    @Autowired
+    private CmdManager cmdManager;
+
+    @Autowired
+    private ConfigProperties.Zookeeper zkProperties;
+
+    @Autowired
+    private ZookeeperClient zk;
+
+    @Autowired
+    private Cache jobStepCache;
+
+    @Autowired
+    private Cache jobPlanCache;
+
+    @Autowired
+    private Cache jobLatestCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter archivedCounter;
+
+    private Counter restoredCounter;
+
+    private String lockPath;
+
+    @PostConstruct
+    public void init() {
+        archivedCounter = meterRegistry.counter("flowci.job.archived");
+        restoredCounter = meterRegistry.counter("flowci.job.restored");
+        lockPath = zkProperties.getRetentionLock();
+    }
+
+    @Scheduled(fixedDelayString = "#{${app.retention.interval-in-seconds} * 1000}")
+    public void scheduleCompact() {
+        if (!retentionProperties.getEnabled()) {
+            return;
+        }
+
+        // only one core node compacts in each round
+        if (!lock()) {
+            return;
+        }
+
+        try {
+            int num = compact();
+            if (num > 0) {
+                log.info("{} jobs been archived", num);
+            }
+        } catch (Throwable e) {
+            log.warn("Unable to archive jobs: {}", e.getMessage());
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void moveHotWindow(Flow flow, long latestBuildNumber) {
+        int hotJobs = Objects.isNull(flow.getHotJobs()) ? retentionProperties.getHotJobs() : flow.getHotJobs();
+        long window = latestBuildNumber - hotJobs;
+        if (window <= 0) {
+            return;
+        }
+
+        long previous = jobNumberDao.moveWindow(flow.getId(), window);
+        if (previous < window) {
+            jobDao.markOutOfHotWindow(flow.getId(), previous, window);
+        }
+    }
+
+    @Override
+    public void checkHotWindow(Job job) {
+        if (Boolean.TRUE.equals(job.getOutOfHotWindow())) {
+            return;
+        }
+
+        Optional<JobNumber> number = jobNumberDao.findById(job.getFlowId());
+        if (!number.isPresent() || Objects.isNull(number.get().getWindow())) {
+            return;
+        }
+
+        long buildNumber = job.getBuildNumber();
+        if (buildNumber <= number.get().getWindow()) {
+            jobDao.markOutOfHotWindow(job.getFlowId(), buildNumber - 1, buildNumber);
+        }
+    }
+
+    @Override
+    public int compact() {
+        Instant coolDown = Instant.now().minus(retentionProperties.getCoolDownInSeconds(), ChronoUnit.SECONDS);
+
+        List<Job> jobs = jobDao.findArchivable(Date.from(coolDown), retentionProperties.getBatchSize());
+        for (Job job : jobs) {
+            archive(job);
+        }
+
+        return jobs.size();
+    }
+
+    @Override
+    public Job restore(String key) {
+        JobArchive archive = jobArchiveDao.findByKey(key);
+        if (Objects.isNull(archive)) {
+            return null;
+        }
+
+        ArchivedJob content = decode(archive.getData());
+        Job job = toJob(archive, content.getSummary());
+        job.setOutOfHotWindow(true);
+
+        // job is saved as updated now, so it will be kept in hot collections during the cool down
+        jobDao.save(job);
+        jobLatestCache.evict(job.getFlowId());
+
+        if (!Objects.isNull(content.getYml())) {
+            jobYmlDao.save(content.getYml());
+        }
+
+        if (!content.getSteps().isEmpty()) {
+            executedCmdDao.saveAll(content.getSteps());
+        }
+
+        jobArchiveDao.deleteById(archive.getId());
+        restoredCounter.increment();
+
+        log.debug("Job {} been restored from archive", key);
+        return job;
+    }
+
+    /**
+     * Ephemeral node as lock, it's removed if the node holding it is gone
+     */
+    private boolean lock() {
+        try {
+            zk.create(CreateMode.EPHEMERAL, lockPath, null);
+            return true;
+        } catch (ZookeeperException e) {
+            log.debug("Retention is running on other node: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void unlock() {
+        try {
+            zk.delete(lockPath, false);
+        } catch (ZookeeperException ignore) {
+
+        }
+    }
+
+    private void archive(Job job) {
+        ArchivedJob content = new ArchivedJob();
+        content.setSummary(toSummary(job));
+
+        Optional<JobYml> yml = jobYmlDao.findById(job.getId());
+        if (yml.isPresent()) {
+            content.setYml(yml.get());
+            content.setSteps(findSteps(job, yml.get()));
+        }
+
+        JobArchive archive = new JobArchive();
+        archive.setId(job.getId());
+        archive.setKey(job.getKey());
+        archive.setFlowId(job.getFlowId());
+        archive.setBuildNumber(job.getBuildNumber());
+        archive.setSummary(content.getSummary());
+        archive.setData(encode(content));
+
+        // archive is written before removing hot data, it's safe to redo if failed in between
+        jobArchiveDao.save(archive);
+
+        if (!content.getSteps().isEmpty()) {
+            executedCmdDao.deleteAll(content.getSteps());
+        }
+
+        yml.ifPresent(jobYmlDao::delete);
+        jobTimelineDao.deleteAllByJobId(job.getId());
+        jobDao.delete(job);
+
+        jobLatestCache.evict(job.getFlowId());
+        jobStepCache.evict(job.getId());
+        jobPlanCache.evict(job.getId());
+        archivedCounter.increment();
+    }
+
+    private List<ExecutedCmd> findSteps(Job job, JobYml yml) {
+        ExecutionPlan plan = ExecutionPlan.compile(NodeTree.create(YmlParser.load(yml.getName(), yml.getRaw())));
+
+        List<String> ids = new ArrayList<>(plan.size());
+        for (Step step : plan.getOrdered()) {
+            ids.add(cmdManager.createId(job, step).toString());
+        }
+
+        List<ExecutedCmd> steps = new ArrayList<>(ids.size());
+        executedCmdDao.findAllById(ids).forEach(steps::add);
+        return steps;
+    }
+
+    private byte[] encode(ArchivedJob content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, content);
+        } catch (IOException e) {
+            throw new StatusException("Unable to archive job: {0}", e.getMessage());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private ArchivedJob decode(byte[] data) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(in, ArchivedJob.class);
+        } catch (IOException e) {
+            throw new StatusException("Unable to restore job: {0}", e.getMessage());
+        }
+    }
+
+    private static JobSummary toSummary(Job job) {
+        JobSummary summary = new JobSummary();
+        summary.setId(job.getId());
+        summary.setFlowId(job.getFlowId());
+        summary.setBuildNumber(job.getBuildNumber());
+        summary.setTrigger(job.getTrigger());
+        summary.setStatus(job.getStatus());
+        summary.setMessage(job.getMessage());
+        summary.setAgentId(job.getAgentId());
+        summary.setBranch(job.getBranch());
+        summary.setCommitId(job.getCommitId());
+        summary.setAuthor(job.getAuthor());
+        summary.setPrNumber(job.getPrNumber());
+        summary.setCreatedBy(job.getCreatedBy());
+        summary.setCreatedAt(job.getCreatedAt());
+        summary.setUpdatedAt(job.getUpdatedAt());
+        return summary;
+    }
+
+    private static Job toJob(JobArchive archive, JobSummary summary) {
+        Job job = new Job();
+        job.setId(archive.getId());
+        job.setKey(archive.getKey());
+        job.setFlowId(summary.getFlowId());
+        job.setBuildNumber(summary.getBuildNumber());
+        job.setTrigger(summary.getTrigger());
+        job.setStatus(summary.getStatus());
+        job.setMessage(summary.getMessage());
+        job.setAgentId(summary.getAgentId());
+        job.setBranch(summary.getBranch());
+        job.setCommitId(summary.getCommitId());
+        job.setAuthor(summary.getAuthor());
+        job.setPrNumber(summary.getPrNumber());
+        job.setCreatedBy(summary.getCreatedBy());
+        job.setCreatedAt(summary.getCreatedAt());
+        return job;
+    }
+}
@@ -18,8 +18,11 @@ package com.flowci.core.job.service;
 
 import com.flowci.core.job.domain.Job;
 import com.flowci.domain.ExecutedCmd;
-import com.flowci.tree.Node;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -28,12 +31,15 @@ import org.springframework.data.domain.Pageable;
  */
 public interface StepService {
 
-    List<ExecutedCmd> init(Job job);
+    /**
+     * Init executed cmd of steps for jobs from plan in one batch
+     */
+    List<ExecutedCmd> init(List<Job> jobs, ExecutionPlan plan);
 
     /**
-     * Get executed cmd for job and node
+     * Get executed cmd for job and step
      */
-    ExecutedCmd get(Job job, Node node);
+    ExecutedCmd get(Job job, Step step);
 
     /**
      * List step of executed cmd for job
@@ -41,10 +47,16 @@ public interface StepService {
     List<ExecutedCmd> list(Job job);
 
     /**
-     * Get logs from agent
+     * Get logs from agent asynchronously, pages of finished step are cached
      */
-    Page<String> logs(Job job, String executedCmdId, Pageable pageable);
+    CompletableFuture<Page<String>> logs(Job job, String executedCmdId, Pageable pageable);
+
 
+    /**
+     * Stream raw logs from agent
+     */
+    void streamLogs(Job job, String executedCmdId, String range, boolean follow, int tail,
+                    HttpServletResponse response);
 
     void update(Job job, ExecutedCmd cmd);
 
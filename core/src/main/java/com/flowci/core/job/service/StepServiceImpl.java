@@ -17,38 +17,41 @@
 package com.flowci.core.job.service;
 
 import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.config.ConfigProperties;
 import com.flowci.core.domain.JsonablePage;
 import com.flowci.core.job.dao.ExecutedCmdDao;
 import com.flowci.core.job.dao.JobDao;
-import com.flowci.core.job.domain.CmdId;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.event.StepStatusChangeEvent;
 import com.flowci.core.job.manager.CmdManager;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.domain.Agent;
+import com.flowci.domain.CmdId;
 import com.flowci.domain.ExecutedCmd;
+import com.flowci.exception.ArgumentException;
 import com.flowci.exception.NotFoundException;
 import com.flowci.exception.StatusException;
-import com.flowci.tree.Node;
-import com.flowci.tree.NodeTree;
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.http.HttpServletResponse;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.RequestEntity;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
 /**
@@ -62,9 +65,18 @@ public class StepServiceImpl implements StepService {
         new ParameterizedTypeReference<JsonablePage<String>>() {
         };
 
+    /**
+     * Agent requests in flight, identical page requests share the same result
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Page<String>>> logsInFlight =
+        new ConcurrentHashMap<>();
+
     @Autowired
     private Cache jobStepCache;
 
+    @Autowired
+    private Cache jobLogPageCache;
+
     @Autowired
     private ExecutedCmdDao executedCmdDao;
 
@@ -81,45 +93,51 @@ public class StepServiceImpl implements StepService {
     private AgentService agentService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private WebClient agentWebClient;
+
+    @Autowired
+    private ConfigProperties.Logging loggingProperties;
+
+    @Autowired
+    private LoggingService loggingService;
 
     @Autowired
     private ApplicationEventPublisher applicationEventPublisher;
 
     @Override
-    public List<ExecutedCmd> init(Job job) {
-        NodeTree tree = ymlManager.getTree(job);
-        List<ExecutedCmd> steps = new LinkedList<>();
+    public List<ExecutedCmd> init(List<Job> jobs, ExecutionPlan plan) {
+        List<ExecutedCmd> steps = new ArrayList<>(jobs.size() * plan.size());
 
-        for (Node node : tree.getOrdered()) {
-            CmdId id = cmdManager.createId(job, node);
-            steps.add(new ExecutedCmd(id.toString(), node.isAllowFailure()));
+        for (Job job : jobs) {
+            for (Step step : plan.getOrdered()) {
+                CmdId id = cmdManager.createId(job, step);
+                steps.add(new ExecutedCmd(id.toString(), step.isAllowFailure()));
+            }
         }
 
         return executedCmdDao.insert(steps);
     }
 
     @Override
-    public ExecutedCmd get(Job job, Node node) {
-        CmdId id = cmdManager.createId(job, node);
+    public ExecutedCmd get(Job job, Step step) {
+        CmdId id = cmdManager.createId(job, step);
         Optional<ExecutedCmd> optional = executedCmdDao.findById(id.toString());
 
         if (optional.isPresent()) {
             return optional.get();
         }
 
-        throw new NotFoundException("Executed cmd for job {0} and node {1} not found", job.getId(), node.getName());
+        throw new NotFoundException("Executed cmd for job {0} and node {1} not found", job.getId(), step.getName());
     }
 
     @Override
     public List<ExecutedCmd> list(Job job) {
         return jobStepCache.get(job.getId(), () -> {
-            NodeTree tree = ymlManager.getTree(job);
-            List<Node> nodes = tree.getOrdered();
+            ExecutionPlan plan = ymlManager.getPlan(job);
 
-            List<ExecutedCmd> cmds = new ArrayList<>(nodes.size());
-            for (Node node : nodes) {
-                CmdId cmdId = cmdManager.createId(job, node);
+            List<ExecutedCmd> cmds = new ArrayList<>(plan.size());
+            for (Step step : plan.getOrdered()) {
+                CmdId cmdId = cmdManager.createId(job, step);
 
                 Optional<ExecutedCmd> optional = executedCmdDao.findById(cmdId.toString());
                 optional.ifPresent(cmds::add);
@@ -130,19 +148,90 @@ public class StepServiceImpl implements StepService {
     }
 
     @Override
-    public Page<String> logs(Job job, String executedCmdId, Pageable pageable) {
-        CmdId cmdId = CmdId.parse(executedCmdId);
+    public CompletableFuture<Page<String>> logs(Job job, String executedCmdId, Pageable pageable) {
+        CmdId cmdId = parseCmdId(executedCmdId);
 
         if (!getJob(cmdId.getJobId()).equals(job)) {
             throw new StatusException("Job does not matched");
         }
 
+        // read from log saved on server for finished step
+        Optional<ExecutedCmd> executedCmd = executedCmdDao.findById(executedCmdId);
+        boolean finished = executedCmd.isPresent() && isFinished(executedCmd.get());
+
+        if (finished && loggingService.hasLog(executedCmdId)) {
+            return CompletableFuture.completedFuture(loggingService.read(executedCmd.get(), pageable));
+        }
+
+        String key = executedCmdId + "-" + pageable.getPageNumber() + "-" + pageable.getPageSize();
+        Page<String> cached = getCachedPage(key);
+
+        if (!Objects.isNull(cached)) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Page<String>> future = new CompletableFuture<>();
+        CompletableFuture<Page<String>> existing = logsInFlight.putIfAbsent(key, future);
+
+        if (!Objects.isNull(existing)) {
+            return existing;
+        }
+
+        try {
+            Agent agent = agentService.get(job.getAgentId());
+
+            if (!agent.hasHost()) {
+                throw new StatusException("Agent host not available");
+            }
+
+            fetchLogs(agent, executedCmdId, pageable).whenComplete((page, e) -> {
+                logsInFlight.remove(key, future);
+
+                if (!Objects.isNull(e) || Objects.isNull(page)) {
+                    String message = Objects.isNull(e) ? "empty response" : e.getMessage();
+                    future.completeExceptionally(new StatusException("Agent not available: {0}", message));
+                    return;
+                }
+
+                if (finished) {
+                    jobLogPageCache.put(key, page);
+                }
+
+                future.complete(page);
+            });
+        } catch (RuntimeException e) {
+            logsInFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    @Override
+    public void streamLogs(Job job, String executedCmdId, String range, boolean follow, int tail,
+                           HttpServletResponse response) {
+        CmdId cmdId = parseCmdId(executedCmdId);
+
+        if (!cmdId.getJobId().equals(job.getId())) {
+            throw new StatusException("Job does not matched");
+        }
+
         Agent agent = agentService.get(job.getAgentId());
 
         if (!agent.hasHost()) {
             throw new StatusException("Agent host not available");
         }
 
+        cmdManager.getLogs(agent.getHost(), executedCmdId, range, follow, tail, response);
+    }
+
+    @Override
+    public void update(Job job, ExecutedCmd cmd) {
+        executedCmdDao.save(cmd);
+        applicationEventPublisher.publishEvent(new StepStatusChangeEvent(this, job, cmd));
+    }
+
+    private CompletableFuture<Page<String>> fetchLogs(Agent agent, String executedCmdId, Pageable pageable) {
         URI agentUri = UriComponentsBuilder.fromHttpUrl(agent.getHost())
             .pathSegment("cmd", executedCmdId, "logs")
             .queryParam("page", pageable.getPageNumber())
@@ -150,19 +239,34 @@ public class StepServiceImpl implements StepService {
             .build()
             .toUri();
 
-        try {
-            RequestEntity<Object> request = new RequestEntity<>(HttpMethod.GET, agentUri);
-            ResponseEntity<JsonablePage<String>> entity = restTemplate.exchange(request, AgentLogsType);
-            return entity.getBody().toPage();
-        } catch (RestClientException e) {
-            throw new StatusException("Agent not available: {0}", e.getMessage());
-        }
+        return agentWebClient.get()
+            .uri(agentUri)
+            .retrieve()
+            .bodyToMono(AgentLogsType)
+            .timeout(Duration.ofSeconds(loggingProperties.getProxyTimeoutInSeconds()))
+            .map(JsonablePage::toPage)
+            .toFuture();
     }
 
-    @Override
-    public void update(Job job, ExecutedCmd cmd) {
-        executedCmdDao.save(cmd);
-        applicationEventPublisher.publishEvent(new StepStatusChangeEvent(this, job, cmd));
+    /**
+     * Step is finished if it's not pending or running, and the logs will not be changed
+     */
+    @SuppressWarnings("unchecked")
+    private Page<String> getCachedPage(String key) {
+        ValueWrapper wrapper = jobLogPageCache.get(key);
+        return Objects.isNull(wrapper) ? null : (Page<String>) wrapper.get();
+    }
+
+    private boolean isFinished(ExecutedCmd cmd) {
+        return !cmd.isRunning() && cmd.getStatus() != ExecutedCmd.Status.PENDING;
+    }
+
+    private static CmdId parseCmdId(String executedCmdId) {
+        CmdId cmdId = CmdId.parse(executedCmdId);
+        if (Objects.isNull(cmdId)) {
+            throw new ArgumentException("Invalid cmd id");
+        }
+        return cmdId;
     }
 
     private Job getJob(String id) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed size ring of the most recent log lines, capped by num of lines and num of chars,
+ * lines are ignored if max lines is 0
+ *
+ * @author yang
+ */
+public final class LogRing {
+
+    private final String[] lines;
+
+    private final long maxChars;
+
+    private int head = 0;
+
+    private int size = 0;
+
+    private long chars = 0;
+
+    public LogRing(int maxLines, long maxChars) {
+        this.lines = new String[Math.max(maxLines, 0)];
+        this.maxChars = maxChars;
+    }
+
+    public synchronized void append(String line) {
+        if (lines.length == 0) {
+            return;
+        }
+
+        while (size > 0 && (size == lines.length || chars + line.length() > maxChars)) {
+            removeOldest();
+        }
+
+        int tail = (head + size) % lines.length;
+        lines[tail] = line;
+        chars += line.length();
+        size++;
+    }
+
+    /**
+     * Copy of lines from oldest to latest
+     */
+    public synchronized List<String> snapshot() {
+        List<String> copy = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(lines[(head + i) % lines.length]);
+        }
+        return copy;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void removeOldest() {
+        chars -= lines[head].length();
+        lines[head] = null;
+        head = (head + 1) % lines.length;
+        size--;
+    }
+}
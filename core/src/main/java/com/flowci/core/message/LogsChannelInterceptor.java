@@ -0,0 +1,300 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.message;
+
+import com.flowci.core.config.ConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Bounded outbound buffer per websocket session for log topics.
+ *
+ * Only one log message per session is handed to the websocket at a time, the rest are kept in a bounded
+ * buffer. When the buffer is full, the oldest lines are dropped or summarized, and the session will be told
+ * to resync from the paged log api if it falls too far behind.
+ *
+ * @author yang
+ */
+@Log4j2
+public class LogsChannelInterceptor implements ExecutorChannelInterceptor,
+    ApplicationListener<SessionDisconnectEvent> {
+
+    public enum OverflowPolicy {
+
+        /**
+         * Drop the oldest buffered lines silently
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the oldest buffered lines, and send the number of skipped lines to session
+         */
+        SUMMARIZE
+    }
+
+    /**
+     * Native header on control message for log topic, value is ControlSkipped, ControlResync or ControlSnapshot
+     */
+    public static final String HeaderControl = "x-log-control";
+
+    public static final String ControlSkipped = "skipped";
+
+    public static final String ControlResync = "resync";
+
+    public static final String ControlSnapshot = "snapshot";
+
+    private static final String HeaderReleased = "logBufferReleased";
+
+    private final Map<String, SessionBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final String logsTopic;
+
+    private final ConfigProperties.Logging loggingProperties;
+
+    private final Counter droppedCounter;
+
+    private final Counter resyncCounter;
+
+    public LogsChannelInterceptor(String logsTopic, ConfigProperties.Logging loggingProperties,
+                                  MeterRegistry meterRegistry) {
+        this.logsTopic = logsTopic;
+        this.loggingProperties = loggingProperties;
+
+        this.droppedCounter = meterRegistry.counter("flowci.logs.session.dropped");
+        this.resyncCounter = meterRegistry.counter("flowci.logs.session.resync");
+
+        Gauge.builder("flowci.logs.session.buffered", buffers, LogsChannelInterceptor::sizeOf)
+            .description("Num of log lines buffered for websocket sessions")
+            .register(meterRegistry);
+
+        Gauge.builder("flowci.logs.session.count", buffers, Map::size)
+            .description("Num of websocket sessions which received logs")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!isLogMessage(message) || isReleased(message)) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBuffer buffer = buffers.computeIfAbsent(sessionId, key -> new SessionBuffer());
+
+        synchronized (buffer) {
+            if (buffer.inFlight) {
+                buffer.offer(message);
+                return null;
+            }
+
+            buffer.inFlight = true;
+
+            if (buffer.size() == 0) {
+                return release(message);
+            }
+
+            // lines left in buffer when the previous one was not delivered should go first
+            buffer.offer(message);
+            return buffer.poll();
+        }
+    }
+
+    /**
+     * The released message will not reach afterMessageHandled if it was not sent, such as filtered by
+     * other interceptor or rejected by executor, so clear the in flight flag to let next message go
+     */
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (sent && Objects.isNull(ex)) {
+            return;
+        }
+
+        if (!isLogMessage(message) || !isReleased(message)) {
+            return;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBuffer buffer = buffers.get(sessionId);
+
+        if (Objects.isNull(buffer)) {
+            return;
+        }
+
+        synchronized (buffer) {
+            buffer.inFlight = false;
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                    Exception ex) {
+        if (!isLogMessage(message)) {
+            return;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBuffer buffer = buffers.get(sessionId);
+
+        if (Objects.isNull(buffer)) {
+            return;
+        }
+
+        Message<?> next;
+        synchronized (buffer) {
+            next = buffer.poll();
+            if (Objects.isNull(next)) {
+                buffer.inFlight = false;
+
+                // session caught up, only count drops of current backlog for resync
+                if (Objects.isNull(ex)) {
+                    buffer.dropped = 0;
+                }
+                return;
+            }
+        }
+
+        channel.send(next);
+    }
+
+    @Override
+    public void onApplicationEvent(SessionDisconnectEvent event) {
+        buffers.remove(event.getSessionId());
+    }
+
+    private boolean isLogMessage(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return false;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return !Objects.isNull(destination) && destination.startsWith(logsTopic);
+    }
+
+    private static boolean isReleased(Message<?> message) {
+        return message.getHeaders().containsKey(HeaderReleased);
+    }
+
+    private static Message<?> release(Message<?> message) {
+        return MessageBuilder.fromMessage(message).setHeader(HeaderReleased, Boolean.TRUE).build();
+    }
+
+    /**
+     * Create control message to the same session and subscription of the source message
+     */
+    private static Message<?> control(Message<?> source, String type, String body) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(source);
+        accessor.setNativeHeader(HeaderControl, type);
+        accessor.setHeader(HeaderReleased, Boolean.TRUE);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static int sizeOf(Map<String, SessionBuffer> buffers) {
+        int size = 0;
+        for (SessionBuffer buffer : buffers.values()) {
+            size += buffer.size();
+        }
+        return size;
+    }
+
+    private class SessionBuffer {
+
+        private final Deque<Message<?>> queue = new ArrayDeque<>();
+
+        private boolean inFlight = false;
+
+        /**
+         * Num of lines dropped since last delivered summary
+         */
+        private long skipped = 0;
+
+        /**
+         * Num of lines dropped since last resync notice
+         */
+        private long dropped = 0;
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        /**
+         * Put message to the tail, drop oldest one if buffer is full
+         */
+        void offer(Message<?> message) {
+            if (queue.size() >= loggingProperties.getSessionBufferSize()) {
+                queue.pollFirst();
+                skipped++;
+                dropped++;
+                droppedCounter.increment();
+            }
+
+            if (dropped >= loggingProperties.getResyncThreshold()) {
+                log.debug("Session {} is too slow for logs, ask to resync",
+                    SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+
+                queue.clear();
+                queue.offerLast(control(message, ControlResync, "Too many lines been dropped, please resync"));
+
+                skipped = 0;
+                dropped = 0;
+                resyncCounter.increment();
+            }
+
+            queue.offerLast(message);
+        }
+
+        /**
+         * Get next message to send, the summary of skipped lines will be returned first if needed
+         */
+        Message<?> poll() {
+            Message<?> next = queue.peekFirst();
+            if (Objects.isNull(next)) {
+                return null;
+            }
+
+            if (skipped > 0 && loggingProperties.getOverflowPolicy() == OverflowPolicy.SUMMARIZE) {
+                String body = skipped + " lines skipped";
+                skipped = 0;
+                return control(next, ControlSkipped, body);
+            }
+
+            skipped = 0;
+            return release(queue.pollFirst());
+        }
+    }
+}
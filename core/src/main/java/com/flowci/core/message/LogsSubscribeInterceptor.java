@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.message;
+
+import com.flowci.core.job.manager.RecentLogManager;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Send recent log lines of cmd to the session which subscribe to /topic/logs/{cmd id}.
+ *
+ * The cmd lock is held while the broker registers the subscription, so no live line can be published
+ * between the subscription and the snapshot. The snapshot is a single message with native header
+ * 'x-log-control: snapshot', lines are separated by '\n'.
+ *
+ * @author yang
+ */
+@Log4j2
+public class LogsSubscribeInterceptor implements ExecutorChannelInterceptor {
+
+    private static final String LineSeparator = "\n";
+
+    private final String logsTopic;
+
+    private final RecentLogManager recentLogManager;
+
+    private final MessageChannel clientOutboundChannel;
+
+    public LogsSubscribeInterceptor(String logsTopic, RecentLogManager recentLogManager,
+                                    MessageChannel clientOutboundChannel) {
+        this.logsTopic = logsTopic;
+        this.recentLogManager = recentLogManager;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        String cmdId = getCmdId(message, handler);
+        if (!Objects.isNull(cmdId)) {
+            recentLogManager.lock(cmdId).lock();
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                    Exception ex) {
+        String cmdId = getCmdId(message, handler);
+        if (Objects.isNull(cmdId)) {
+            return;
+        }
+
+        try {
+            if (Objects.isNull(ex)) {
+                sendSnapshot(message, cmdId);
+            }
+        } finally {
+            recentLogManager.lock(cmdId).unlock();
+        }
+    }
+
+    private void sendSnapshot(Message<?> subscribe, String cmdId) {
+        List<String> lines = recentLogManager.snapshot(cmdId);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SimpMessageHeaderAccessor.getSessionId(subscribe.getHeaders()));
+        accessor.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(subscribe.getHeaders()));
+        accessor.setDestination(SimpMessageHeaderAccessor.getDestination(subscribe.getHeaders()));
+        accessor.setNativeHeader(LogsChannelInterceptor.HeaderControl, LogsChannelInterceptor.ControlSnapshot);
+
+        byte[] body = String.join(LineSeparator, lines).getBytes(StandardCharsets.UTF_8);
+        clientOutboundChannel.send(MessageBuilder.createMessage(body, accessor.getMessageHeaders()));
+
+        log.debug("Snapshot of {} lines sent for cmd {}", lines.size(), cmdId);
+    }
+
+    /**
+     * Get cmd id if message is subscribe to log topic and handled by broker, otherwise return null
+     */
+    private String getCmdId(Message<?> message, MessageHandler handler) {
+        if (!(handler instanceof AbstractBrokerMessageHandler)) {
+            return null;
+        }
+
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.SUBSCRIBE) {
+            return null;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String prefix = logsTopic + "/";
+
+        if (Objects.isNull(destination) || !destination.startsWith(prefix)) {
+            return null;
+        }
+
+        return destination.substring(prefix.length());
+    }
+}
@@ -24,6 +24,7 @@ import com.flowci.exception.NotFoundException;
 import java.util.Objects;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 
 /**
@@ -38,12 +39,15 @@ public class OpenFlowService {
     @Autowired
     private YmlDao ymlDao;
 
+    @Autowired
+    private Cache flowCache;
+
     public Flow get(String name) {
-        Flow flow = flowDao.findByName(name);
+        Flow flow = flowCache.get(name, () -> flowDao.findByName(name));
         if (Objects.isNull(flow)) {
             throw new NotFoundException("The flow with name {0} cannot found", name);
         }
-        return flow;
+        return flow.copy();
     }
 
     public Yml getYml(Flow flow) {
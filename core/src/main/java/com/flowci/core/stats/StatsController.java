@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.stats.domain.StatsReport;
+import com.flowci.core.stats.domain.StatsRollup;
+import com.flowci.core.stats.service.StatsService;
+import com.flowci.core.stats.service.StatsServiceImpl;
+import com.google.common.base.Strings;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Objects;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author yang
+ */
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    private static final int DefaultDays = 7;
+
+    @Autowired
+    private FlowService flowService;
+
+    @Autowired
+    private StatsService statsService;
+
+    /**
+     * Get job stats, or step stats if node path of step is given, in days as yyyyMMdd, last 7 days by default
+     */
+    @GetMapping("/{flow}")
+    public StatsReport get(@PathVariable("flow") String name,
+                           @RequestParam(required = false) String step,
+                           @RequestParam(required = false) Integer from,
+                           @RequestParam(required = false) Integer to) {
+
+        Flow flow = flowService.get(name);
+
+        if (Objects.isNull(to)) {
+            to = StatsServiceImpl.toDay(new Date());
+        }
+
+        if (Objects.isNull(from)) {
+            Instant start = Instant.now().minus(DefaultDays - 1, ChronoUnit.DAYS);
+            from = StatsServiceImpl.toDay(Date.from(start));
+        }
+
+        if (Strings.isNullOrEmpty(step)) {
+            return statsService.get(flow, StatsRollup.Type.JOB, StatsRollup.JobName, from, to);
+        }
+
+        return statsService.get(flow, StatsRollup.Type.STEP, step, from, to);
+    }
+}
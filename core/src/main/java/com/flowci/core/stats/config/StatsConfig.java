@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.config;
+
+import com.flowci.core.helper.ThreadHelper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * @author yang
+ */
+@Configuration
+public class StatsConfig {
+
+    /**
+     * Add finished job and step to rollups out of the callback thread
+     */
+    @Bean("statsExecutor")
+    public ThreadPoolTaskExecutor statsExecutor() {
+        return ThreadHelper.createTaskExecutor(2, 1, 1000, "stats-rollup-");
+    }
+}
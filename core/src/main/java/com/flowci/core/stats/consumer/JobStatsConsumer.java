@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.consumer;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.stats.domain.StatsRollup;
+import com.flowci.core.stats.service.StatsService;
+import com.google.common.collect.ImmutableSet;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Set;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Add finished job to rollups on stats executor, the duration is from queued to finished
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class JobStatsConsumer implements ApplicationListener<JobStatusChangeEvent> {
+
+    private static final Set<Job.Status> FinishStatus = ImmutableSet.of(
+        Job.Status.SUCCESS,
+        Job.Status.FAILURE,
+        Job.Status.CANCELLED,
+        Job.Status.TIMEOUT
+    );
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ThreadPoolTaskExecutor statsExecutor;
+
+    @Override
+    public void onApplicationEvent(JobStatusChangeEvent event) {
+        Job job = event.getJob();
+
+        if (!FinishStatus.contains(job.getStatus())) {
+            return;
+        }
+
+        Date finishAt = Objects.isNull(job.getUpdatedAt()) ? new Date() : job.getUpdatedAt();
+        Date startAt = Objects.isNull(job.getQueuedAt()) ? job.getCreatedAt() : job.getQueuedAt();
+        Long duration = Objects.isNull(startAt) ? null : Math.max(0, finishAt.getTime() - startAt.getTime());
+
+        String status = job.getStatus().name();
+        boolean success = job.getStatus() == Job.Status.SUCCESS;
+
+        try {
+            statsExecutor.execute(() -> {
+                try {
+                    statsService.add(job.getFlowId(), StatsRollup.Type.JOB, StatsRollup.JobName, job.getId(),
+                        finishAt, status, success, duration);
+                } catch (Throwable e) {
+                    log.warn("Unable to add job {} to stats: {}", job.getKey(), e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Job {} not added to stats since executor is full", job.getKey());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.consumer;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.StepStatusChangeEvent;
+import com.flowci.core.stats.domain.StatsRollup;
+import com.flowci.core.stats.service.StatsService;
+import com.flowci.domain.CmdId;
+import com.flowci.domain.ExecutedCmd;
+import java.util.Date;
+import java.util.Objects;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Add finished step to rollups by node path on stats executor
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class StepStatsConsumer implements ApplicationListener<StepStatusChangeEvent> {
+
+    private static final int FinishLevel = 2;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ThreadPoolTaskExecutor statsExecutor;
+
+    @Override
+    public void onApplicationEvent(StepStatusChangeEvent event) {
+        Job job = event.getJob();
+        ExecutedCmd cmd = event.getExecutedCmd();
+
+        if (cmd.getStatus().getLevel() < FinishLevel) {
+            return;
+        }
+
+        CmdId cmdId = CmdId.parse(cmd.getId());
+        if (Objects.isNull(cmdId)) {
+            return;
+        }
+
+        Long duration = cmd.getDuration() < 0 ? null : cmd.getDuration();
+        Date finishAt = Objects.isNull(cmd.getFinishAt()) ? new Date() : cmd.getFinishAt();
+        String status = cmd.getStatus().name();
+        boolean success = cmd.isSuccess();
+
+        try {
+            statsExecutor.execute(() -> {
+                try {
+                    statsService.add(job.getFlowId(), StatsRollup.Type.STEP, cmdId.getNodePath(), cmd.getId(),
+                        finishAt, status, success, duration);
+                } catch (Throwable e) {
+                    log.warn("Unable to add step {} of job {} to stats: {}", cmdId.getNodePath(), job.getKey(),
+                        e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Step {} of job {} not added to stats since executor is full", cmdId.getNodePath(),
+                job.getKey());
+        }
+    }
+}
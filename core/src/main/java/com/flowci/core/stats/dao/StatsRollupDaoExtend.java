@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.dao;
+
+import com.flowci.core.stats.domain.StatsRollup;
+import java.util.List;
+
+/**
+ * @author yang
+ */
+public interface StatsRollupDaoExtend {
+
+    /**
+     * Increase counters of rollup atomically, the rollup will be created if not existed.
+     * It's idempotent by item id, the job or step id, redelivered item is not counted again.
+     *
+     * @param duration duration in millis, null if not available
+     * @return false if the item has been counted
+     */
+    boolean increase(String flowId, StatsRollup.Type type, String name, int day, String itemId, String status,
+                     boolean success, Long duration);
+
+    /**
+     * List rollups in days range, both inclusive, ordered by day
+     */
+    List<StatsRollup> list(String flowId, StatsRollup.Type type, String name, int fromDay, int toDay);
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.dao;
+
+import com.flowci.core.stats.domain.DurationSketch;
+import com.flowci.core.stats.domain.StatsRollup;
+import java.util.List;
+import java.util.Objects;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * @author yang
+ */
+public class StatsRollupDaoExtendImpl implements StatsRollupDaoExtend {
+
+    private static final Sort SortByDay = Sort.by(Direction.ASC, "day");
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public boolean increase(String flowId, StatsRollup.Type type, String name, int day, String itemId,
+                            String status, boolean success, Long duration) {
+        // not matched if the item was processed, then the upsert fails on the existing id
+        Criteria criteria = Criteria.where("_id").is(StatsRollup.id(flowId, type, name, day))
+            .and("processed").ne(itemId);
+
+        Update update = new Update()
+            .setOnInsert("flowId", flowId)
+            .setOnInsert("type", type)
+            .setOnInsert("name", name)
+            .setOnInsert("day", day)
+            .addToSet("processed", itemId)
+            .inc("count", 1)
+            .inc("success", success ? 1 : 0)
+            .inc("statuses." + status, 1);
+
+        if (!Objects.isNull(duration)) {
+            update.inc("durationSum", duration);
+            update.inc("durations." + DurationSketch.index(duration), 1);
+        }
+
+        try {
+            operations.upsert(Query.query(criteria), update, StatsRollup.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<StatsRollup> list(String flowId, StatsRollup.Type type, String name, int fromDay, int toDay) {
+        Criteria criteria = Criteria.where("flowId").is(flowId)
+            .and("type").is(type)
+            .and("name").is(name)
+            .and("day").gte(fromDay).lte(toDay);
+
+        Query query = Query.query(criteria).with(SortByDay);
+        query.fields().exclude("processed");
+        return operations.find(query, StatsRollup.class);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.domain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.Getter;
+
+/**
+ * Mergeable quantile sketch of durations in millis with log scale buckets, the estimated quantile is within
+ * 1% relative error. The bucket of a duration is calculated by index(), so the sketch can be maintained by
+ * increasing bucket counters in database, and merged by adding counters.
+ *
+ * @author yang
+ */
+public class DurationSketch {
+
+    private static final double RelativeAccuracy = 0.01;
+
+    private static final double Gamma = (1 + RelativeAccuracy) / (1 - RelativeAccuracy);
+
+    private static final double LogGamma = Math.log(Gamma);
+
+    /**
+     * Bucket index to num of durations
+     */
+    @Getter
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+
+    @Getter
+    private long count = 0;
+
+    public static int index(long millis) {
+        if (millis <= 1) {
+            return 0;
+        }
+        return (int) Math.ceil(Math.log(millis) / LogGamma);
+    }
+
+    public static DurationSketch of(Map<String, Long> counters) {
+        DurationSketch sketch = new DurationSketch();
+        if (counters == null) {
+            return sketch;
+        }
+
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sketch.add(Integer.parseInt(entry.getKey()), entry.getValue());
+        }
+        return sketch;
+    }
+
+    public void add(long millis) {
+        add(index(millis), 1);
+    }
+
+    public void merge(DurationSketch other) {
+        for (Map.Entry<Integer, Long> entry : other.buckets.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Estimated duration in millis of quantile from 0 to 1, null if empty
+     */
+    public Long quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return value(entry.getKey());
+            }
+        }
+
+        return value(buckets.lastKey());
+    }
+
+    public Map<String, Long> toCounters() {
+        Map<String, Long> counters = new HashMap<>(buckets.size());
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            counters.put(entry.getKey().toString(), entry.getValue());
+        }
+        return counters;
+    }
+
+    private void add(int index, long num) {
+        buckets.merge(index, num, Long::sum);
+        count += num;
+    }
+
+    private static long value(int index) {
+        if (index == 0) {
+            return 1;
+        }
+        return Math.round(2 * Math.pow(Gamma, index) / (Gamma + 1));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.domain;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Durations and status of job or step in days which answered from rollups
+ *
+ * @author yang
+ */
+@Data
+public class StatsItem {
+
+    /**
+     * Day as yyyyMMdd, null for all days in range
+     */
+    private Integer day;
+
+    private long count;
+
+    private long success;
+
+    private Map<String, Long> statuses = new HashMap<>();
+
+    private Long avg;
+
+    private Long p50;
+
+    private Long p95;
+
+    private Long p99;
+
+    public double getSuccessRate() {
+        return count == 0 ? 0 : (double) success / count;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.domain;
+
+import java.util.LinkedList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * @author yang
+ */
+@Data
+public class StatsReport {
+
+    private StatsRollup.Type type;
+
+    private String name;
+
+    /**
+     * Merged from all days in range
+     */
+    private StatsItem total;
+
+    private List<StatsItem> days = new LinkedList<>();
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.domain;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Counters of job or step of flow in a day (UTC), it's increased on each finished job or step
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@Document(collection = "stats_rollup")
+@CompoundIndexes({
+    @CompoundIndex(name = "index_stats_flow_type_name_day", def = "{'flowId': 1, 'type': 1, 'name': 1, 'day': 1}")
+})
+public class StatsRollup {
+
+    public enum Type {
+
+        JOB,
+
+        STEP
+    }
+
+    /**
+     * Name of rollup for job
+     */
+    public static final String JobName = "*";
+
+    /**
+     * {flow id}-{type}-{name}-{day}
+     */
+    @Id
+    private String id;
+
+    private String flowId;
+
+    private Type type;
+
+    /**
+     * Node path for step, JobName for job
+     */
+    private String name;
+
+    /**
+     * Day as yyyyMMdd
+     */
+    private Integer day;
+
+    private Long count = 0L;
+
+    private Long success = 0L;
+
+    private Long durationSum = 0L;
+
+    /**
+     * Num of finished by status name
+     */
+    private Map<String, Long> statuses = new HashMap<>();
+
+    /**
+     * Counters of DurationSketch
+     */
+    private Map<String, Long> durations = new HashMap<>();
+
+    /**
+     * Ids of job or step been counted, to skip the redelivered ones, it's not loaded for report
+     */
+    private Set<String> processed = new HashSet<>();
+
+    public static String id(String flowId, Type type, String name, int day) {
+        return flowId + "-" + type + "-" + name + "-" + day;
+    }
+}
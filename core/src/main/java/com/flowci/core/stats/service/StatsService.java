@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.service;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.stats.domain.StatsReport;
+import com.flowci.core.stats.domain.StatsRollup;
+import java.util.Date;
+
+/**
+ * Duration and status rollups of job and step per flow and day
+ *
+ * @author yang
+ */
+public interface StatsService {
+
+    /**
+     * Add finished job or step to the rollup of the day, it's counted once for the same item id
+     *
+     * @param itemId   id of job or step
+     * @param duration duration in millis, null if not available
+     * @return false if the item has been added
+     */
+    boolean add(String flowId, StatsRollup.Type type, String name, String itemId, Date finishAt, String status,
+                boolean success, Long duration);
+
+    /**
+     * Get report of job or step from rollups in days, both inclusive as yyyyMMdd
+     */
+    StatsReport get(Flow flow, StatsRollup.Type type, String name, int fromDay, int toDay);
+}
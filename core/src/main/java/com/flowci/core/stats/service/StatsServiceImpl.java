@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.stats.service;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.stats.dao.StatsRollupDao;
+import com.flowci.core.stats.domain.DurationSketch;
+import com.flowci.core.stats.domain.StatsItem;
+import com.flowci.core.stats.domain.StatsReport;
+import com.flowci.core.stats.domain.StatsRollup;
+import com.flowci.exception.ArgumentException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author yang
+ */
+@Service
+public class StatsServiceImpl implements StatsService {
+
+    private static final DateTimeFormatter DayFormatter = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final int MaxDays = 92;
+
+    @Autowired
+    private StatsRollupDao statsRollupDao;
+
+    public static int toDay(Date date) {
+        LocalDate day = date.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+        return Integer.parseInt(day.format(DayFormatter));
+    }
+
+    @Override
+    public boolean add(String flowId, StatsRollup.Type type, String name, String itemId, Date finishAt,
+                       String status, boolean success, Long duration) {
+        return statsRollupDao.increase(flowId, type, name, toDay(finishAt), itemId, status, success, duration);
+    }
+
+    @Override
+    public StatsReport get(Flow flow, StatsRollup.Type type, String name, int fromDay, int toDay) {
+        verifyRange(fromDay, toDay);
+
+        StatsReport report = new StatsReport();
+        report.setType(type);
+        report.setName(name);
+
+        StatsItem total = new StatsItem();
+        DurationSketch totalSketch = new DurationSketch();
+        long totalDurationSum = 0;
+
+        for (StatsRollup rollup : statsRollupDao.list(flow.getId(), type, name, fromDay, toDay)) {
+            DurationSketch sketch = DurationSketch.of(rollup.getDurations());
+            report.getDays().add(toItem(rollup.getDay(), rollup, sketch, rollup.getDurationSum()));
+
+            total.setCount(total.getCount() + rollup.getCount());
+            total.setSuccess(total.getSuccess() + rollup.getSuccess());
+            for (Map.Entry<String, Long> entry : rollup.getStatuses().entrySet()) {
+                total.getStatuses().merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+
+            totalSketch.merge(sketch);
+            totalDurationSum += rollup.getDurationSum();
+        }
+
+        setDurations(total, totalSketch, totalDurationSum);
+        report.setTotal(total);
+        return report;
+    }
+
+    private static StatsItem toItem(Integer day, StatsRollup rollup, DurationSketch sketch, long durationSum) {
+        StatsItem item = new StatsItem();
+        item.setDay(day);
+        item.setCount(rollup.getCount());
+        item.setSuccess(rollup.getSuccess());
+        item.getStatuses().putAll(rollup.getStatuses());
+        setDurations(item, sketch, durationSum);
+        return item;
+    }
+
+    private static void setDurations(StatsItem item, DurationSketch sketch, long durationSum) {
+        if (sketch.getCount() == 0) {
+            return;
+        }
+
+        item.setAvg(durationSum / sketch.getCount());
+        item.setP50(sketch.quantile(0.5));
+        item.setP95(sketch.quantile(0.95));
+        item.setP99(sketch.quantile(0.99));
+    }
+
+    private static void verifyRange(int fromDay, int toDay) {
+        try {
+            LocalDate from = LocalDate.parse(Integer.toString(fromDay), DayFormatter);
+            LocalDate to = LocalDate.parse(Integer.toString(toDay), DayFormatter);
+
+            long days = ChronoUnit.DAYS.between(from, to);
+            if (days < 0 || days >= MaxDays) {
+                throw new ArgumentException("The range of days must be in 1 - {0}", Integer.toString(MaxDays));
+            }
+        } catch (DateTimeParseException e) {
+            throw new ArgumentException("Illegal day format, it should be yyyyMMdd");
+        }
+    }
+}
@@ -16,37 +16,30 @@
 
 package com.flowci.core.trigger;
 
-import com.flowci.core.flow.domain.Flow;
-import com.flowci.core.flow.domain.Yml;
-import com.flowci.core.job.domain.Job;
-import com.flowci.core.job.domain.Job.Trigger;
-import com.flowci.core.job.service.JobService;
-import com.flowci.core.open.flow.OpenFlowService;
-import com.flowci.core.trigger.domain.GitPushTrigger;
-import com.flowci.core.trigger.domain.GitTrigger;
-import com.flowci.core.trigger.domain.GitTrigger.GitEvent;
-import com.flowci.core.trigger.service.GitTriggerService;
-import com.flowci.domain.VariableMap;
-import com.flowci.exception.NotFoundException;
-import com.flowci.tree.Filter;
-import com.flowci.tree.Node;
-import com.flowci.tree.YmlParser;
+import com.flowci.core.trigger.domain.GitTrigger.GitSource;
+import com.flowci.core.trigger.domain.WebhookEvent;
+import com.flowci.core.trigger.service.WebhookService;
+import com.flowci.exception.StatusException;
 import com.google.common.base.Strings;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.Callable;
-import javax.annotation.PostConstruct;
-import javax.servlet.ServletInputStream;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
 import javax.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
+ * Webhook event will be accepted with 202 and processed asynchronously,
+ * the redelivered event is ignored by delivery id.
+ *
+ * The webhook of flow is on '/webhooks/{name}', and the repository webhook on '/webhooks' is shared by
+ * the flows which have the same git url in variables and a webhook secret to verify the event signature.
+ *
  * @author yang
  */
 @Log4j2
@@ -54,128 +47,58 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/webhooks")
 public class WebhookController {
 
-    private final Map<String, Callable<GitTrigger>> consumerMap = new HashMap<>(1);
+    private static final String GithubEventHeader = "X-GitHub-Event";
 
-    @Autowired
-    private HttpServletRequest request;
+    private static final String GithubDeliveryHeader = "X-GitHub-Delivery";
 
-    @Autowired
-    private OpenFlowService openFlowService;
+    private static final String GithubSignatureHeader = "X-Hub-Signature";
 
     @Autowired
-    private JobService jobService;
+    private HttpServletRequest request;
 
     @Autowired
-    private GitTriggerService gitHubTriggerService;
+    private WebhookService webhookService;
 
-    @PostConstruct
-    public void initConsumer() {
-        consumerMap.put(GithubEventConsumer.Header, new GithubEventConsumer());
+    /**
+     * Repository webhook, the event will be delivered to the flows which have the same git url in variables
+     * and verify the signature by webhook secret
+     */
+    @PostMapping
+    public ResponseEntity<Void> gitTrigger() throws IOException {
+        return receive(null);
     }
 
     @PostMapping("/{name}")
-    public void gitTrigger(@PathVariable String name) throws Exception {
-        GitTrigger trigger = null;
-
-        if (isGitHub()) {
-            Callable<GitTrigger> consumer = consumerMap.get(GithubEventConsumer.Header);
-            trigger = consumer.call();
-            log.info("Github trigger received: {}", trigger);
-        }
-
-        if (Objects.isNull(trigger)) {
-            return;
-        }
-
-        // get related flow and yml
-        Flow flow = openFlowService.get(name);
-        Yml yml = openFlowService.getYml(flow);
-        Node root = YmlParser.load(flow.getName(), yml.getRaw());
-
-        if (canStartJob(root, trigger)) {
-            VariableMap gitInput = trigger.toVariableMap();
-            Job job = jobService.create(flow, yml, getJobTrigger(trigger), gitInput);
-            jobService.start(job);
-            log.debug("Start job {} from git event {} from {}", job.getId(), trigger.getEvent(), trigger.getSource());
-            return;
-        }
-
-        log.info("Trigger filter not matched {}", root.getFilter());
+    public ResponseEntity<Void> gitTrigger(@PathVariable String name) throws IOException {
+        return receive(name);
     }
 
-    private boolean canStartJob(Node root, GitTrigger trigger) {
-        Filter condition = root.getFilter();
-
-        if (trigger.getEvent() == GitEvent.PUSH) {
-            GitPushTrigger pushTrigger = (GitPushTrigger) trigger;
-            return condition.isMatchBranch(pushTrigger.getRef());
+    private ResponseEntity<Void> receive(String name) throws IOException {
+        if (!isGitHub()) {
+            return ResponseEntity.ok().build();
         }
 
-        if (trigger.getEvent() == GitEvent.TAG) {
-            GitPushTrigger tagTrigger = (GitPushTrigger) trigger;
-            return condition.isMatchTag(tagTrigger.getRef());
-        }
-
-        return true;
-    }
-
-    /**
-     * Convert git trigger to job trigger
-     */
-    private Trigger getJobTrigger(GitTrigger trigger) {
-        if (trigger.getEvent() == GitEvent.PUSH) {
-            return Trigger.PUSH;
-        }
+        byte[] payload = ByteStreams.toByteArray(request.getInputStream());
+        String event = request.getHeader(GithubEventHeader);
+        String deliveryId = request.getHeader(GithubDeliveryHeader);
+        String signature = request.getHeader(GithubSignatureHeader);
 
-        if (trigger.getEvent() == GitEvent.TAG) {
-            return Trigger.TAG;
-        }
+        try {
+            WebhookEvent webhookEvent = new WebhookEvent(name, GitSource.GITHUB, event, deliveryId, signature, payload);
 
-        if (trigger.getEvent() == GitEvent.PR_OPEN) {
-            return Trigger.PR_OPEN;
-        }
+            if (webhookService.receive(webhookEvent)) {
+                return ResponseEntity.accepted().build();
+            }
 
-        if (trigger.getEvent() == GitEvent.PR_CLOSE) {
-            return Trigger.PR_CLOSE;
+            return ResponseEntity.ok().build();
+        } catch (StatusException e) {
+            log.warn("Webhook event {} rejected: {}", deliveryId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
-
-        throw new NotFoundException("Cannot found related job trigger for {0}", trigger.getEvent().name());
     }
 
     private boolean isGitHub() {
-        String event = request.getHeader(GithubEventConsumer.Header);
+        String event = request.getHeader(GithubEventHeader);
         return !Strings.isNullOrEmpty(event);
     }
-
-    private class GithubEventConsumer implements Callable<GitTrigger> {
-
-        private static final String Header = "X-GitHub-Event";
-
-        private static final String Ping = "ping";
-
-        private static final String PushOrTag = "push";
-
-        private static final String PR = "pull_request";
-
-        @Override
-        public GitTrigger call() throws Exception {
-            String event = request.getHeader(Header);
-            ServletInputStream in = request.getInputStream();
-
-            if (event.equals(PushOrTag)) {
-                return gitHubTriggerService.onPushOrTag(in);
-            }
-
-            if (event.equals(PR)) {
-                return gitHubTriggerService.onPullRequest(in);
-            }
-
-            if (event.equals(Ping)) {
-                log.info("Ping event from github.com");
-                return null;
-            }
-
-            return null;
-        }
-    }
 }
@@ -18,6 +18,7 @@ package com.flowci.core.trigger.domain;
 
 import com.flowci.domain.VariableMap;
 import java.io.Serializable;
+import java.util.Objects;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -34,6 +35,11 @@ public abstract class GitTrigger implements Serializable {
 
     private GitEvent event;
 
+    /**
+     * Web url of the repository which the event from
+     */
+    private String repoUrl;
+
     public enum GitSource {
 
         GITLAB,
@@ -75,12 +81,25 @@ public abstract class GitTrigger implements Serializable {
          */
         public static final String GIT_AUTHOR = "FLOWCI_GIT_AUTHOR";
 
+        /**
+         * Repository url, the flow which has the same url in variables will receive repository webhook
+         */
+        public static final String GIT_URL = "FLOWCI_GIT_URL";
+
+        /**
+         * Secret of repository webhook, the flow receives repository webhook only if the signature is verified
+         */
+        public static final String GIT_WEBHOOK_SECRET = "FLOWCI_GIT_WEBHOOK_SECRET";
     }
 
     public VariableMap toVariableMap() {
         VariableMap map = new VariableMap(15);
         map.putString(Variables.GIT_SOURCE, source.name());
         map.putString(Variables.GIT_EVENT, event.name());
+
+        if (!Objects.isNull(repoUrl)) {
+            map.putString(Variables.GIT_URL, repoUrl);
+        }
         return map;
     }
 }
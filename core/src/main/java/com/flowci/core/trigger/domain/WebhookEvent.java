@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.trigger.domain;
+
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Raw webhook event received from git source, it will be parsed and processed by worker
+ *
+ * @author yang
+ */
+@Getter
+@AllArgsConstructor
+@ToString(of = {"flow", "source", "event", "deliveryId"})
+public class WebhookEvent {
+
+    /**
+     * Target flow name, null for repository webhook which targets to all subscribed flows
+     */
+    private final String flow;
+
+    private final GitTrigger.GitSource source;
+
+    /**
+     * Event name from header, ex: push, pull_request
+     */
+    private final String event;
+
+    /**
+     * Unique delivery id from header, can be null
+     */
+    private final String deliveryId;
+
+    /**
+     * Signature of payload from header, ex: sha1=xxx, can be null
+     */
+    private final String signature;
+
+    private final byte[] payload;
+
+    public boolean isRepoScoped() {
+        return Objects.isNull(flow);
+    }
+}
@@ -78,6 +78,8 @@ public class GithubTriggerService implements GitTriggerService {
 
         public AuthorObject pusher;
 
+        public RepoObject repository;
+
         private GitEvent getEvent() {
             return ref.startsWith(TagRefPrefix) ? GitEvent.TAG : GitEvent.PUSH;
         }
@@ -91,6 +93,10 @@ public class GithubTriggerService implements GitTriggerService {
             trigger.setSource(GitSource.GITHUB);
             trigger.setEvent(getEvent());
 
+            if (!Objects.isNull(repository)) {
+                trigger.setRepoUrl(repository.url);
+            }
+
             trigger.setCommitId(commit.id);
             trigger.setMessage(commit.message);
             trigger.setCommitUrl(commit.url);
@@ -132,6 +138,10 @@ public class GithubTriggerService implements GitTriggerService {
 
         public static final String PrClosed = "closed";
 
+        public static final String PrReopened = "reopened";
+
+        public static final String PrSynchronize = "synchronize";
+
         public String action;
 
         public String number;
@@ -142,9 +152,19 @@ public class GithubTriggerService implements GitTriggerService {
         @JsonProperty("sender")
         public PrSender prSender;
 
+        /**
+         * Reopened and new commits pushed to PR are built as PR open event
+         */
+        private GitEvent getEvent() {
+            if (action.equals(PrOpen) || action.equals(PrReopened) || action.equals(PrSynchronize)) {
+                return GitEvent.PR_OPEN;
+            }
+            return GitEvent.PR_CLOSE;
+        }
+
         public GitPrTrigger toTrigger() {
             GitPrTrigger trigger = new GitPrTrigger();
-            trigger.setEvent(action.equals(PrOpen) ? GitEvent.PR_OPEN : GitEvent.PR_CLOSE);
+            trigger.setEvent(getEvent());
             trigger.setSource(GitSource.GITHUB);
 
             trigger.setNumber(number);
@@ -169,6 +189,7 @@ public class GithubTriggerService implements GitTriggerService {
             base.setRepoName(prBody.base.repo.fullName);
             base.setRepoUrl(prBody.base.repo.url);
             trigger.setBase(base);
+            trigger.setRepoUrl(base.getRepoUrl());
 
             Sender sender = new Sender();
             sender.setId(prSender.id);
@@ -232,6 +253,15 @@ public class GithubTriggerService implements GitTriggerService {
         public String username;
     }
 
+    private static class RepoObject {
+
+        @JsonProperty("full_name")
+        public String fullName;
+
+        @JsonProperty("html_url")
+        public String url;
+    }
+
     private static class CommitObject {
 
         public String id;
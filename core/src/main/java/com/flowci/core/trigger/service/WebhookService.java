@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.trigger.service;
+
+import com.flowci.core.trigger.domain.WebhookEvent;
+
+/**
+ * @author yang
+ */
+public interface WebhookService {
+
+    /**
+     * Put raw event to the queue and process it asynchronously
+     *
+     * @return false if event with same delivery id has been received recently
+     * @throws com.flowci.exception.StatusException if the queue is full
+     */
+    boolean receive(WebhookEvent event);
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.trigger.service;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.RepoSubscription;
+import com.flowci.core.flow.domain.Yml;
+import com.flowci.core.flow.service.RepoIndexService;
+import com.flowci.core.helper.ThreadHelper;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.service.JobService;
+import com.flowci.core.open.flow.OpenFlowService;
+import com.flowci.core.trigger.domain.GitPushTrigger;
+import com.flowci.core.trigger.domain.GitTrigger;
+import com.flowci.core.trigger.domain.GitTrigger.GitEvent;
+import com.flowci.core.trigger.domain.GitTrigger.GitSource;
+import com.flowci.core.trigger.domain.WebhookEvent;
+import com.flowci.domain.VariableMap;
+import com.flowci.exception.NotFoundException;
+import com.flowci.exception.StatusException;
+import com.flowci.tree.Filter;
+import com.flowci.tree.Node;
+import com.flowci.tree.YmlParser;
+import com.flowci.util.HashingHelper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Webhook events are kept in a bounded queue and processed by workers in batches,
+ * the events in a batch for the same flow share the flow and yml loading.
+ *
+ * The repository webhook event is parsed once, and delivered to the subscribed flows from repository index
+ * which keeps the parsed yml. The event signature must be verified by the webhook secret of subscribed flow,
+ * so an unauthenticated event cannot start jobs of other flows, then only the flows with matched filter
+ * will create jobs.
+ *
+ * @author yang
+ */
+@Log4j2
+@Service
+public class WebhookServiceImpl implements WebhookService {
+
+    private static final String GithubPushOrTag = "push";
+
+    private static final String GithubPR = "pull_request";
+
+    private static final String SignaturePrefix = "sha1=";
+
+    @Autowired
+    private ConfigProperties.Webhook webhookProperties;
+
+    @Autowired
+    private ConfigProperties.Job jobProperties;
+
+    @Autowired
+    private OpenFlowService openFlowService;
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private GitTriggerService gitHubTriggerService;
+
+    @Autowired
+    private RepoIndexService repoIndexService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<WebhookEvent> queue;
+
+    private Cache<String, Boolean> recentDeliveries;
+
+    private ThreadPoolTaskExecutor workers;
+
+    private Counter duplicatedCounter;
+
+    private Counter rejectedCounter;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(webhookProperties.getQueueSize());
+
+        recentDeliveries = Caffeine.newBuilder()
+            .maximumSize(webhookProperties.getRecentDeliveries())
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+        duplicatedCounter = meterRegistry.counter("flowci.webhook.duplicated");
+        rejectedCounter = meterRegistry.counter("flowci.webhook.rejected");
+
+        Gauge.builder("flowci.webhook.queued", queue, BlockingQueue::size)
+            .description("Num of webhook events waiting to be processed")
+            .register(meterRegistry);
+
+        int numOfWorkers = webhookProperties.getWorkers();
+        workers = ThreadHelper.createTaskExecutor(numOfWorkers, numOfWorkers, 0, "webhook-worker-");
+        workers.initialize();
+
+        for (int i = 0; i < numOfWorkers; i++) {
+            workers.execute(this::consume);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        workers.shutdown();
+    }
+
+    @Override
+    public boolean receive(WebhookEvent event) {
+        String deliveryId = event.getDeliveryId();
+        boolean hasDeliveryId = !Objects.isNull(deliveryId);
+
+        if (hasDeliveryId && recentDeliveries.asMap().putIfAbsent(deliveryId, Boolean.TRUE) != null) {
+            log.info("Webhook delivery {} has been received", deliveryId);
+            duplicatedCounter.increment();
+            return false;
+        }
+
+        if (!queue.offer(event)) {
+            // let the redelivery to be accepted
+            if (hasDeliveryId) {
+                recentDeliveries.invalidate(deliveryId);
+            }
+
+            rejectedCounter.increment();
+            throw new StatusException("Too many webhook events are waiting to be processed");
+        }
+
+        return true;
+    }
+
+    private void consume() {
+        int batchSize = webhookProperties.getBatchSize();
+        List<WebhookEvent> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                WebhookEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                log.warn("Unable to process webhook events", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<WebhookEvent> batch) {
+        Map<String, List<GitTrigger>> triggersOfFlow = new LinkedHashMap<>();
+
+        // flows resolved from repository index, the others are loaded by name
+        Map<String, RepoSubscription> subscriptions = new HashMap<>();
+
+        for (WebhookEvent event : batch) {
+            try {
+                GitTrigger trigger = toTrigger(event);
+                if (Objects.isNull(trigger)) {
+                    continue;
+                }
+
+                log.info("Git trigger received from {}: {}", event, trigger);
+
+                if (!event.isRepoScoped()) {
+                    triggersOfFlow.computeIfAbsent(event.getFlow(), key -> new LinkedList<>()).add(trigger);
+                    continue;
+                }
+
+                for (RepoSubscription subscription : repoIndexService.find(trigger.getRepoUrl())) {
+                    if (!isSignatureVerified(event, subscription)) {
+                        log.debug("Signature of {} not verified by flow {}", event, subscription.getFlowName());
+                        continue;
+                    }
+
+                    String name = subscription.getFlowName();
+                    subscriptions.putIfAbsent(name, subscription);
+                    triggersOfFlow.computeIfAbsent(name, key -> new LinkedList<>()).add(trigger);
+                }
+            } catch (Throwable e) {
+                log.warn("Unable to parse webhook event {}: {}", event, e.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, List<GitTrigger>> entry : triggersOfFlow.entrySet()) {
+            try {
+                startJobs(entry.getKey(), entry.getValue(), subscriptions.get(entry.getKey()));
+            } catch (Throwable e) {
+                log.warn("Unable to start jobs for flow {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void startJobs(String name, List<GitTrigger> triggers, RepoSubscription subscription) {
+        Flow flow;
+        Yml yml;
+        Node root;
+
+        try {
+            flow = openFlowService.get(name);
+        } catch (NotFoundException e) {
+            log.warn("Flow {} not found for webhook", name);
+            return;
+        }
+
+        if (Objects.isNull(subscription) || !Objects.equals(flow.getId(), subscription.getFlowId())) {
+            yml = openFlowService.getYml(flow);
+            root = YmlParser.load(flow.getName(), yml.getRaw());
+        } else {
+            yml = subscription.getYml();
+            root = subscription.getRoot();
+        }
+
+        Map<Trigger, List<VariableMap>> inputsOfTrigger = new EnumMap<>(Trigger.class);
+        for (GitTrigger trigger : triggers) {
+            if (!canStartJob(root, trigger)) {
+                log.info("Trigger filter not matched {}", root.getFilter());
+                continue;
+            }
+
+            Trigger jobTrigger = getJobTrigger(trigger);
+            inputsOfTrigger.computeIfAbsent(jobTrigger, key -> new LinkedList<>()).add(trigger.toVariableMap());
+        }
+
+        // keep num of jobs in each batch under the limit since each input is expanded by matrix
+        int inputsPerBatch = Math.max(1, jobProperties.getBatchLimit() / root.expandMatrix().size());
+
+        for (Map.Entry<Trigger, List<VariableMap>> entry : inputsOfTrigger.entrySet()) {
+            for (List<VariableMap> inputs : Lists.partition(entry.getValue(), inputsPerBatch)) {
+                List<Job> jobs = jobService.create(flow, yml, entry.getKey(), inputs);
+                jobService.start(jobs);
+                log.debug("Start {} jobs of {} from git event {}", jobs.size(), name, entry.getKey());
+            }
+        }
+    }
+
+    private GitTrigger toTrigger(WebhookEvent event) {
+        if (event.getSource() != GitSource.GITHUB) {
+            return null;
+        }
+
+        InputStream in = new ByteArrayInputStream(event.getPayload());
+
+        if (GithubPushOrTag.equals(event.getEvent())) {
+            return gitHubTriggerService.onPushOrTag(in);
+        }
+
+        if (GithubPR.equals(event.getEvent())) {
+            return gitHubTriggerService.onPullRequest(in);
+        }
+
+        return null;
+    }
+
+    private static boolean isSignatureVerified(WebhookEvent event, RepoSubscription subscription) {
+        String secret = subscription.getSecret();
+        String signature = event.getSignature();
+
+        if (Strings.isNullOrEmpty(secret) || Strings.isNullOrEmpty(signature)) {
+            return false;
+        }
+
+        String expected = SignaturePrefix + HashingHelper.hmacSha1(secret, event.getPayload());
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+            signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean canStartJob(Node root, GitTrigger trigger) {
+        Filter condition = root.getFilter();
+
+        if (trigger.getEvent() == GitEvent.PUSH) {
+            GitPushTrigger pushTrigger = (GitPushTrigger) trigger;
+            return condition.isMatchBranch(pushTrigger.getRef());
+        }
+
+        if (trigger.getEvent() == GitEvent.TAG) {
+            GitPushTrigger tagTrigger = (GitPushTrigger) trigger;
+            return condition.isMatchTag(tagTrigger.getRef());
+        }
+
+        return true;
+    }
+
+    /**
+     * Convert git trigger to job trigger
+     */
+    private Trigger getJobTrigger(GitTrigger trigger) {
+        if (trigger.getEvent() == GitEvent.PUSH) {
+            return Trigger.PUSH;
+        }
+
+        if (trigger.getEvent() == GitEvent.TAG) {
+            return Trigger.TAG;
+        }
+
+        if (trigger.getEvent() == GitEvent.PR_OPEN) {
+            return Trigger.PR_OPEN;
+        }
+
+        if (trigger.getEvent() == GitEvent.PR_CLOSE) {
+            return Trigger.PR_CLOSE;
+        }
+
+        throw new NotFoundException("Cannot found related job trigger for {0}", trigger.getEvent().name());
+    }
+}
@@ -44,4 +44,13 @@ public class User extends Mongoable {
         this.email = email;
         this.passwordOnMd5 = passwordOnMd5;
     }
+
+    /**
+     * Copy of user, since the cached user is shared by callers
+     */
+    public User copy() {
+        User copy = new User(email, passwordOnMd5);
+        copy.copyFrom(this);
+        return copy;
+    }
 }
@@ -23,9 +23,13 @@ import java.util.Objects;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 
 /**
+ * Users are cached by email. The cache is evicted on create, which is the only change of user so far,
+ * so a user update or delete added later must evict it as well.
+ *
  * @author yang
  */
 @Log4j2
@@ -38,6 +42,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private Cache userCache;
+
     @PostConstruct
     public void initAdmin() {
         String adminEmail = adminProperties.getDefaultEmail();
@@ -54,7 +61,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public User defaultAdmin() {
         String email = adminProperties.getDefaultEmail();
-        return userDao.findByEmail(email);
+        return getByEmail(email);
     }
 
     @Override
@@ -63,11 +70,14 @@ public class UserServiceImpl implements UserService {
             throw new DuplicateException("Email {0} is already existed", email);
         }
 
-        return userDao.save(new User(email, HashingHelper.md5(password)));
+        User user = userDao.save(new User(email, HashingHelper.md5(password)));
+        userCache.evict(email);
+        return user;
     }
 
     @Override
     public User getByEmail(String email) {
-        return userDao.findByEmail(email);
+        User user = userCache.get(email, () -> userDao.findByEmail(email));
+        return Objects.isNull(user) ? null : user.copy();
     }
 }
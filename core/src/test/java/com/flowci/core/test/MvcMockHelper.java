@@ -21,6 +21,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
@@ -36,6 +37,11 @@ public class MvcMockHelper {
     @Autowired
     private ObjectMapper objectMapper;
 
+    public String expectStatusAndReturnString(RequestBuilder builder, HttpStatus expected) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(builder).andExpect(status().is(expected.value())).andReturn();
+        return mvcResult.getResponse().getContentAsString();
+    }
+
     public String expectSuccessAndReturnString(RequestBuilder builder) throws Exception {
         MvcResult mvcResult = mockMvc.perform(builder).andExpect(status().isOk()).andReturn();
         return mvcResult.getResponse().getContentAsString();
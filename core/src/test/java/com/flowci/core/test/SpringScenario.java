@@ -19,6 +19,7 @@ package com.flowci.core.test;
 import com.flowci.core.agent.dao.AgentDao;
 import com.flowci.core.test.SpringScenario.Config;
 import com.flowci.core.test.flow.FlowMockHelper;
+import com.flowci.core.test.job.JobMockHelper;
 import com.flowci.core.user.CurrentUserHelper;
 import com.flowci.core.user.User;
 import com.flowci.core.user.UserService;
@@ -35,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.Cache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.event.ApplicationEventMulticaster;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -61,6 +63,11 @@ public abstract class SpringScenario {
         public FlowMockHelper flowMockHelper() {
             return new FlowMockHelper();
         }
+
+        @Bean("jobMockHelper")
+        public JobMockHelper jobMockHelper() {
+            return new JobMockHelper();
+        }
     }
 
     @Autowired
@@ -90,6 +97,9 @@ public abstract class SpringScenario {
     @Autowired
     protected ApplicationEventMulticaster applicationEventMulticaster;
 
+    @Autowired
+    private List<Cache> caches;
+
     @After
     public void cleanListeners() {
         applicationEventMulticaster.removeAllListeners();
@@ -100,6 +110,13 @@ public abstract class SpringScenario {
         mongoTemplate.getDb().drop();
     }
 
+    @After
+    public void cacheCleanUp() {
+        for (Cache cache : caches) {
+            cache.clear();
+        }
+    }
+
     @After
     public void queueCleanUp() {
         queueAdmin.purgeQueue(jobQueue.getName(), true);
@@ -17,6 +17,7 @@
 package com.flowci.core.test.agent;
 
 import com.flowci.core.agent.event.CmdSentEvent;
+import com.flowci.core.agent.event.StatusChangeEvent;
 import com.flowci.core.agent.service.AgentService;
 import com.flowci.core.config.ConfigProperties;
 import com.flowci.core.helper.ThreadHelper;
@@ -31,6 +32,7 @@ import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.zookeeper.CreateMode;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -122,7 +124,7 @@ public class AgentServiceTest extends ZookeeperScenario {
         Assert.assertEquals(Status.BUSY, getAgentStatus(agentService.getPath(available)));
 
         // when: release agent and mock event from agent
-        agentService.tryRelease(available);
+        agentService.tryRelease(available, available.getJobId());
 //        mockReleaseAgent(agentService.getPath(available));
 
         // then: the status should be idle
@@ -134,6 +136,51 @@ public class AgentServiceTest extends ZookeeperScenario {
         Assert.assertEquals(Status.IDLE, statusFromDB);
     }
 
+    @Test
+    public void should_lock_slots_of_agent_for_jobs() throws InterruptedException {
+        // init: agent online with 2 slots
+        Agent agent = agentService.create("hello.slots", null);
+        String agentPath = agentService.getPath(agent);
+
+        CountDownLatch counter = new CountDownLatch(1);
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<StatusChangeEvent>) event -> {
+            counter.countDown();
+        });
+
+        zk.create(CreateMode.EPHEMERAL, agentPath, Agent.toNodeData(Status.IDLE, 2));
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, agentService.get(agent.getId()).getSlots().intValue());
+
+        // when: lock first slot
+        agent.setJobId("job-1");
+        Assert.assertTrue(agentService.tryLock(agent));
+
+        // then: still idle since one slot is free
+        Assert.assertEquals(Status.IDLE, getAgentStatus(agentPath));
+        Assert.assertFalse(agentService.tryLock(agent));
+
+        // when: lock second slot
+        agent.setJobId("job-2");
+        Assert.assertTrue(agentService.tryLock(agent));
+
+        // then: busy since all slots are locked
+        Agent locked = agentService.get(agent.getId());
+        Assert.assertEquals(Status.BUSY, getAgentStatus(agentPath));
+        Assert.assertEquals(0, locked.getSlot("job-1").intValue());
+        Assert.assertEquals(1, locked.getSlot("job-2").intValue());
+
+        agent.setJobId("job-3");
+        Assert.assertFalse(agentService.tryLock(agent));
+
+        // when: release slot of job 1
+        agentService.tryRelease(agent, "job-1");
+
+        // then: idle and the slot can be locked by other job
+        Assert.assertEquals(Status.IDLE, getAgentStatus(agentPath));
+        Assert.assertTrue(agentService.tryLock(agent));
+        Assert.assertEquals(0, agentService.get(agent.getId()).getSlot("job-3").intValue());
+    }
+
     @Test
     public void should_dispatch_cmd_to_agent() throws InterruptedException {
         // init:
@@ -22,6 +22,7 @@ import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.test.SpringScenario;
 import com.flowci.domain.VariableMap;
 import com.flowci.exception.ArgumentException;
+import com.flowci.exception.NotFoundException;
 import com.flowci.exception.YmlException;
 import com.flowci.util.StringHelper;
 import java.io.IOException;
@@ -66,6 +67,44 @@ public class FlowServiceTest extends SpringScenario {
         Assert.assertEquals("hello.world", variables.getString("FLOW_NAME"));
     }
 
+    @Test(expected = NotFoundException.class)
+    public void should_not_get_flow_from_cache_after_deleted() {
+        flowService.create("hello");
+        Assert.assertNotNull(flowService.get("hello"));
+
+        flowService.delete("hello");
+        flowService.get("hello");
+    }
+
+    @Test
+    public void should_not_share_unsaved_changes_of_cached_flow() {
+        flowService.create("hello");
+
+        // when: change variables of flow from cache without update
+        Flow flow = flowService.get("hello");
+        flow.getVariables().putString("FLOW_TEST", "changed");
+
+        // then: the change should not be seen by other callers
+        Assert.assertNotSame(flow, flowService.get("hello"));
+        Assert.assertNull(flowService.get("hello").getVariables().get("FLOW_TEST"));
+    }
+
+    @Test
+    public void should_copy_all_fields_of_cached_flow() {
+        Flow created = flowService.create("hello");
+        created.setHotJobs(10);
+        flowService.update(created);
+
+        // when:
+        Flow flow = flowService.get("hello");
+
+        // then:
+        Assert.assertEquals(created.getId(), flow.getId());
+        Assert.assertEquals(created.getCreatedBy(), flow.getCreatedBy());
+        Assert.assertNotNull(flow.getCreatedAt());
+        Assert.assertEquals(10, flow.getHotJobs().intValue());
+    }
+
     @Test
     public void should_save_yml_for_flow() throws IOException {
         // when:
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.agent.dao.AgentDao;
+import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.Yml;
+import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.service.JobService;
+import com.flowci.domain.Agent;
+import com.flowci.domain.VariableMap;
+import com.flowci.util.StringHelper;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author yang
+ */
+public class JobMockHelper {
+
+    @Autowired
+    private FlowService flowService;
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private AgentService agentService;
+
+    @Autowired
+    private AgentDao agentDao;
+
+    @Autowired
+    private JobDao jobDao;
+
+    /**
+     * Create job of flow 'hello' from flow.yml and assign it to a new agent with host, the host can be null
+     */
+    public Job createOnAgent(String agentHost) throws IOException {
+        Flow flow = flowService.create("hello");
+
+        try (InputStream is = JobMockHelper.class.getClassLoader().getResourceAsStream("flow.yml")) {
+            Yml yml = flowService.saveYml(flow, StringHelper.toString(is));
+
+            Agent agent = agentService.create("hello.agent", null);
+            agent.setHost(agentHost);
+            agentDao.save(agent);
+
+            Job job = jobService.create(flow, yml, Trigger.MANUAL, VariableMap.EMPTY);
+            job.setAgentId(agent.getId());
+            return jobDao.save(job);
+        }
+    }
+}
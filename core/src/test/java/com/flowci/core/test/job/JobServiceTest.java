@@ -18,14 +18,20 @@ package com.flowci.core.test.job;
 
 import com.flowci.core.agent.event.CmdSentEvent;
 import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.domain.Variables;
 import com.flowci.core.flow.service.FlowService;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.job.dao.ExecutedCmdDao;
 import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.dao.JobRefNumberDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Status;
 import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobRefNumber;
+import com.flowci.core.job.domain.JobSummaryPage;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.manager.CmdManager;
@@ -33,28 +39,48 @@ import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.service.JobService;
 import com.flowci.core.job.service.StepService;
 import com.flowci.core.test.ZookeeperScenario;
+import com.flowci.core.trigger.domain.GitPushTrigger;
 import com.flowci.domain.Agent;
 import com.flowci.domain.Cmd;
+import com.flowci.domain.CmdType;
 import com.flowci.domain.ExecutedCmd;
 import com.flowci.domain.ObjectWrapper;
+import com.flowci.domain.PlanStep;
+import com.flowci.domain.TimelineEntry;
+import com.flowci.domain.TimelineEntry.Phase;
 import com.flowci.domain.VariableMap;
+import com.flowci.exception.NotAvailableException;
 import com.flowci.tree.Node;
 import com.flowci.tree.NodePath;
 import com.flowci.tree.NodeTree;
 import com.flowci.tree.YmlParser;
 import com.flowci.util.StringHelper;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.log4j.Log4j2;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.PageRequest;
 
 /**
  * @author yang
@@ -63,9 +89,15 @@ import org.springframework.context.ApplicationListener;
 @FixMethodOrder(MethodSorters.JVM)
 public class JobServiceTest extends ZookeeperScenario {
 
+    @Autowired
+    private ConfigProperties.Job jobProperties;
+
     @Autowired
     private JobDao jobDao;
 
+    @Autowired
+    private JobRefNumberDao jobRefNumberDao;
+
     @Autowired
     private ExecutedCmdDao executedCmdDao;
 
@@ -87,10 +119,29 @@ public class JobServiceTest extends ZookeeperScenario {
     @Autowired
     private YmlManager ymlManager;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private Flow flow;
 
     private Yml yml;
 
+    /**
+     * Copy of shared job properties, restored after each test
+     */
+    private ConfigProperties.Job defaultJobProperties;
+
+    @Before
+    public void keepJobProperties() {
+        defaultJobProperties = new ConfigProperties.Job();
+        BeanUtils.copyProperties(jobProperties, defaultJobProperties);
+    }
+
+    @After
+    public void restoreJobProperties() {
+        BeanUtils.copyProperties(defaultJobProperties, jobProperties);
+    }
+
     @Before
     public void mockFlowAndYml() throws IOException {
         flow = flowService.create("hello");
@@ -138,6 +189,231 @@ public class JobServiceTest extends ZookeeperScenario {
         Assert.assertFalse(jobService.isExpired(job));
     }
 
+    @Test
+    public void should_list_job_summaries_by_build_number_cursor() {
+        List<VariableMap> inputs = Lists.newArrayList(VariableMap.EMPTY, VariableMap.EMPTY, VariableMap.EMPTY,
+            VariableMap.EMPTY, VariableMap.EMPTY);
+        jobService.create(flow, yml, Trigger.API, inputs);
+
+        // when: list first page
+        JobSummaryPage page = jobService.listSummary(flow, null, 2);
+        Assert.assertEquals(2, page.getContent().size());
+        Assert.assertEquals(5L, page.getContent().get(0).getBuildNumber().longValue());
+        Assert.assertEquals(Status.PENDING, page.getContent().get(0).getStatus());
+        Assert.assertEquals(4L, page.getNext().longValue());
+
+        // then: next page starts from cursor
+        page = jobService.listSummary(flow, page.getNext(), 2);
+        Assert.assertEquals(3L, page.getContent().get(0).getBuildNumber().longValue());
+        Assert.assertEquals(2L, page.getNext().longValue());
+
+        // then: no cursor on the last page
+        page = jobService.listSummary(flow, page.getNext(), 2);
+        Assert.assertEquals(1, page.getContent().size());
+        Assert.assertNull(page.getNext());
+    }
+
+    @Test
+    public void should_search_jobs_by_git_branch_and_status() {
+        VariableMap master = new VariableMap();
+        master.putString(GitPushTrigger.Variables.GIT_BRANCH, "master");
+        master.putString(GitPushTrigger.Variables.GIT_COMMIT_ID, "abc");
+
+        VariableMap release = new VariableMap();
+        release.putString(GitPushTrigger.Variables.GIT_BRANCH, "release-2.3");
+        release.putString(GitPushTrigger.Variables.GIT_COMMIT_ID, "def");
+
+        List<Job> jobs = jobService.create(flow, yml, Trigger.PUSH, Lists.newArrayList(release, master, release));
+        Assert.assertEquals("release-2.3", jobs.get(0).getBranch());
+        Assert.assertEquals("abc", jobs.get(1).getCommitId());
+
+        Job success = jobs.get(0);
+        success.setStatus(Status.SUCCESS);
+        jobDao.save(success);
+
+        // when: search latest successful build of branch
+        JobQuery query = new JobQuery();
+        query.setBranch("release-2.3");
+        query.setStatus(Status.SUCCESS);
+
+        JobSummaryPage page = jobService.search(flow, query, null, 1);
+        Assert.assertEquals(1, page.getContent().size());
+        Assert.assertEquals(success.getBuildNumber(), page.getContent().get(0).getBuildNumber());
+
+        // when: search by commit id
+        query = new JobQuery();
+        query.setCommitId("def");
+
+        page = jobService.search(flow, query, null, 10);
+        Assert.assertEquals(2, page.getContent().size());
+        Assert.assertEquals(jobs.get(2).getBuildNumber(), page.getContent().get(0).getBuildNumber());
+    }
+
+    @Test
+    public void should_create_jobs_for_each_input_and_env_matrix_in_batch() throws IOException {
+        yml = flowService.saveYml(flow, StringHelper.toString(load("flow-with-matrix.yml")));
+
+        VariableMap first = new VariableMap();
+        first.putString("INPUT", "first");
+
+        VariableMap second = new VariableMap();
+        second.putString("INPUT", "second");
+        second.putString("OS", "windows");
+
+        // when: create jobs with two inputs
+        List<Job> jobs = jobService.create(flow, yml, Trigger.API, Lists.newArrayList(first, second));
+        Assert.assertEquals(8, jobs.size());
+
+        // then: build numbers are allocated in a block
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            Assert.assertNotNull(job.getId());
+            Assert.assertEquals(jobs.get(0).getBuildNumber() + i, job.getBuildNumber().longValue());
+            Assert.assertEquals(1, stepService.list(job).size());
+        }
+
+        // then: matrix is applied to context and input has higher priority
+        Assert.assertEquals("8", jobs.get(0).getContext().get("JDK_VERSION"));
+        Assert.assertEquals("linux", jobs.get(0).getContext().get("OS"));
+        Assert.assertEquals("first", jobs.get(0).getContext().get("INPUT"));
+        Assert.assertEquals("windows", jobs.get(7).getContext().get("OS"));
+
+        // then: all jobs are queued
+        jobs = jobService.start(jobs);
+        for (Job job : jobs) {
+            Assert.assertEquals(Status.QUEUED, jobDao.findById(job.getId()).get().getStatus());
+        }
+    }
+
+    @Test
+    public void should_create_job_for_each_env_matrix_by_single_input() throws IOException {
+        yml = flowService.saveYml(flow, StringHelper.toString(load("flow-with-matrix.yml")));
+
+        // when:
+        Job job = jobService.create(flow, yml, Trigger.API, VariableMap.EMPTY);
+
+        // then: job of the first combination is returned
+        Assert.assertEquals("8", job.getContext().get("JDK_VERSION"));
+        Assert.assertEquals("linux", job.getContext().get("OS"));
+        Assert.assertEquals(4, jobService.list(flow, 0, 10).getTotalElements());
+    }
+
+    @Test
+    public void should_cancel_queued_job_superseded_by_newer_build_of_same_branch() throws IOException {
+        yml = flowService.saveYml(flow, StringHelper.toString(load("flow-with-auto-cancel.yml")));
+
+        VariableMap master = new VariableMap();
+        master.putString(GitPushTrigger.Variables.GIT_BRANCH, "master");
+
+        VariableMap develop = new VariableMap();
+        develop.putString(GitPushTrigger.Variables.GIT_BRANCH, "develop");
+
+        // when: create two builds on master and one on develop
+        List<Job> jobs = jobService.create(flow, yml, Trigger.PUSH, Lists.newArrayList(master, develop, master));
+        Assert.assertEquals(3, jobs.size());
+
+        for (Job job : jobs) {
+            job.setStatus(Status.QUEUED);
+            jobDao.save(job);
+        }
+
+        // then: the older build on master should be cancelled when received from queue
+        jobService.processJob(jobs.get(0));
+        Assert.assertEquals(Status.CANCELLED, jobDao.findById(jobs.get(0).getId()).get().getStatus());
+
+        // then: the build on other branch should not be cancelled
+        jobService.processJob(jobs.get(1));
+        Assert.assertNotEquals(Status.CANCELLED, jobDao.findById(jobs.get(1).getId()).get().getStatus());
+
+        // then: the latest build number of ref is persisted for other core nodes
+        JobRefNumber latest = jobRefNumberDao.findAll().stream()
+            .filter(item -> flow.getId().equals(item.getFlowId()) && "master".equals(item.getRef()))
+            .findFirst()
+            .get();
+        Assert.assertEquals(jobs.get(2).getBuildNumber(), latest.getNumber());
+    }
+
+    @Test
+    public void should_reject_or_coalesce_jobs_over_max_queued_of_flow() {
+        jobProperties.setMaxQueuedPerFlow(1);
+
+        VariableMap master = new VariableMap();
+        master.putString(GitPushTrigger.Variables.GIT_BRANCH, "master");
+
+        VariableMap develop = new VariableMap();
+        develop.putString(GitPushTrigger.Variables.GIT_BRANCH, "develop");
+
+        Job queued = jobService.create(flow, yml, Trigger.PUSH, Lists.newArrayList(master)).get(0);
+        queued.setStatus(Status.QUEUED);
+        jobDao.save(queued);
+
+        // then: the queued job of the same branch should be replaced by the new push
+        List<Job> jobs = jobService.create(flow, yml, Trigger.PUSH, Lists.newArrayList(master));
+        Assert.assertEquals(1, jobs.size());
+        Assert.assertEquals(Status.CANCELLED, jobDao.findById(queued.getId()).get().getStatus());
+
+        // then: the cancelled job should not be processed when received from queue
+        jobService.processJob(queued);
+        Assert.assertEquals(Status.CANCELLED, jobDao.findById(queued.getId()).get().getStatus());
+
+        Job replaced = jobs.get(0);
+        replaced.setStatus(Status.QUEUED);
+        jobDao.save(replaced);
+
+        // then: push of other branch and job from api should be rejected
+        try {
+            jobService.create(flow, yml, Trigger.PUSH, Lists.newArrayList(develop));
+            Assert.fail();
+        } catch (NotAvailableException ignore) {
+
+        }
+
+        try {
+            jobService.create(flow, yml, Trigger.API, VariableMap.EMPTY);
+            Assert.fail();
+        } catch (NotAvailableException ignore) {
+
+        }
+
+        Assert.assertEquals(2, jobDao.findAllByFlowId(flow.getId(), PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    @Test
+    public void should_defer_job_over_max_running_of_flow() {
+        jobProperties.setMaxRunningPerFlow(1);
+
+        List<Job> jobs = jobService.create(flow, yml, Trigger.API,
+            Lists.newArrayList(VariableMap.EMPTY, VariableMap.EMPTY));
+
+        Job running = jobs.get(0);
+        running.setStatus(Status.RUNNING);
+        jobDao.save(running);
+
+        Job queued = jobs.get(1);
+        queued.setStatus(Status.QUEUED);
+        jobDao.save(queued);
+
+        // when:
+        jobService.processJob(queued);
+
+        // then: job is deferred and recorded as deferred instead of lock attempt
+        List<TimelineEntry> timeline = jobService.getTimeline(queued);
+        TimelineEntry last = timeline.get(timeline.size() - 1);
+        Assert.assertEquals(Phase.DEFERRED, last.getPhase());
+        Assert.assertEquals(Status.QUEUED, jobDao.findById(queued.getId()).get().getStatus());
+    }
+
+    @Test(expected = NotAvailableException.class)
+    public void should_count_pending_jobs_as_queued_for_max_queued_of_flow() {
+        jobProperties.setMaxQueuedPerFlow(2);
+
+        // init: pending jobs which are not queued yet
+        jobService.create(flow, yml, Trigger.API, Lists.newArrayList(VariableMap.EMPTY, VariableMap.EMPTY));
+
+        // then: should be rejected
+        jobService.create(flow, yml, Trigger.API, VariableMap.EMPTY);
+    }
+
     @Test
     public void should_dispatch_job_to_agent() throws InterruptedException {
         // init:
@@ -181,6 +457,184 @@ public class JobServiceTest extends ZookeeperScenario {
         Assert.assertEquals("echo hello\n", cmd.getScripts().get(1));
     }
 
+    @Test
+    public void should_create_jobs_concurrently_with_unique_consecutive_build_numbers() throws Throwable {
+        int num = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(num);
+        List<Future<Job>> futures = new ArrayList<>(num);
+
+        // when: create jobs for the same flow in parallel
+        try {
+            for (int i = 0; i < num; i++) {
+                futures.add(executor.submit(() -> jobService.create(flow, yml, Trigger.MANUAL, VariableMap.EMPTY)));
+            }
+
+            List<Long> numbers = new ArrayList<>(num);
+            for (Future<Job> future : futures) {
+                numbers.add(future.get(30, TimeUnit.SECONDS).getBuildNumber());
+            }
+
+            // then: build numbers are from 1 to num without duplication
+            Collections.sort(numbers);
+            for (int i = 0; i < num; i++) {
+                Assert.assertEquals(i + 1, numbers.get(i).longValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_ship_plan_to_agent_and_not_dispatch_shipped_steps() throws InterruptedException {
+        jobProperties.setShipPlan(true);
+
+        try {
+            // init:
+            Job job = jobService.create(flow, yml, Trigger.MANUAL, VariableMap.EMPTY);
+            Agent agent = agentService.create("hello.agent", null);
+            mockAgentOnline(agentService.getPath(agent));
+
+            job.setStatus(Status.QUEUED);
+            jobDao.save(job);
+
+            List<Cmd> sent = new CopyOnWriteArrayList<>();
+            CountDownLatch counter = new CountDownLatch(1);
+            applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdSentEvent>) event -> {
+                sent.add(event.getCmd());
+                counter.countDown();
+            });
+
+            // when:
+            jobService.processJob(job);
+
+            // then: plan cmd with all steps been sent
+            Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, sent.size());
+
+            NodeTree tree = ymlManager.getTree(job);
+            Node first = tree.next(tree.getRoot().getPath());
+            Node second = tree.next(first.getPath());
+
+            Cmd plan = sent.get(0);
+            Assert.assertEquals(CmdType.PLAN, plan.getType());
+            Assert.assertEquals(2, plan.getPlan().size());
+
+            PlanStep firstStep = plan.getPlan().get(0);
+            PlanStep secondStep = plan.getPlan().get(1);
+            Assert.assertEquals(cmdManager.createId(job, first).toString(), firstStep.getCmd().getId());
+            Assert.assertEquals(1, firstStep.getOnSuccess());
+            Assert.assertTrue(firstStep.getEnvironments().contains("FLOW_VERSION"));
+
+            Assert.assertEquals(cmdManager.createId(job, second).toString(), secondStep.getCmd().getId());
+            Assert.assertEquals(PlanStep.END, secondStep.getOnSuccess());
+            Assert.assertEquals(Status.SUCCESS.name(), secondStep.getCmd().getInputs().get(Variables.JOB_STATUS));
+
+            // when: first step executed on agent
+            ExecutedCmd executedCmd = new ExecutedCmd(firstStep.getCmd().getId(), first.isAllowFailure());
+            executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+            jobService.processCallback(executedCmd);
+
+            // then: job moves to the second step without dispatching
+            job = jobDao.findById(job.getId()).get();
+            Assert.assertEquals(second.getPathAsString(), job.getCurrentPath());
+            Assert.assertEquals(1, sent.size());
+
+            ExecutedCmd running = executedCmdDao.findById(secondStep.getCmd().getId()).get();
+            Assert.assertEquals(ExecutedCmd.Status.RUNNING, running.getStatus());
+
+            // when: second step executed on agent
+            executedCmd = new ExecutedCmd(secondStep.getCmd().getId(), second.isAllowFailure());
+            executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+            jobService.processCallback(executedCmd);
+
+            // then:
+            job = jobDao.findById(job.getId()).get();
+            Assert.assertEquals(Status.SUCCESS, job.getStatus());
+            Assert.assertEquals(1, sent.size());
+        } finally {
+            jobProperties.setShipPlan(false);
+        }
+    }
+
+    @Test
+    public void should_accept_callback_of_shipped_step_before_current_step() throws InterruptedException {
+        jobProperties.setShipPlan(true);
+
+        // init:
+        Job job = jobService.create(flow, yml, Trigger.MANUAL, VariableMap.EMPTY);
+        Agent agent = agentService.create("hello.agent", null);
+        mockAgentOnline(agentService.getPath(agent));
+
+        job.setStatus(Status.QUEUED);
+        jobDao.save(job);
+
+        List<Cmd> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch counter = new CountDownLatch(1);
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<CmdSentEvent>) event -> {
+            sent.add(event.getCmd());
+            counter.countDown();
+        });
+
+        jobService.processJob(job);
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+
+        NodeTree tree = ymlManager.getTree(job);
+        Node first = tree.next(tree.getRoot().getPath());
+        Node second = tree.next(first.getPath());
+        PlanStep secondStep = sent.get(0).getPlan().get(1);
+
+        // when: callback of second shipped step arrives while job is on the first step
+        job = jobDao.findById(job.getId()).get();
+        Assert.assertEquals(first.getPathAsString(), job.getCurrentPath());
+
+        ExecutedCmd executedCmd = new ExecutedCmd(secondStep.getCmd().getId(), second.isAllowFailure());
+        executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+        jobService.processCallback(executedCmd);
+
+        // then: callback accepted and job moved to the second step
+        job = jobDao.findById(job.getId()).get();
+        Assert.assertEquals(Status.SUCCESS, job.getStatus());
+        Assert.assertEquals(second.getPathAsString(), job.getCurrentPath());
+        Assert.assertFalse(job.getShippedPaths().contains(second.getPathAsString()));
+
+        ExecutedCmd saved = executedCmdDao.findById(secondStep.getCmd().getId()).get();
+        Assert.assertEquals(ExecutedCmd.Status.SUCCESS, saved.getStatus());
+    }
+
+    @Test
+    public void should_record_metrics_of_cmd_callback() {
+        // init: agent and job
+        Agent agent = agentService.create("hello.agent", null);
+        Job job = prepareJobForRunningStatus(agent);
+        String flowName = job.getContext().get(Variables.FLOW_NAME);
+
+        NodeTree tree = ymlManager.getTree(job);
+        Node firstNode = tree.next(tree.getRoot().getPath());
+
+        long callbacks = meterRegistry.find("flowci.job.callback").timer().count();
+        Timer stepDuration = meterRegistry.find("flowci.job.step.duration").tag("flow", flowName).timer();
+        long steps = Objects.isNull(stepDuration) ? 0 : stepDuration.count();
+        double totalMillis = Objects.isNull(stepDuration) ? 0 : stepDuration.totalTime(TimeUnit.MILLISECONDS);
+
+        // when: first step executed for 2 seconds
+        Date now = new Date();
+        ExecutedCmd executedCmd = new ExecutedCmd(cmdManager.createId(job, firstNode).toString(),
+            firstNode.isAllowFailure());
+        executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+        executedCmd.setStartAt(new Date(now.getTime() - 2000));
+        executedCmd.setFinishAt(now);
+
+        jobService.processCallback(executedCmd);
+
+        // then: callback and step duration of flow are recorded
+        Assert.assertEquals(callbacks + 1, meterRegistry.find("flowci.job.callback").timer().count());
+
+        stepDuration = meterRegistry.find("flowci.job.step.duration").tag("flow", flowName).timer();
+        Assert.assertNotNull(stepDuration);
+        Assert.assertEquals(steps + 1, stepDuration.count());
+        Assert.assertEquals(totalMillis + 2000, stepDuration.totalTime(TimeUnit.MILLISECONDS), 0.1);
+    }
+
     @Test
     public void should_handle_cmd_callback_for_success_status() {
         // init: agent and job
@@ -236,6 +690,66 @@ public class JobServiceTest extends ZookeeperScenario {
         Assert.assertEquals(Status.SUCCESS, job.getStatus());
     }
 
+    @Test
+    public void should_record_timeline_from_core_and_agent_phases() {
+        // init: agent and job
+        Agent agent = agentService.create("hello.agent", null);
+        Job job = prepareJobForRunningStatus(agent);
+
+        NodeTree tree = ymlManager.getTree(job);
+        Node firstNode = tree.next(tree.getRoot().getPath());
+
+        // when: cmd of first node been executed with agent phases
+        Date receivedAt = new Date();
+        ExecutedCmd executedCmd = new ExecutedCmd(cmdManager.createId(job, firstNode).toString(),
+            firstNode.isAllowFailure());
+        executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+        executedCmd.setStartAt(receivedAt);
+        executedCmd.setFinishAt(receivedAt);
+        executedCmd.getTimeline().add(new TimelineEntry(Phase.CMD_RECEIVED, receivedAt, null));
+
+        jobService.processCallback(executedCmd);
+
+        // then: timeline should be recorded in time order with node path
+        job = jobDao.findById(job.getId()).get();
+        List<TimelineEntry> timeline = jobService.getTimeline(job);
+        Assert.assertEquals(5, timeline.size());
+
+        Assert.assertEquals(Phase.CREATED, timeline.get(0).getPhase());
+        Assert.assertEquals(Phase.CMD_RECEIVED, timeline.get(1).getPhase());
+        Assert.assertEquals(firstNode.getPathAsString(), timeline.get(1).getDetail());
+        Assert.assertEquals(Phase.PROCESS_STARTED, timeline.get(2).getPhase());
+        Assert.assertEquals(Phase.FINISHED, timeline.get(3).getPhase());
+        Assert.assertEquals(Phase.CALLBACK_PROCESSED, timeline.get(4).getPhase());
+
+        // then: agent phases are not kept in executed cmd
+        Assert.assertTrue(executedCmdDao.findById(executedCmd.getId()).get().getTimeline().isEmpty());
+    }
+
+    @Test
+    public void should_cap_agent_phases_of_step_in_timeline() {
+        Agent agent = agentService.create("hello.agent", null);
+        Job job = prepareJobForRunningStatus(agent);
+
+        NodeTree tree = ymlManager.getTree(job);
+        Node firstNode = tree.next(tree.getRoot().getPath());
+
+        // when: cmd callback with more agent phases than the cap
+        Date receivedAt = new Date();
+        ExecutedCmd executedCmd = new ExecutedCmd(cmdManager.createId(job, firstNode).toString(),
+            firstNode.isAllowFailure());
+        executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+        for (int i = 0; i < 50; i++) {
+            executedCmd.getTimeline().add(new TimelineEntry(Phase.PLUGIN_LOADED, receivedAt, null));
+        }
+
+        jobService.processCallback(executedCmd);
+
+        // then: created, 10 agent phases and callback processed are recorded
+        List<TimelineEntry> timeline = jobService.getTimeline(jobDao.findById(job.getId()).get());
+        Assert.assertEquals(12, timeline.size());
+    }
+
     @Test
     public void should_handle_cmd_callback_for_failure_status_but_allow_failure() throws IOException {
         // init: agent and job
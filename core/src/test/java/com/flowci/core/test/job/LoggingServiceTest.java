@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.service.LoggingService;
+import com.flowci.core.job.service.StepService;
+import com.flowci.core.test.SpringScenario;
+import com.flowci.domain.Agent;
+import com.flowci.domain.ExecutedCmd;
+import com.flowci.exception.StatusException;
+import com.flowci.util.HttpRangeHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * @author yang
+ */
+public class LoggingServiceTest extends SpringScenario {
+
+    private static final String Content = "line 1\nline 2\nline 3\n";
+
+    @Autowired
+    private JobMockHelper jobMockHelper;
+
+    @Autowired
+    private StepService stepService;
+
+    @Autowired
+    private LoggingService loggingService;
+
+    @Autowired
+    private AgentService agentService;
+
+    private Agent agent;
+
+    private Job job;
+
+    private ExecutedCmd step;
+
+    @Before
+    public void mockJobOnAgent() throws IOException {
+        mockLogin();
+        job = jobMockHelper.createOnAgent(null);
+        agent = agentService.get(job.getAgentId());
+
+        step = stepService.list(job).get(0);
+        step.setLogSize(3L);
+    }
+
+    @After
+    public void deleteLog() throws IOException {
+        if (loggingService.hasLog(step.getId())) {
+            Files.delete(loggingService.getLogPath(job, step.getId()));
+        }
+    }
+
+    @Test
+    public void should_save_uploaded_log_and_read_by_page() throws IOException {
+        // when:
+        loggingService.save(agent, step.getId(), gzip(Content));
+
+        // then:
+        Assert.assertTrue(loggingService.hasLog(step.getId()));
+
+        Page<String> page = loggingService.read(step, PageRequest.of(1, 2));
+        Assert.assertEquals(3, page.getTotalElements());
+        Assert.assertEquals(1, page.getContent().size());
+        Assert.assertEquals("line 3", page.getContent().get(0));
+    }
+
+    @Test
+    public void should_count_lines_as_total_if_log_size_not_reported() throws IOException {
+        step.setLogSize(-1L);
+        loggingService.save(agent, step.getId(), gzip(Content));
+
+        // when:
+        Page<String> page = loggingService.read(step, PageRequest.of(0, 2));
+
+        // then:
+        Assert.assertEquals(3, page.getTotalElements());
+        Assert.assertEquals(2, page.getContent().size());
+        Assert.assertEquals("line 1", page.getContent().get(0));
+        Assert.assertEquals("line 2", page.getContent().get(1));
+    }
+
+    @Test
+    public void should_write_single_range_of_saved_log() throws IOException {
+        loggingService.save(agent, step.getId(), gzip(Content));
+        Path path = loggingService.getLogPath(job, step.getId());
+
+        // when:
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpRangeHelper.write(path, "bytes=7-12", 0, response);
+
+        // then:
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        Assert.assertEquals("bytes 7-12/21", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        Assert.assertEquals("line 2", response.getContentAsString());
+
+        // when: range out of file
+        response = new MockHttpServletResponse();
+        HttpRangeHelper.write(path, "bytes=100-", 0, response);
+
+        // then:
+        Assert.assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus());
+        Assert.assertEquals("bytes */21", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test(expected = StatusException.class)
+    public void should_not_save_log_from_other_agent() throws IOException {
+        Agent other = agentService.create("other.agent", null);
+        loggingService.save(other, step.getId(), gzip(Content));
+    }
+
+    private static InputStream gzip(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.job.event.StepStatusChangeEvent;
+import com.flowci.core.job.manager.RecentLogManager;
+import com.flowci.core.job.util.LogRing;
+import com.flowci.core.test.SpringScenario;
+import com.flowci.domain.ExecutedCmd;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * @author yang
+ */
+public class RecentLogManagerTest extends SpringScenario {
+
+    @Autowired
+    private RecentLogManager recentLogManager;
+
+    @Autowired
+    private ConfigProperties.Logging loggingProperties;
+
+    @Test
+    public void should_keep_most_recent_lines_of_cmd() {
+        int max = loggingProperties.getRecentLines();
+
+        // when:
+        for (int i = 0; i < max + 5; i++) {
+            recentLogManager.append("cmd.id", "line " + i);
+        }
+
+        // then: the oldest lines are removed
+        List<String> snapshot = recentLogManager.snapshot("cmd.id");
+        Assert.assertEquals(max, snapshot.size());
+        Assert.assertEquals("line 5", snapshot.get(0));
+        Assert.assertEquals("line " + (max + 4), snapshot.get(max - 1));
+
+        // then: snapshot is a copy
+        recentLogManager.append("cmd.id", "new line");
+        Assert.assertEquals("line " + (max + 4), snapshot.get(max - 1));
+
+        Assert.assertTrue(recentLogManager.snapshot("other.cmd.id").isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void should_evict_lines_when_step_finished() {
+        recentLogManager.append("finished.cmd.id", "hello");
+
+        ExecutedCmd executedCmd = new ExecutedCmd("finished.cmd.id", false);
+        executedCmd.setStatus(ExecutedCmd.Status.RUNNING);
+
+        ApplicationListener<StepStatusChangeEvent> listener =
+            (ApplicationListener<StepStatusChangeEvent>) recentLogManager;
+
+        // when: step is running
+        listener.onApplicationEvent(new StepStatusChangeEvent(this, null, executedCmd));
+
+        // then: lines are kept
+        Assert.assertEquals(1, recentLogManager.snapshot("finished.cmd.id").size());
+
+        // when: step finished
+        executedCmd.setStatus(ExecutedCmd.Status.SUCCESS);
+        listener.onApplicationEvent(new StepStatusChangeEvent(this, null, executedCmd));
+
+        // then:
+        Assert.assertTrue(recentLogManager.snapshot("finished.cmd.id").isEmpty());
+    }
+
+    @Test
+    public void should_cap_ring_by_num_of_chars() {
+        LogRing ring = new LogRing(10, 10);
+        ring.append("12345");
+        ring.append("678");
+        ring.append("abcd");
+
+        List<String> snapshot = ring.snapshot();
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertEquals("678", snapshot.get(0));
+        Assert.assertEquals("abcd", snapshot.get(1));
+    }
+
+    @Test
+    public void should_ignore_lines_if_ring_is_disabled() {
+        LogRing ring = new LogRing(0, 10);
+        ring.append("12345");
+
+        Assert.assertEquals(0, ring.size());
+        Assert.assertTrue(ring.snapshot().isEmpty());
+    }
+}
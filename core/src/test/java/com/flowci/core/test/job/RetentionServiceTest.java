@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.test.job;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.Yml;
+import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.job.dao.JobArchiveDao;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Job.Status;
+import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.domain.JobQuery;
+import com.flowci.core.job.domain.JobSummaryPage;
+import com.flowci.core.job.service.JobService;
+import com.flowci.core.job.service.RetentionService;
+import com.flowci.core.job.service.StepService;
+import com.flowci.core.test.ZookeeperScenario;
+import com.flowci.domain.VariableMap;
+import com.flowci.exception.NotFoundException;
+import com.flowci.util.StringHelper;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author yang
+ */
+public class RetentionServiceTest extends ZookeeperScenario {
+
+    @Autowired
+    private FlowService flowService;
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private StepService stepService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobArchiveDao jobArchiveDao;
+
+    private Flow flow;
+
+    private Yml yml;
+
+    @Before
+    public void init() throws IOException {
+        mockLogin();
+        flow = flowService.create("hello");
+        yml = flowService.saveYml(flow, StringHelper.toString(load("flow.yml")));
+    }
+
+    @Test
+    public void should_archive_jobs_out_of_hot_window_and_restore_on_request() {
+        flow.setHotJobs(1);
+        flowService.update(flow);
+
+        List<VariableMap> inputs = Lists.newArrayList(VariableMap.EMPTY, VariableMap.EMPTY, VariableMap.EMPTY);
+        List<Job> jobs = jobService.create(flow, yml, Trigger.API, inputs);
+        for (Job job : jobs) {
+            Job saved = jobDao.findByKey(job.getKey());
+            saved.setStatus(Status.SUCCESS);
+            jobDao.save(saved);
+        }
+
+        // when: compact jobs
+        Assert.assertEquals(2, retentionService.compact());
+
+        // then: the older jobs are moved to archive
+        Assert.assertNull(jobDao.findByKey(jobs.get(0).getKey()));
+        Assert.assertNull(jobDao.findByKey(jobs.get(1).getKey()));
+        Assert.assertNotNull(jobDao.findByKey(jobs.get(2).getKey()));
+        Assert.assertEquals(2, jobArchiveDao.count());
+
+        // then: archived job is not restored by get
+        try {
+            jobService.get(flow, jobs.get(0).getBuildNumber());
+            Assert.fail();
+        } catch (NotFoundException ignore) {
+
+        }
+
+        // when: restore archived job
+        Job restored = jobService.restore(flow, jobs.get(0).getBuildNumber());
+
+        // then: job is restored with steps and yml
+        Assert.assertEquals(jobs.get(0).getId(), restored.getId());
+        Assert.assertEquals(Status.SUCCESS, restored.getStatus());
+        Assert.assertEquals(1, stepService.list(restored).size());
+        Assert.assertNotNull(jobService.getYml(restored));
+        Assert.assertEquals(1, jobArchiveDao.count());
+    }
+
+    @Test
+    public void should_list_and_search_archived_jobs_with_hot_jobs() {
+        flow.setHotJobs(1);
+        flowService.update(flow);
+
+        List<VariableMap> inputs = Lists.newArrayList(VariableMap.EMPTY, VariableMap.EMPTY, VariableMap.EMPTY);
+        List<Job> jobs = jobService.create(flow, yml, Trigger.API, inputs);
+        for (Job job : jobs) {
+            Job saved = jobDao.findByKey(job.getKey());
+            saved.setStatus(Status.SUCCESS);
+            jobDao.save(saved);
+        }
+
+        Assert.assertEquals(2, retentionService.compact());
+
+        // when: list summary page by page
+        JobSummaryPage first = jobService.listSummary(flow, null, 2);
+        JobSummaryPage second = jobService.listSummary(flow, first.getNext(), 2);
+
+        // then: archived jobs are listed after the hot job
+        Assert.assertEquals(2, first.getContent().size());
+        Assert.assertEquals(jobs.get(2).getBuildNumber(), first.getContent().get(0).getBuildNumber());
+        Assert.assertEquals(jobs.get(1).getBuildNumber(), first.getContent().get(1).getBuildNumber());
+
+        Assert.assertEquals(1, second.getContent().size());
+        Assert.assertEquals(jobs.get(0).getBuildNumber(), second.getContent().get(0).getBuildNumber());
+        Assert.assertNull(second.getNext());
+
+        // then: archived jobs can be searched by summary fields
+        JobQuery query = new JobQuery();
+        query.setStatus(Status.SUCCESS);
+        Assert.assertEquals(3, jobService.search(flow, query, null, 10).getContent().size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.service.StepService;
+import com.flowci.core.test.SpringScenario;
+import com.flowci.domain.ExecutedCmd;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * @author yang
+ */
+public class StepServiceTest extends SpringScenario {
+
+    private static final String AgentLogs =
+        "{\"content\":[\"line 1\",\"line 2\"],\"totalElements\":2,\"pageable\":{\"pageNumber\":0,\"pageSize\":10}}";
+
+    @Autowired
+    private JobMockHelper jobMockHelper;
+
+    @Autowired
+    private StepService stepService;
+
+    @Autowired
+    private ExecutedCmdDao executedCmdDao;
+
+    private final AtomicInteger agentRequests = new AtomicInteger(0);
+
+    private HttpServer agentServer;
+
+    private Job job;
+
+    private ExecutedCmd step;
+
+    @Before
+    public void mockJobOnAgent() throws IOException {
+        agentServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        agentServer.createContext("/cmd", exchange -> {
+            agentRequests.incrementAndGet();
+
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException ignore) {
+            }
+
+            byte[] body = AgentLogs.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        agentServer.start();
+
+        // init: job on the agent
+        mockLogin();
+        job = jobMockHelper.createOnAgent("http://localhost:" + agentServer.getAddress().getPort());
+
+        step = stepService.list(job).get(0);
+    }
+
+    @After
+    public void stopAgentServer() {
+        agentServer.stop(0);
+    }
+
+    @Test
+    public void should_share_agent_request_and_cache_logs_of_finished_step() throws Throwable {
+        step.setStatus(ExecutedCmd.Status.SUCCESS);
+        executedCmdDao.save(step);
+
+        // when: request the same page concurrently
+        CompletableFuture<Page<String>> first = stepService.logs(job, step.getId(), PageRequest.of(0, 10));
+        CompletableFuture<Page<String>> second = stepService.logs(job, step.getId(), PageRequest.of(0, 10));
+
+        // then: only one request sent to agent
+        Page<String> page = first.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, page.getTotalElements());
+        Assert.assertEquals("line 1", page.getContent().get(0));
+        Assert.assertEquals(page.getContent(), second.get(10, TimeUnit.SECONDS).getContent());
+        Assert.assertEquals(1, agentRequests.get());
+
+        // when: request the page again
+        page = stepService.logs(job, step.getId(), PageRequest.of(0, 10)).get(10, TimeUnit.SECONDS);
+
+        // then: page of finished step is loaded from cache
+        Assert.assertEquals(2, page.getContent().size());
+        Assert.assertEquals(1, agentRequests.get());
+    }
+
+    @Test
+    public void should_not_cache_logs_of_running_step() throws Throwable {
+        step.setStatus(ExecutedCmd.Status.RUNNING);
+        executedCmdDao.save(step);
+
+        stepService.logs(job, step.getId(), PageRequest.of(0, 10)).get(10, TimeUnit.SECONDS);
+        stepService.logs(job, step.getId(), PageRequest.of(0, 10)).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2, agentRequests.get());
+    }
+}
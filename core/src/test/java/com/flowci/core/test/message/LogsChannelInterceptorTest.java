@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.test.message;
+
+import com.flowci.core.config.ConfigProperties;
+import com.flowci.core.message.LogsChannelInterceptor;
+import com.flowci.core.message.LogsChannelInterceptor.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * @author yang
+ */
+public class LogsChannelInterceptorTest {
+
+    private static final String LogsTopic = "/topic/logs";
+
+    private static final String SessionId = "session.id";
+
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+
+    private final MessageChannel channel = (message, timeout) -> sent.add(message);
+
+    private final ConfigProperties.Logging properties = new ConfigProperties.Logging();
+
+    private LogsChannelInterceptor interceptor;
+
+    @Before
+    public void init() {
+        properties.setSessionBufferSize(2);
+        properties.setResyncThreshold(100);
+        properties.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+
+        interceptor = new LogsChannelInterceptor(LogsTopic, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void should_send_one_log_message_at_a_time_per_session() {
+        // when: first message sent
+        Message<?> first = interceptor.preSend(logMessage("first"), channel);
+
+        // then: released, and the next one is buffered while the first is in flight
+        Assert.assertNotNull(first);
+        Assert.assertEquals("first", contentOf(first));
+        Assert.assertNull(interceptor.preSend(logMessage("second"), channel));
+
+        // when: first message handled
+        interceptor.afterMessageHandled(first, channel, null, null);
+
+        // then: the buffered message is sent to channel
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals("second", contentOf(sent.get(0)));
+
+        // released message passes through the interceptor
+        Assert.assertSame(sent.get(0), interceptor.preSend(sent.get(0), channel));
+    }
+
+    @Test
+    public void should_summarize_skipped_lines_when_buffer_is_full() {
+        properties.setOverflowPolicy(OverflowPolicy.SUMMARIZE);
+
+        Message<?> first = interceptor.preSend(logMessage("first"), channel);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertNull(interceptor.preSend(logMessage("line " + i), channel));
+        }
+
+        // when:
+        interceptor.afterMessageHandled(first, channel, null, null);
+
+        // then: summary of 3 dropped lines is sent before the latest lines
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals("3 lines skipped", contentOf(sent.get(0)));
+        Assert.assertEquals(LogsChannelInterceptor.ControlSkipped, controlOf(sent.get(0)));
+
+        interceptor.afterMessageHandled(sent.get(0), channel, null, null);
+        interceptor.afterMessageHandled(sent.get(1), channel, null, null);
+
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals("line 3", contentOf(sent.get(1)));
+        Assert.assertEquals("line 4", contentOf(sent.get(2)));
+    }
+
+    @Test
+    public void should_ask_session_to_resync_when_too_many_lines_dropped() {
+        properties.setResyncThreshold(3);
+
+        Message<?> first = interceptor.preSend(logMessage("first"), channel);
+        for (int i = 0; i < 5; i++) {
+            interceptor.preSend(logMessage("line " + i), channel);
+        }
+
+        // when:
+        interceptor.afterMessageHandled(first, channel, null, null);
+
+        // then: buffered lines are replaced by resync notice
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(LogsChannelInterceptor.ControlResync, controlOf(sent.get(0)));
+
+        interceptor.afterMessageHandled(sent.get(0), channel, null, null);
+        Assert.assertEquals("line 4", contentOf(sent.get(1)));
+    }
+
+    @Test
+    public void should_release_next_message_when_previous_one_not_sent() {
+        Message<?> first = interceptor.preSend(logMessage("first"), channel);
+        Assert.assertNull(interceptor.preSend(logMessage("second"), channel));
+
+        // when: first message is not delivered
+        interceptor.afterSendCompletion(first, channel, false, null);
+
+        // then: the buffered message goes first
+        Message<?> next = interceptor.preSend(logMessage("third"), channel);
+        Assert.assertNotNull(next);
+        Assert.assertEquals("second", contentOf(next));
+
+        interceptor.afterMessageHandled(next, channel, null, null);
+        Assert.assertEquals("third", contentOf(sent.get(0)));
+    }
+
+    private static Message<?> logMessage(String content) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SessionId);
+        accessor.setDestination(LogsTopic + "/cmd.id");
+        return MessageBuilder.createMessage(content.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static String contentOf(Message<?> message) {
+        return new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private static String controlOf(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        return accessor.getFirstNativeHeader(LogsChannelInterceptor.HeaderControl);
+    }
+}
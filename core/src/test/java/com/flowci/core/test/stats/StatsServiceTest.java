@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.core.test.stats;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.stats.domain.StatsItem;
+import com.flowci.core.stats.domain.StatsReport;
+import com.flowci.core.stats.domain.StatsRollup;
+import com.flowci.core.stats.service.StatsService;
+import com.flowci.core.stats.service.StatsServiceImpl;
+import com.flowci.core.test.SpringScenario;
+import com.flowci.exception.ArgumentException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author yang
+ */
+public class StatsServiceTest extends SpringScenario {
+
+    private static final Date DayOne = Date.from(LocalDateTime.of(2018, 10, 1, 10, 0).toInstant(ZoneOffset.UTC));
+
+    private static final Date DayTwo = Date.from(LocalDateTime.of(2018, 10, 2, 10, 0).toInstant(ZoneOffset.UTC));
+
+    @Autowired
+    private FlowService flowService;
+
+    @Autowired
+    private StatsService statsService;
+
+    private Flow flow;
+
+    @Before
+    public void init() {
+        mockLogin();
+        flow = flowService.create("hello");
+    }
+
+    @Test
+    public void should_rollup_job_durations_and_status_per_day() {
+        for (long i = 1; i <= 100; i++) {
+            statsService.add(flow.getId(), StatsRollup.Type.JOB, StatsRollup.JobName, "job-" + i, DayOne,
+                "SUCCESS", true, i * 1000);
+        }
+
+        statsService.add(flow.getId(), StatsRollup.Type.JOB, StatsRollup.JobName, "job-101", DayTwo, "FAILURE",
+            false, 200 * 1000L);
+        statsService.add(flow.getId(), StatsRollup.Type.JOB, StatsRollup.JobName, "job-102", DayTwo, "CANCELLED",
+            false, null);
+
+        StatsReport report = statsService.get(flow, StatsRollup.Type.JOB, StatsRollup.JobName,
+            StatsServiceImpl.toDay(DayOne), StatsServiceImpl.toDay(DayTwo));
+        Assert.assertEquals(2, report.getDays().size());
+
+        StatsItem first = report.getDays().get(0);
+        Assert.assertEquals(20181001, first.getDay().intValue());
+        Assert.assertEquals(100, first.getCount());
+        Assert.assertEquals(1.0, first.getSuccessRate(), 0.0);
+        Assert.assertEquals(50500, first.getAvg().longValue());
+        Assert.assertEquals(50000, first.getP50(), 500);
+        Assert.assertEquals(95000, first.getP95(), 950);
+        Assert.assertEquals(99000, first.getP99(), 990);
+
+        StatsItem second = report.getDays().get(1);
+        Assert.assertEquals(2, second.getCount());
+        Assert.assertEquals(1L, second.getStatuses().get("CANCELLED").longValue());
+        Assert.assertEquals(200000, second.getP50(), 2000);
+
+        StatsItem total = report.getTotal();
+        Assert.assertNull(total.getDay());
+        Assert.assertEquals(102, total.getCount());
+        Assert.assertEquals(100, total.getSuccess());
+        Assert.assertEquals(100L, total.getStatuses().get("SUCCESS").longValue());
+        Assert.assertEquals(1L, total.getStatuses().get("FAILURE").longValue());
+        Assert.assertEquals(100000, total.getP99(), 1000);
+    }
+
+    @Test
+    public void should_rollup_steps_by_node_path() {
+        statsService.add(flow.getId(), StatsRollup.Type.STEP, "root/step-1", "cmd-1", DayOne, "SUCCESS", true,
+            10L);
+        statsService.add(flow.getId(), StatsRollup.Type.STEP, "root/step-2", "cmd-2", DayOne, "EXCEPTION", false,
+            20L);
+
+        int day = StatsServiceImpl.toDay(DayOne);
+        StatsReport report = statsService.get(flow, StatsRollup.Type.STEP, "root/step-2", day, day);
+
+        Assert.assertEquals(1, report.getTotal().getCount());
+        Assert.assertEquals(0.0, report.getTotal().getSuccessRate(), 0.0);
+        Assert.assertEquals(20, report.getTotal().getP50(), 1);
+    }
+
+    @Test
+    public void should_count_redelivered_item_once() {
+        Assert.assertTrue(statsService.add(flow.getId(), StatsRollup.Type.JOB, StatsRollup.JobName, "job-1", DayOne,
+            "SUCCESS", true, 10L));
+        Assert.assertFalse(statsService.add(flow.getId(), StatsRollup.Type.JOB, StatsRollup.JobName, "job-1",
+            DayOne, "SUCCESS", true, 10L));
+
+        int day = StatsServiceImpl.toDay(DayOne);
+        StatsReport report = statsService.get(flow, StatsRollup.Type.JOB, StatsRollup.JobName, day, day);
+
+        Assert.assertEquals(1, report.getTotal().getCount());
+        Assert.assertEquals(1, report.getTotal().getSuccess());
+    }
+
+    @Test(expected = ArgumentException.class)
+    public void should_throw_exception_if_range_too_large() {
+        statsService.get(flow, StatsRollup.Type.JOB, StatsRollup.JobName, 20180101, 20181231);
+    }
+}
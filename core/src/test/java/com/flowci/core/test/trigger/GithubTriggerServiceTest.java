@@ -33,7 +33,11 @@ import com.flowci.core.trigger.domain.GitTrigger.GitEvent;
 import com.flowci.core.trigger.domain.GitTrigger.GitSource;
 import com.flowci.core.trigger.service.GitTriggerService;
 import com.flowci.domain.VariableMap;
+import com.flowci.util.StringHelper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -147,6 +151,18 @@ public class GithubTriggerServiceTest extends SpringScenario {
         Assert.assertEquals("yang-guo-2016", trigger.getSender().getUsername());
     }
 
+    @Test
+    public void should_parse_pr_synchronize_event_as_pr_open() throws IOException {
+        String content = StringHelper.toString(load("github/webhook_pr_open.json"))
+            .replace("\"action\": \"opened\"", "\"action\": \"synchronize\"");
+
+        InputStream stream = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        GitPrTrigger trigger = gitHubTriggerService.onPullRequest(stream);
+
+        Assert.assertEquals(GitEvent.PR_OPEN, trigger.getEvent());
+        Assert.assertEquals("2", trigger.getNumber());
+    }
+
     @Test
     public void should_parse_pr_close_event() {
         InputStream stream = load("github/webhook_pr_close.json");
@@ -16,15 +16,25 @@
 
 package com.flowci.core.test.trigger;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.event.JobCreatedEvent;
 import com.flowci.core.test.MvcMockHelper;
 import com.flowci.core.test.SpringScenario;
 import com.flowci.core.test.flow.FlowMockHelper;
+import com.flowci.core.trigger.domain.GitTrigger;
 import com.flowci.domain.ObjectWrapper;
+import com.flowci.util.HashingHelper;
 import com.flowci.util.StringHelper;
+import com.google.common.collect.Lists;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
@@ -32,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 
 /**
@@ -45,6 +56,9 @@ public class WebhookControllerTest extends SpringScenario {
     @Autowired
     private MvcMockHelper mvcMockHelper;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Before
     public void login() {
         mockLogin();
@@ -63,11 +77,11 @@ public class WebhookControllerTest extends SpringScenario {
             waitForJobCreated.countDown();
         });
 
-        mvcMockHelper.expectSuccessAndReturnString(
+        mvcMockHelper.expectStatusAndReturnString(
             post("/webhooks/github-test")
                 .header("X-GitHub-Event", "push")
                 .contentType(MediaType.APPLICATION_JSON)
-                .content(payload));
+                .content(payload), HttpStatus.ACCEPTED);
 
         Assert.assertTrue(waitForJobCreated.await(10, TimeUnit.SECONDS));
         Assert.assertNotNull(jobCreated.getValue());
@@ -86,13 +100,90 @@ public class WebhookControllerTest extends SpringScenario {
             waitForJobCreated.countDown();
         });
 
-        mvcMockHelper.expectSuccessAndReturnString(
+        mvcMockHelper.expectStatusAndReturnString(
             post("/webhooks/github-test")
                 .header("X-GitHub-Event", "push")
                 .contentType(MediaType.APPLICATION_JSON)
-                .content(payload));
+                .content(payload), HttpStatus.ACCEPTED);
 
         Assert.assertFalse(waitForJobCreated.await(1, TimeUnit.SECONDS));
         Assert.assertNull(jobCreated.getValue());
     }
+
+    @Test
+    public void should_start_jobs_of_subscribed_flows_from_repository_webhook() throws Exception {
+        String yml = StringHelper.toString(load("flow.yml"));
+        String payload = StringHelper.toString(load("github/webhook_push.json"));
+        String secret = "repo-secret";
+
+        // init: two flows subscribe to the repository with the secret, one with other secret and one not
+        Map<String, String> flowIds = new HashMap<>();
+        for (String name : Lists.newArrayList("repo-flow-1", "repo-flow-2", "repo-flow-3", "repo-flow-4")) {
+            flowIds.put(name, flowMockHelper.crate(name, yml).getId());
+            if (name.equals("repo-flow-4")) {
+                continue;
+            }
+
+            Map<String, String> variables = new HashMap<>();
+            variables.put(GitTrigger.Variables.GIT_URL, "git@github.com:yang-guo-2016/Test.git");
+            variables.put(GitTrigger.Variables.GIT_WEBHOOK_SECRET, name.equals("repo-flow-3") ? "other" : secret);
+
+            mvcMockHelper.expectSuccessAndReturnString(
+                patch("/flows/" + name + "/variables")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsBytes(variables)));
+        }
+
+        Set<String> created = ConcurrentHashMap.newKeySet();
+        CountDownLatch waitForJobCreated = new CountDownLatch(2);
+        applicationEventMulticaster.addApplicationListener((ApplicationListener<JobCreatedEvent>) event -> {
+            created.add(event.getJob().getFlowId());
+            waitForJobCreated.countDown();
+        });
+
+        // when: send signed push event to repository webhook
+        String signature = "sha1=" + HashingHelper.hmacSha1(secret, payload.getBytes(StandardCharsets.UTF_8));
+        mvcMockHelper.expectStatusAndReturnString(
+            post("/webhooks")
+                .header("X-GitHub-Event", "push")
+                .header("X-Hub-Signature", signature)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload), HttpStatus.ACCEPTED);
+
+        // then: jobs are created for flows which verify the signature only
+        Assert.assertTrue(waitForJobCreated.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, created.size());
+        Assert.assertTrue(created.contains(flowIds.get("repo-flow-1")));
+        Assert.assertTrue(created.contains(flowIds.get("repo-flow-2")));
+    }
+
+    @Test
+    public void should_ignore_redelivered_github_event() throws Exception {
+        String yml = StringHelper.toString(load("flow.yml"));
+        flowMockHelper.crate("github-test", yml);
+        String payload = StringHelper.toString(load("github/webhook_push.json"));
+
+        CountDownLatch waitForJobCreated = new CountDownLatch(2);
+        applicationEventMulticaster.addApplicationListener(
+            (ApplicationListener<JobCreatedEvent>) event -> waitForJobCreated.countDown());
+
+        // when: send the same delivery twice
+        mvcMockHelper.expectStatusAndReturnString(
+            post("/webhooks/github-test")
+                .header("X-GitHub-Event", "push")
+                .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload), HttpStatus.ACCEPTED);
+
+        mvcMockHelper.expectStatusAndReturnString(
+            post("/webhooks/github-test")
+                .header("X-GitHub-Event", "push")
+                .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload), HttpStatus.OK);
+
+        // then: only one job is created
+        Assert.assertFalse(waitForJobCreated.await(3, TimeUnit.SECONDS));
+        Assert.assertEquals(1, waitForJobCreated.getCount());
+    }
 }
@@ -20,6 +20,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Strings;
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -35,6 +38,16 @@ public class Agent implements Serializable {
 
     public final static String PATH_SLASH = "/";
 
+    /**
+     * Splitter of zk node data of agent, ex: IDLE#4 for status and num of slots
+     */
+    public final static char DATA_SPLITTER = '#';
+
+    /**
+     * Key of slot which locked without job id
+     */
+    public final static String NO_JOB = "-";
+
     public enum Status {
 
         OFFLINE,
@@ -48,10 +61,44 @@ public class Agent implements Serializable {
         }
 
         public static Status fromBytes(byte[] bytes) {
-            return Status.valueOf(new String(bytes));
+            String data = new String(bytes);
+            int index = data.indexOf(DATA_SPLITTER);
+            return Status.valueOf(index < 0 ? data : data.substring(0, index));
         }
     }
 
+    /**
+     * Zk node data of agent with status and num of slots
+     */
+    public static byte[] toNodeData(Status status, Integer slots) {
+        return (status.toString() + DATA_SPLITTER + slots).getBytes();
+    }
+
+    /**
+     * Get num of slots from zk node data, it's 1 if not advertised
+     */
+    public static Integer slotsFromNodeData(byte[] bytes) {
+        String data = new String(bytes);
+        int index = data.indexOf(DATA_SPLITTER);
+
+        if (index < 0) {
+            return 1;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(data.substring(index + 1)));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Key of job in slots
+     */
+    public static String slotKey(String jobId) {
+        return Objects.isNull(jobId) ? NO_JOB : jobId;
+    }
+
     private String id;
 
     private String name;
@@ -64,8 +111,21 @@ public class Agent implements Serializable {
 
     private Status status = Status.OFFLINE;
 
+    /**
+     * The latest locked job id
+     */
     private String jobId;
 
+    /**
+     * Num of cmd execution slots advertised by agent
+     */
+    private Integer slots = 1;
+
+    /**
+     * Slot index by locked job id, the agent is busy when all slots are locked
+     */
+    private Map<String, Integer> jobSlots = new HashMap<>();
+
     public Agent(String name) {
         this.name = name;
     }
@@ -100,6 +160,27 @@ public class Agent implements Serializable {
         return !isOffline();
     }
 
+    /**
+     * Get slot index of locked job, 0 if the job is not locked on agent
+     */
+    @JsonIgnore
+    public Integer getSlot(String jobId) {
+        return jobSlots.getOrDefault(slotKey(jobId), 0);
+    }
+
+    /**
+     * Get the lowest free slot index, -1 if all slots are locked
+     */
+    @JsonIgnore
+    public int getFreeSlot() {
+        for (int i = 0; i < slots; i++) {
+            if (!jobSlots.containsValue(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @JsonIgnore
     public String getQueueName() {
         return "queue.agent." + id;
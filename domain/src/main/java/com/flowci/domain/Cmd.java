@@ -44,6 +44,11 @@ public class Cmd extends CmdBase {
 
     private String workDir;
 
+    /**
+     * Execution slot on agent, cmds of the same job are executed in the same slot
+     */
+    private Integer slot = 0;
+
     /**
      * Cmd timeout in seconds
      */
@@ -59,6 +64,17 @@ public class Cmd extends CmdBase {
     @NonNull
     private Set<String> envFilters = Collections.emptySet();
 
+    /**
+     * Steps to run for PLAN cmd, starts from the first one
+     */
+    @NonNull
+    private List<PlanStep> plan = Collections.emptyList();
+
+    /**
+     * It's the last cmd of job, the resources of job on agent can be released after it
+     */
+    private Boolean lastOfJob = Boolean.FALSE;
+
     public Cmd(String id, CmdType type) {
         setId(id);
         this.type = type;
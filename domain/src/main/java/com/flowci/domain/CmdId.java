@@ -14,7 +14,7 @@
  * limitations under the License.
  */
 
-package com.flowci.core.job.domain;
+package com.flowci.domain;
 
 import java.io.Serializable;
 import java.text.MessageFormat;
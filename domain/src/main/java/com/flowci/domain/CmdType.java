@@ -26,6 +26,11 @@ public enum CmdType {
      */
     SHELL,
 
+    /**
+     * Execute consecutive shell cmds of job plan
+     */
+    PLAN,
+
     /**
      * Kill running shell
      */
@@ -27,6 +27,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableSet;
 import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import lombok.Data;
@@ -121,6 +123,11 @@ public class ExecutedCmd extends CmdBase {
      */
     private Long logSize = -1L;
 
+    /**
+     * Phases recorded by agent before the process started, ex: cmd received and plugin loaded
+     */
+    private List<TimelineEntry> timeline = new LinkedList<>();
+
     public ExecutedCmd(String id, boolean allowFailure) {
         setId(id);
         setAllowFailure(allowFailure);
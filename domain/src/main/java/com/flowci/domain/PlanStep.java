@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.domain;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Step of the job plan shipped to agent, the agent executes the step cmd and moves to the next step
+ * on success without waiting for core
+ *
+ * @author yang
+ */
+@Data
+@NoArgsConstructor
+public class PlanStep implements Serializable {
+
+    /**
+     * Index of next step when there is no more step to run on agent
+     */
+    public static final int END = -1;
+
+    /**
+     * Shell cmd of step, the inputs are the job context expected at the step
+     */
+    @NonNull
+    private Cmd cmd;
+
+    /**
+     * Keys of step environments, which cannot be overwritten by outputs of previous steps
+     */
+    @NonNull
+    private Set<String> environments = Collections.emptySet();
+
+    /**
+     * Index of next step in plan if the step is success
+     */
+    private int onSuccess = END;
+
+    public PlanStep(Cmd cmd, Set<String> environments) {
+        this.cmd = cmd;
+        this.environments = environments;
+    }
+}
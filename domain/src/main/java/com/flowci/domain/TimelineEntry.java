@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowci.domain;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Timestamped phase transition of job, recorded by core and agent
+ *
+ * @author yang
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public final class TimelineEntry implements Serializable {
+
+    public static TimelineEntry of(Phase phase, String detail) {
+        return new TimelineEntry(phase, new Date(), detail);
+    }
+
+    public enum Phase {
+
+        /**
+         * Job created on core
+         */
+        CREATED,
+
+        /**
+         * Job put to job queue, it will be recorded again on retry
+         */
+        QUEUED,
+
+        /**
+         * Job been put back to job queue since max running jobs of flow reached
+         */
+        DEFERRED,
+
+        /**
+         * Try to lock an agent for job, detail is agent id and result
+         */
+        LOCK_ATTEMPT,
+
+        /**
+         * Cmd of step been sent to agent, detail is node path
+         */
+        DISPATCHED,
+
+        /**
+         * Cmd received by agent, detail is node path filled by core
+         */
+        CMD_RECEIVED,
+
+        /**
+         * Plugin of cmd been installed or updated on agent, detail is plugin name
+         */
+        PLUGIN_LOADED,
+
+        /**
+         * Shell process started on agent, detail is node path
+         */
+        PROCESS_STARTED,
+
+        /**
+         * Shell process finished on agent, detail is node path
+         */
+        FINISHED,
+
+        /**
+         * Executed cmd callback been handled on core, detail is node path
+         */
+        CALLBACK_PROCESSED
+    }
+
+    private Phase phase;
+
+    private Date at;
+
+    private String detail;
+}
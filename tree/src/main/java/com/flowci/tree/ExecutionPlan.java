@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree;
+
+import com.flowci.domain.VariableMap;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable execution plan compiled from NodeTree, steps are kept in a flat array by node id
+ * with precomputed success and failure successors.
+ *
+ * It holds nothing but strings and primitives, so it's safe to be shared between threads,
+ * cached and serialized.
+ *
+ * @author yang
+ */
+@EqualsAndHashCode(of = {"steps"})
+public final class ExecutionPlan implements Serializable {
+
+    /**
+     * Successor id of the last step
+     */
+    public final static int End = -1;
+
+    public static ExecutionPlan compile(NodeTree tree) {
+        return new ExecutionPlan(tree);
+    }
+
+    private final Step[] steps;
+
+    private final Map<String, Integer> ids;
+
+    /**
+     * Regular steps in execution order, root is excluded
+     */
+    @Getter
+    private final List<Step> ordered;
+
+    private ExecutionPlan(NodeTree tree) {
+        int size = tree.getOrdered().size() + 1;
+        ImmutableMap.Builder<String, Integer> idsBuilder = ImmutableMap.builder();
+
+        steps = new Step[size];
+        for (int id = 0; id < size; id++) {
+            Node node = tree.get(id);
+            Node next = tree.next(id);
+            Node nextFinal = tree.nextFinal(id);
+
+            int onSuccess = Objects.isNull(next) ? End : tree.id(next);
+            int onFailure = Objects.isNull(nextFinal) ? End : tree.id(nextFinal);
+
+            steps[id] = new Step(id, node, mergeEnvs(tree.getRoot(), node), onSuccess, onFailure);
+            idsBuilder.put(node.getPathAsString(), id);
+        }
+
+        ids = idsBuilder.build();
+        ordered = ImmutableList.copyOf(steps).subList(1, size);
+    }
+
+    public Step root() {
+        return steps[0];
+    }
+
+    public Step get(int id) {
+        if (id < 0 || id >= steps.length) {
+            throw new IllegalArgumentException("The step id doesn't existed");
+        }
+        return steps[id];
+    }
+
+    /**
+     * Get step from node path string
+     */
+    public Step get(String path) {
+        return steps[id(path)];
+    }
+
+    public int id(String path) {
+        Integer id = ids.get(path);
+
+        if (Objects.isNull(id)) {
+            throw new IllegalArgumentException("The node path doesn't existed");
+        }
+
+        return id;
+    }
+
+    /**
+     * Get next step after current step finished, null if no more steps
+     */
+    public Step next(Step current, boolean isSuccess) {
+        int nextId = isSuccess ? current.onSuccess : current.onFailure;
+        return nextId == End ? null : steps[nextId];
+    }
+
+    public int size() {
+        return ordered.size();
+    }
+
+    /**
+     * Merge envs from ancestors to the node, node envs has top priority.
+     * The root envs are excluded since they have been applied to the job context
+     */
+    private static Map<String, String> mergeEnvs(Node root, Node node) {
+        if (node == root) {
+            return Collections.emptyMap();
+        }
+
+        VariableMap merged = new VariableMap();
+        mergeEnvs(root, node, merged);
+        return Collections.unmodifiableMap(merged);
+    }
+
+    private static void mergeEnvs(Node root, Node node, VariableMap merged) {
+        Node parent = node.getParent();
+        if (!Objects.isNull(parent) && parent != root) {
+            mergeEnvs(root, parent, merged);
+        }
+        merged.merge(node.getEnvironments());
+    }
+
+    @Getter
+    @ToString(of = {"id", "path"})
+    @EqualsAndHashCode(of = {"path", "onSuccess", "onFailure"})
+    public static final class Step implements Serializable {
+
+        private final int id;
+
+        private final String name;
+
+        private final String path;
+
+        private final String before;
+
+        private final String script;
+
+        private final String plugin;
+
+        private final Set<String> exports;
+
+        private final Map<String, String> environments;
+
+        private final boolean allowFailure;
+
+        private final boolean tail;
+
+        @Getter(AccessLevel.NONE)
+        private final int onSuccess;
+
+        @Getter(AccessLevel.NONE)
+        private final int onFailure;
+
+        private Step(int id, Node node, Map<String, String> environments, int onSuccess, int onFailure) {
+            this.id = id;
+            this.name = node.getName();
+            this.path = node.getPathAsString();
+            this.before = node.getBefore();
+            this.script = node.getScript();
+            this.plugin = node.getPlugin();
+            this.exports = Collections.unmodifiableSet(new HashSet<>(node.getExports()));
+            this.environments = environments;
+            this.allowFailure = node.isAllowFailure();
+            this.tail = node.isTail();
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        public boolean hasPlugin() {
+            return !Strings.isNullOrEmpty(plugin);
+        }
+
+        public boolean hasBefore() {
+            return !Strings.isNullOrEmpty(before);
+        }
+
+        public boolean hasExports() {
+            return !exports.isEmpty();
+        }
+
+        /**
+         * No more step after it whatever the result is
+         */
+        public boolean isLast() {
+            return onSuccess == End && onFailure == End;
+        }
+    }
+}
@@ -17,13 +17,16 @@
 package com.flowci.tree;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.regex.Pattern;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 /**
- * Git Trigger Condition
+ * Git Trigger Condition, the regex of branches and tags are compiled on first match
  *
  * @author yang
  */
@@ -41,6 +44,24 @@ public class Filter implements Serializable {
      */
     private List<String> tags = new LinkedList<>();
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Compiled branchPatterns;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Compiled tagPatterns;
+
+    public void setBranches(List<String> branches) {
+        this.branches = new LinkedList<>(branches);
+        this.branchPatterns = null;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = new LinkedList<>(tags);
+        this.tagPatterns = null;
+    }
+
     public boolean available() {
         return !branches.isEmpty() || !tags.isEmpty();
     }
@@ -50,13 +71,12 @@ public class Filter implements Serializable {
             return true;
         }
 
-        for (String re : branches) {
-            if (branch.matches(re)) {
-                return true;
-            }
+        Compiled compiled = branchPatterns;
+        if (compiled == null || !compiled.isCompiledFrom(branches)) {
+            branchPatterns = compiled = new Compiled(branches);
         }
 
-        return false;
+        return isMatch(compiled.patterns, branch);
     }
 
     public boolean isMatchTag(String tag) {
@@ -64,12 +84,44 @@ public class Filter implements Serializable {
             return true;
         }
 
-        for (String re : tags) {
-            if (tag.matches(re)) {
+        Compiled compiled = tagPatterns;
+        if (compiled == null || !compiled.isCompiledFrom(tags)) {
+            tagPatterns = compiled = new Compiled(tags);
+        }
+
+        return isMatch(compiled.patterns, tag);
+    }
+
+    private static boolean isMatch(List<Pattern> patterns, String value) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(value).matches()) {
                 return true;
             }
         }
 
         return false;
     }
+
+    /**
+     * Patterns with a copy of the regexes compiled from, the list could be changed in place by getter
+     */
+    private static final class Compiled {
+
+        private final List<String> regexes;
+
+        private final List<Pattern> patterns;
+
+        Compiled(List<String> regexes) {
+            this.regexes = new ArrayList<>(regexes);
+            this.patterns = new ArrayList<>(regexes.size());
+
+            for (String re : this.regexes) {
+                patterns.add(Pattern.compile(re));
+            }
+        }
+
+        boolean isCompiledFrom(List<String> source) {
+            return regexes.equals(source);
+        }
+    }
 }
@@ -20,9 +20,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.flowci.domain.VariableMap;
 import com.google.common.base.Strings;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -62,6 +65,18 @@ public class Node implements Serializable {
      */
     private Filter filter = new Filter();
 
+    /**
+     * Env name with list of values, a job will be created for each combination of values
+     */
+    @NonNull
+    private Map<String, List<String>> matrix = new LinkedHashMap<>();
+
+    /**
+     * Cancel older builds of the same git ref
+     */
+    @NonNull
+    private AutoCancel autoCancel = AutoCancel.NONE;
+
     /**
      * Unix cron expression
      */
@@ -135,4 +150,38 @@ public class Node implements Serializable {
     public boolean hasCron() {
         return !Strings.isNullOrEmpty(cron);
     }
+
+    @JsonIgnore
+    public boolean hasMatrix() {
+        return matrix != null && !matrix.isEmpty();
+    }
+
+    /**
+     * Expand env matrix to the list of all value combinations,
+     * a single empty variable map is returned if matrix not defined
+     */
+    public List<VariableMap> expandMatrix() {
+        List<VariableMap> combinations = new ArrayList<>();
+        combinations.add(new VariableMap());
+
+        if (!hasMatrix()) {
+            return combinations;
+        }
+
+        for (Map.Entry<String, List<String>> entry : matrix.entrySet()) {
+            List<VariableMap> expanded = new ArrayList<>(combinations.size() * entry.getValue().size());
+
+            for (VariableMap combination : combinations) {
+                for (String value : entry.getValue()) {
+                    VariableMap copy = new VariableMap(combination);
+                    copy.putString(entry.getKey(), value);
+                    expanded.add(copy);
+                }
+            }
+
+            combinations = expanded;
+        }
+
+        return combinations;
+    }
 }
@@ -116,10 +116,12 @@ public final class NodePath implements Serializable {
         pathInStr = builder.deleteCharAt(builder.length() - 1).toString();
     }
 
+    /**
+     * Create parent path, the instance is not changed since the paths are shared by node tree
+     */
     public NodePath parent() {
         if ((paths.size() - 1) >= 0) {
-            paths.remove(paths.size() - 1);
-            return new NodePath(paths);
+            return new NodePath(paths.subList(0, paths.size() - 1));
         }
         return null;
     }
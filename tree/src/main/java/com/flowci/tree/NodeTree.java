@@ -16,7 +16,6 @@
 
 package com.flowci.tree;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -27,12 +26,22 @@ import java.util.Objects;
 import lombok.Getter;
 
 /**
+ * Node tree with dense integer id for each node, the root id is 0 and the
+ * regular nodes are numbered by execution order from 1.
+ *
+ * The node path instances of the tree are canonical, which can be obtained by
+ * path string from 'intern' instead of parsing by NodePath.create.
+ *
  * @author yang
  */
 public class NodeTree {
 
     private final static int DEFAULT_SIZE = 20;
 
+    private final static int RootId = 0;
+
+    private final static int NoneId = -1;
+
     /**
      * Create node tree from Node object
      */
@@ -40,7 +49,10 @@ public class NodeTree {
         return new NodeTree(root);
     }
 
-    private final Map<NodePath, NodeWithIndex> cached = new HashMap<>(DEFAULT_SIZE);
+    /**
+     * Node id by path string
+     */
+    private final Map<String, Integer> ids = new HashMap<>(DEFAULT_SIZE);
 
     @Getter
     private final List<Node> ordered = new ArrayList<>(DEFAULT_SIZE);
@@ -48,6 +60,16 @@ public class NodeTree {
     @Getter
     private Node root;
 
+    /**
+     * Node by id
+     */
+    private Node[] nodes;
+
+    /**
+     * Id of next final node by node id
+     */
+    private int[] nextFinals;
+
     public NodeTree(Node root) {
         this.root = root;
 
@@ -55,92 +77,109 @@ public class NodeTree {
         ordered.remove(root);
 
         moveFinalNodes();
-        buildCacheWithIndex();
+        buildIds();
     }
 
     /**
-     * Get previous Node instance from path
+     * Get canonical NodePath instance of the tree from path string
      */
-    public Node prev(NodePath path) {
-        NodeWithIndex nodeWithIndex = getWithIndex(path);
+    public NodePath intern(String path) {
+        return nodes[id(path)].getPath();
+    }
 
-        if (nodeWithIndex.node.equals(root)) {
-            return null;
+    /**
+     * Get node id from path string
+     */
+    public int id(String path) {
+        Integer id = ids.get(path);
+
+        if (Objects.isNull(id)) {
+            throw new IllegalArgumentException("The node path doesn't existed");
         }
 
-        int prevIndex = nodeWithIndex.index - 1;
+        return id;
+    }
+
+    public int id(NodePath path) {
+        return id(path.getPathInStr());
+    }
+
+    public int id(Node node) {
+        return id(node.getPathAsString());
+    }
+
+    /**
+     * Get previous Node instance from path
+     */
+    public Node prev(NodePath path) {
+        return prev(id(path));
+    }
 
-        if (prevIndex < 0) {
+    public Node prev(int id) {
+        int prevId = checkId(id) - 1;
+
+        // no previous node of root and first node
+        if (prevId <= RootId) {
             return null;
         }
 
-        return ordered.get(prevIndex);
+        return nodes[prevId];
     }
 
     /**
      * Get next Node instance from path
      */
     public Node next(NodePath path) {
-        NodeWithIndex nodeWithIndex = getWithIndex(path);
+        return next(id(path));
+    }
 
-        int nextIndex = nodeWithIndex.index + 1;
+    public Node next(int id) {
+        int nextId = checkId(id) + 1;
 
         // next is out of range
-        if (nextIndex > (ordered.size() - 1)) {
+        if (nextId >= nodes.length) {
             return null;
         }
 
-        return ordered.get(nextIndex);
+        return nodes[nextId];
     }
 
     /**
      * Get next final node instance from path
      */
     public Node nextFinal(NodePath path) {
-        NodeWithIndex nodeWithIndex = getWithIndex(path);
-
-        if (nodeWithIndex.node.isTail()) {
-            return next(path);
-        }
-
-        int nextIndex = nodeWithIndex.index + 1;
-        if (nextIndex > (ordered.size() - 1)) {
-            return null;
-        }
-
-        for (int i = nextIndex; i < ordered.size(); i++) {
-            Node node = ordered.get(i);
-            if (node.isTail()) {
-                return node;
-            }
-        }
+        return nextFinal(id(path));
+    }
 
-        return null;
+    public Node nextFinal(int id) {
+        int nextId = nextFinals[checkId(id)];
+        return nextId == NoneId ? null : nodes[nextId];
     }
 
     /**
      * Get parent Node instance from path
      */
     public Node parent(NodePath path) {
-        return getWithIndex(path).node.getParent();
+        return get(path).getParent();
     }
 
     public Node get(NodePath path) {
-        return getWithIndex(path).node;
+        return nodes[id(path)];
+    }
+
+    public Node get(int id) {
+        return nodes[checkId(id)];
     }
 
     public String toYml() {
         return YmlParser.parse(this.root);
     }
 
-    private NodeWithIndex getWithIndex(NodePath path) {
-        NodeWithIndex nodeWithIndex = cached.get(path);
-
-        if (Objects.isNull(nodeWithIndex)) {
-            throw new IllegalArgumentException("The node path doesn't existed");
+    private int checkId(int id) {
+        if (id < RootId || id >= nodes.length) {
+            throw new IllegalArgumentException("The node id doesn't existed");
         }
-
-        return nodeWithIndex;
+        return id;
     }
 
     /**
@@ -164,14 +203,32 @@ public class NodeTree {
         }
     }
 
-    private void buildCacheWithIndex() {
+    private void buildIds() {
+        nodes = new Node[ordered.size() + 1];
+        nodes[RootId] = root;
+        ids.put(root.getPathAsString(), RootId);
+
         for (int i = 0; i < ordered.size(); i++) {
             Node node = ordered.get(i);
-            cached.put(node.getPath(), new NodeWithIndex(node, i));
+            nodes[i + 1] = node;
+            ids.put(node.getPathAsString(), i + 1);
         }
 
-        // set root index to -1
-        cached.put(root.getPath(), new NodeWithIndex(root, -1));
+        // the next final of tail node is the next node, otherwise is the first tail node after it
+        nextFinals = new int[nodes.length];
+        int firstTail = NoneId;
+
+        for (int id = nodes.length - 1; id >= RootId; id--) {
+            if (id > RootId && nodes[id].isTail()) {
+                nextFinals[id] = id + 1 < nodes.length ? id + 1 : NoneId;
+            } else {
+                nextFinals[id] = firstTail;
+            }
+
+            if (id > RootId && nodes[id].isTail()) {
+                firstTail = id;
+            }
+        }
     }
 
     /**
@@ -186,16 +243,4 @@ public class NodeTree {
 
         ordered.add(root);
     }
-
-    private class NodeWithIndex implements Serializable {
-
-        Node node;
-
-        int index;
-
-        NodeWithIndex(Node node, int index) {
-            this.node = node;
-            this.index = index;
-        }
-    }
 }
@@ -41,12 +41,14 @@ public class YmlParser {
         .put("envs", 2)
         .put("filter", 3)
         .put("selector", 4)
-        .put("allow_failure", 5)
-        .put("tail", 6)
-        .put("plugin", 7)
-        .put("before", 8)
-        .put("script", 9)
-        .put("steps", 11)
+        .put("auto_cancel", 5)
+        .put("allow_failure", 6)
+        .put("tail", 7)
+        .put("plugin", 8)
+        .put("before", 9)
+        .put("script", 10)
+        .put("matrix", 11)
+        .put("steps", 12)
         .build();
 
     /**
@@ -16,11 +16,18 @@
 
 package com.flowci.tree.yml;
 
+import com.flowci.exception.YmlException;
+import com.flowci.tree.AutoCancel;
 import com.flowci.tree.Filter;
 import com.flowci.tree.Node;
 import com.flowci.tree.Selector;
+import com.google.common.base.Strings;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
@@ -36,17 +43,24 @@ public class FlowNode extends YmlNode {
 
     private String cron;
 
+    private String auto_cancel;
+
     @NonNull
     private Selector selector = new Selector();
 
     @NonNull
     private Filter filter = new Filter();
 
+    @NonNull
+    private Map<String, List<String>> matrix = new LinkedHashMap<>();
+
     @NonNull
     private List<StepNode> steps = new LinkedList<>();
 
     public FlowNode(Node node) {
         setEnvs(node.getEnvironments());
+        setMatrix(node.getMatrix());
+        setAuto_cancel(node.getAutoCancel() == AutoCancel.NONE ? null : node.getAutoCancel().name().toLowerCase());
 
         // set children
         for (Node child : node.getChildren()) {
@@ -61,10 +75,47 @@ public class FlowNode extends YmlNode {
         node.setSelector(selector);
         node.setFilter(filter);
         node.setEnvironments(getVariableMap());
+        node.setMatrix(toMatrix());
+        node.setAutoCancel(toAutoCancel());
         setupChildren(node);
         return node;
     }
 
+    private AutoCancel toAutoCancel() {
+        if (Strings.isNullOrEmpty(auto_cancel)) {
+            return AutoCancel.NONE;
+        }
+
+        try {
+            return AutoCancel.valueOf(auto_cancel.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new YmlException("Unsupported auto_cancel value: {0}", auto_cancel);
+        }
+    }
+
+    /**
+     * Scalar values of matrix such as numbers are loaded as they are, convert them to string
+     */
+    private Map<String, List<String>> toMatrix() {
+        Map<String, List<String>> converted = new LinkedHashMap<>(matrix.size());
+
+        for (Map.Entry<String, List<String>> entry : matrix.entrySet()) {
+            List<?> values = entry.getValue();
+            if (Objects.isNull(values)) {
+                throw new YmlException("Values of matrix {0} are required", entry.getKey());
+            }
+
+            List<String> strings = new ArrayList<>(values.size());
+            for (Object value : values) {
+                strings.add(String.valueOf(value));
+            }
+
+            converted.put(entry.getKey(), strings);
+        }
+
+        return converted;
+    }
+
     private void setupChildren(Node root) {
         int index = 1;
         for (StepNode child : steps) {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree.test;
+
+import com.flowci.tree.ExecutionPlan;
+import com.flowci.tree.ExecutionPlan.Step;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.YmlParser;
+import com.google.common.io.Files;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ExecutionPlanTest {
+
+    private ExecutionPlan plan;
+
+    @Before
+    public void init() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("flow-with-final.yml");
+        String content = Files.toString(new File(resource.getFile()), Charset.forName("UTF-8"));
+        plan = ExecutionPlan.compile(NodeTree.create(YmlParser.load("default", content)));
+    }
+
+    @Test
+    public void should_compile_steps_in_execution_order() {
+        Assert.assertEquals(3, plan.size());
+        Assert.assertEquals("root/step-1", plan.getOrdered().get(0).getPath());
+        Assert.assertEquals("root/step2", plan.getOrdered().get(1).getPath());
+        Assert.assertEquals("root/step3", plan.getOrdered().get(2).getPath());
+
+        Step first = plan.get("root/step-1");
+        Assert.assertEquals(1, first.getId());
+        Assert.assertTrue(first.hasBefore());
+        Assert.assertTrue(first.isAllowFailure());
+        Assert.assertEquals(2, first.getExports().size());
+        Assert.assertEquals("echo step", first.getEnvironments().get("FLOW_WORKSPACE"));
+
+        // root envs are not merged into step since they are applied to job context
+        Assert.assertTrue(plan.root().getEnvironments().isEmpty());
+        Assert.assertTrue(plan.get("root/step2").getEnvironments().isEmpty());
+    }
+
+    @Test
+    public void should_get_precomputed_successors() {
+        Step first = plan.next(plan.root(), true);
+        Assert.assertEquals("step-1", first.getName());
+
+        // then: go to next step on success, or to the next tail step on failure
+        Assert.assertEquals("step2", plan.next(first, true).getName());
+        Assert.assertEquals("step3", plan.next(first, false).getName());
+
+        // then: no more steps after the last step
+        Step last = plan.get("root/step3");
+        Assert.assertNull(plan.next(last, true));
+        Assert.assertNull(plan.next(last, false));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void should_not_modify_step_envs() {
+        plan.get("root/step-1").getEnvironments().put("FLOW_WORKSPACE", "changed");
+    }
+
+    @Test
+    public void should_be_serializable() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(out)) {
+            stream.writeObject(plan);
+        }
+
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ExecutionPlan copied = (ExecutionPlan) stream.readObject();
+            Assert.assertEquals(plan, copied);
+            Assert.assertEquals(plan.root().getId(), copied.get("root").getId());
+        }
+    }
+}
@@ -68,4 +68,41 @@ public class NodeTreeTest {
         nextFinalNode = tree.nextFinal(NodePath.create("root/step3"));
         Assert.assertNull(nextFinalNode);
     }
+
+    @Test
+    public void should_navigate_by_node_id_and_interned_path() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("flow-with-final.yml");
+        String content = Files.toString(new File(resource.getFile()), Charset.forName("UTF-8"));
+        Node root = YmlParser.load("default", content);
+
+        NodeTree tree = NodeTree.create(root);
+        List<Node> ordered = tree.getOrdered();
+
+        // then: root id is 0 and regular nodes are numbered by order
+        Assert.assertEquals(0, tree.id(root.getPath()));
+        for (int i = 0; i < ordered.size(); i++) {
+            Node node = ordered.get(i);
+            Assert.assertEquals(i + 1, tree.id(node.getPathAsString()));
+            Assert.assertEquals(node, tree.get(i + 1));
+        }
+
+        // then: interned path should be the same instance of node path
+        Node first = ordered.get(0);
+        Assert.assertSame(first.getPath(), tree.intern(first.getPathAsString()));
+
+        // then: navigation by id should be the same as by path
+        Assert.assertEquals(first, tree.next(0));
+        Assert.assertNull(tree.prev(1));
+        Assert.assertEquals(tree.nextFinal(first.getPath()), tree.nextFinal(1));
+        Assert.assertNull(tree.next(ordered.size()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_exception_if_path_not_existed() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("flow-with-final.yml");
+        String content = Files.toString(new File(resource.getFile()), Charset.forName("UTF-8"));
+        NodeTree tree = NodeTree.create(YmlParser.load("default", content));
+
+        tree.id("root/not-existed");
+    }
 }
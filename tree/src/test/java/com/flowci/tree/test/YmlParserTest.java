@@ -16,6 +16,9 @@
 
 package com.flowci.tree.test;
 
+import com.flowci.domain.VariableMap;
+import com.flowci.exception.YmlException;
+import com.flowci.tree.AutoCancel;
 import com.flowci.tree.Node;
 import com.flowci.tree.NodePath;
 import com.flowci.tree.NodeTree;
@@ -115,6 +118,45 @@ public class YmlParserTest {
         Assert.assertEquals(2, first.getExports().size());
     }
 
+    @Test
+    public void should_parse_yml_with_env_matrix() throws IOException {
+        content = loadContent("flow-with-matrix.yml");
+        Node root = YmlParser.load("default", content);
+        Assert.assertTrue(root.hasMatrix());
+
+        // then: should expand to all combinations of matrix values
+        List<VariableMap> combinations = root.expandMatrix();
+        Assert.assertEquals(6, combinations.size());
+        Assert.assertEquals("8", combinations.get(0).getString("JDK_VERSION"));
+        Assert.assertEquals("linux", combinations.get(0).getString("OS"));
+        Assert.assertEquals("11", combinations.get(5).getString("JDK_VERSION"));
+        Assert.assertEquals("windows", combinations.get(5).getString("OS"));
+
+        // then: should expand to single empty combination without matrix
+        root = YmlParser.load("default", loadContent("flow.yml"));
+        Assert.assertFalse(root.hasMatrix());
+        Assert.assertEquals(1, root.expandMatrix().size());
+    }
+
+    @Test
+    public void should_parse_yml_with_auto_cancel() throws IOException {
+        Node root = YmlParser.load("default", loadContent("flow-with-auto-cancel.yml"));
+        Assert.assertEquals(AutoCancel.QUEUED, root.getAutoCancel());
+
+        // then: should keep auto cancel policy when parse back to yml
+        root = YmlParser.load("default", YmlParser.parse(root));
+        Assert.assertEquals(AutoCancel.QUEUED, root.getAutoCancel());
+
+        // then: should be none by default
+        root = YmlParser.load("default", loadContent("flow.yml"));
+        Assert.assertEquals(AutoCancel.NONE, root.getAutoCancel());
+    }
+
+    @Test(expected = YmlException.class)
+    public void should_throw_exception_if_auto_cancel_not_supported() {
+        YmlParser.load("default", "name: root\nauto_cancel: always\nsteps:\n- name: build\n  script: echo\n");
+    }
+
     private String loadContent(String resource) throws IOException {
         ClassLoader classLoader = YmlParserTest.class.getClassLoader();
         URL url = classLoader.getResource(resource);
@@ -17,6 +17,9 @@
 package com.flowci.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,6 +29,10 @@ import java.nio.file.Path;
  */
 public abstract class FileHelper {
 
+    private static final int TailBlockSize = 8 * 1024;
+
+    private static final byte LineBreak = '\n';
+
     public static Path createDirectory(Path dir) throws IOException {
         try {
             return Files.createDirectory(dir);
@@ -34,4 +41,67 @@ public abstract class FileHelper {
         }
     }
 
+    /**
+     * Transfer bytes from file channel to target channel until count reached or nothing can be transferred
+     *
+     * @return num of bytes transferred
+     */
+    public static long transferTo(FileChannel from, long position, long count, WritableByteChannel to)
+        throws IOException {
+        long transferred = 0;
+
+        while (transferred < count) {
+            long n = from.transferTo(position + transferred, count - transferred, to);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Find the position where the last num of lines start, the line break at the end of file is ignored
+     *
+     * @return position of the first byte of the lines, or 0 if file has less lines
+     */
+    public static long tailOffset(FileChannel channel, int lines) throws IOException {
+        long size = channel.size();
+        if (lines <= 0) {
+            return size;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(TailBlockSize);
+        long position = size;
+        int found = 0;
+
+        while (position > 0) {
+            int length = (int) Math.min(TailBlockSize, position);
+            position -= length;
+
+            buffer.clear();
+            buffer.limit(length);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+
+            for (int i = length - 1; i >= 0; i--) {
+                long offset = position + i;
+                if (buffer.get(i) != LineBreak || offset == size - 1) {
+                    continue;
+                }
+
+                if (++found == lines) {
+                    return offset + 1;
+                }
+            }
+        }
+
+        return 0;
+    }
+
 }
@@ -17,13 +17,33 @@
 package com.flowci.util;
 
 import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * @author yang
  */
 public abstract class HashingHelper {
 
+    private static final String HmacSha1 = "HmacSHA1";
+
     public static String md5(String value) {
         return Hashing.md5().hashBytes(value.getBytes()).toString();
     }
+
+    /**
+     * HMAC SHA1 of data in lower case hex
+     */
+    public static String hmacSha1(String key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HmacSha1);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HmacSha1));
+            return BaseEncoding.base16().lowerCase().encode(mac.doFinal(data));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
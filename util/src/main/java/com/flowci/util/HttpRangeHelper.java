@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.util;
+
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import javax.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Write file, single byte range or last lines of file to http response by FileChannel.transferTo
+ *
+ * @author yang
+ */
+public abstract class HttpRangeHelper {
+
+    private static final String BytesUnit = "bytes";
+
+    private static final String BytesPrefix = BytesUnit + "=";
+
+    private static final String AcceptRangesHeader = "Accept-Ranges";
+
+    private static final String ContentRangeHeader = "Content-Range";
+
+    /**
+     * Inclusive byte range of file to write
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Range {
+
+        private final long start;
+
+        private final long end;
+
+        /**
+         * Is range from the range header, which is written with 206 status
+         */
+        private final boolean partial;
+
+        public long getCount() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * @param tail num of last lines to write, range header will be ignored if it's positive
+     */
+    public static void write(Path path, String rangeHeader, int tail, HttpServletResponse response)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Range range = resolve(channel, rangeHeader, tail, response);
+
+            if (!Objects.isNull(range)) {
+                write(channel, range, response);
+            }
+        }
+    }
+
+    /**
+     * Resolve range to write and set range headers and status of response
+     *
+     * @param tail num of last lines to write, range header will be ignored if it's positive
+     * @return range to write, or null if range not satisfiable and error been sent
+     */
+    public static Range resolve(FileChannel channel, String rangeHeader, int tail, HttpServletResponse response)
+        throws IOException {
+        long length = channel.size();
+        response.setHeader(AcceptRangesHeader, BytesUnit);
+
+        if (tail > 0) {
+            return new Range(FileHelper.tailOffset(channel, tail), length - 1, false);
+        }
+
+        Range range = parseSingleRange(rangeHeader, length);
+        if (Objects.isNull(range)) {
+            return new Range(0, length - 1, false);
+        }
+
+        if (range.getStart() >= length || range.getStart() > range.getEnd()) {
+            response.setHeader(ContentRangeHeader, BytesUnit + " */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(ContentRangeHeader,
+            BytesUnit + " " + range.getStart() + "-" + range.getEnd() + "/" + length);
+        return range;
+    }
+
+    public static void write(FileChannel channel, Range range, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(range.getCount());
+        FileHelper.transferTo(channel, range.getStart(), range.getCount(),
+            Channels.newChannel(response.getOutputStream()));
+        response.flushBuffer();
+    }
+
+    /**
+     * Parse 'bytes=first-last', 'bytes=first-' or 'bytes=-suffix' range header against the length of file.
+     * Multiple ranges are not supported and the whole file will be returned
+     *
+     * @return range with end capped to the length, or null if header is absent, invalid or has multiple ranges
+     */
+    public static Range parseSingleRange(String rangeHeader, long length) {
+        if (Strings.isNullOrEmpty(rangeHeader) || !rangeHeader.startsWith(BytesPrefix)) {
+            return null;
+        }
+
+        String spec = rangeHeader.substring(BytesPrefix.length()).trim();
+        int dash = spec.indexOf('-');
+
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+
+        try {
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                return new Range(Math.max(length - suffix, 0), length - 1, true);
+            }
+
+            long first = Long.parseLong(spec.substring(0, dash));
+            if (dash == spec.length() - 1) {
+                return new Range(first, length - 1, true);
+            }
+
+            long last = Long.parseLong(spec.substring(dash + 1));
+            if (last < first) {
+                return null;
+            }
+
+            return new Range(first, Math.min(last, length - 1), true);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.util.test;
+
+import com.flowci.util.FileHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class FileHelperTest {
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("flowci-file-helper", ".log");
+        Files.write(file, "first\nsecond\nthird\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void should_find_tail_offset() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Assert.assertEquals(13, FileHelper.tailOffset(channel, 1));
+            Assert.assertEquals(6, FileHelper.tailOffset(channel, 2));
+            Assert.assertEquals(0, FileHelper.tailOffset(channel, 3));
+            Assert.assertEquals(0, FileHelper.tailOffset(channel, 10));
+            Assert.assertEquals(channel.size(), FileHelper.tailOffset(channel, 0));
+        }
+    }
+
+    @Test
+    public void should_transfer_range_of_file() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long transferred = FileHelper.transferTo(channel, 6, 6, Channels.newChannel(out));
+            Assert.assertEquals(6, transferred);
+        }
+
+        Assert.assertEquals("second", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
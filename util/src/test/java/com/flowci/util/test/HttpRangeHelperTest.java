@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.util.test;
+
+import com.flowci.util.HttpRangeHelper;
+import com.flowci.util.HttpRangeHelper.Range;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class HttpRangeHelperTest {
+
+    @Test
+    public void should_parse_single_range() {
+        Range range = HttpRangeHelper.parseSingleRange("bytes=7-12", 21);
+        Assert.assertEquals(7, range.getStart());
+        Assert.assertEquals(12, range.getEnd());
+        Assert.assertEquals(6, range.getCount());
+        Assert.assertTrue(range.isPartial());
+
+        range = HttpRangeHelper.parseSingleRange("bytes=7-", 21);
+        Assert.assertEquals(7, range.getStart());
+        Assert.assertEquals(20, range.getEnd());
+
+        range = HttpRangeHelper.parseSingleRange("bytes=7-100", 21);
+        Assert.assertEquals(20, range.getEnd());
+
+        range = HttpRangeHelper.parseSingleRange("bytes=-5", 21);
+        Assert.assertEquals(16, range.getStart());
+        Assert.assertEquals(20, range.getEnd());
+
+        range = HttpRangeHelper.parseSingleRange("bytes=100-", 21);
+        Assert.assertEquals(100, range.getStart());
+    }
+
+    @Test
+    public void should_return_null_if_range_not_supported() {
+        Assert.assertNull(HttpRangeHelper.parseSingleRange(null, 21));
+        Assert.assertNull(HttpRangeHelper.parseSingleRange("items=0-1", 21));
+        Assert.assertNull(HttpRangeHelper.parseSingleRange("bytes=0-1,5-6", 21));
+        Assert.assertNull(HttpRangeHelper.parseSingleRange("bytes=5-1", 21));
+        Assert.assertNull(HttpRangeHelper.parseSingleRange("bytes=a-b", 21));
+    }
+}
@@ -148,10 +148,17 @@ public class ZookeeperClient implements AutoCloseable {
     }
 
     public void lock(String path, Consumer<String> consumer) {
+        lock(path, 0, consumer);
+    }
+
+    /**
+     * Acquire the lock on path and wait up to seconds, then run consumer within the lock
+     */
+    public void lock(String path, long waitInSeconds, Consumer<String> consumer) {
         InterProcessMutex lock = new InterProcessMutex(client, path);
 
         try {
-            if (!lock.acquire(0, TimeUnit.SECONDS)) {
+            if (!lock.acquire(waitInSeconds, TimeUnit.SECONDS)) {
                 throw new ZookeeperException("Cannot acquire the lock on path: " + path);
             }
             consumer.accept(path);